@@ -49,16 +49,56 @@ public @interface BootstrapConfig {
 
     String HOST = "localhost";
 
+    int DEFAULT_STARTUP_TIMEOUT = 10;
+
 
     /**
-     * Max number of connect attempts for confirmation that the server has started.
-     * There is a pause of 1s between retries.
+     * Max time, in seconds, to wait for confirmation that the server has started.
+     * The bootstrap is released as soon as the server is ready, so this is only the upper limit.
      * <p/>
      * Default is 10. Increase on slower or overloaded systems.
      *
      * @return
      */
-    int numberOfAttempts() default 10;
+    int startupTimeout() default DEFAULT_STARTUP_TIMEOUT;
+
+    /**
+     * Max number of connect attempts for confirmation that the server has started, with a pause of 1s between them.
+     * <p/>
+     * Only used if {@link #startupTimeout()} is not set, as the number of seconds to wait.
+     *
+     * @return
+     * @deprecated use {@link #startupTimeout()}
+     */
+    @Deprecated
+    int numberOfAttempts() default DEFAULT_STARTUP_TIMEOUT;
+
+    /**
+     * Start all servers configured in {@link Servers} at the same time.
+     * <p/>
+     * All configurations are created and initialised first, then every server is started and finally the bootstrap
+     * waits for all of them to become available. The total startup time is close to the slowest server rather than the sum of all.
+     * <p/>
+     * Set to false to start the servers one after another (each server is fully up before the next one is created).
+     *
+     * @return
+     */
+    boolean concurrentStartup() default true;
+
+    /**
+     * Keep the servers running after the tests complete, so they can be reused by other test classes in the same JVM.
+     * <p/>
+     * A test class reuses running servers if it declares exactly the same {@link Server}/{@link Servers}, {@link BootstrapConfig}
+     * and {@link Security} configuration (the test classes must also be in the same code source location).
+     * Instead of bootstrapping, it gets the servers' registry entries restored and all remote mocks reset.
+     * <p/>
+     * Only a limited number of server sets are kept (see {@link org.jmockring.configuration.ConfigurationConstants#SERVER_CACHE_SIZE_SYSTEM_KEY}),
+     * the least recently used set no test class is running against is shut down first. All kept servers are shut down when the JVM exits.
+     * The {@link #startupHook()} is only called before the servers are started, not for the test classes reusing them.
+     *
+     * @return
+     */
+    boolean reuseServers() default false;
 
     String scheme() default SCHEME_HTTP;
 
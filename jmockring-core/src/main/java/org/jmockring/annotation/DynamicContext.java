@@ -81,6 +81,19 @@ public @interface DynamicContext {
      */
     boolean autoMocks() default true;
 
+    /**
+     * Create the auto-mocks of interface types only when they are first used.
+     * <p/>
+     * Each such bean is a lightweight proxy, which creates the actual mock on the first method call on it,
+     * or when it is injected in a test with {@link org.jmockring.annotation.RemoteMock}/{@link org.jmockring.annotation.RemoteBean}.
+     * Mocks of classes (and the forced mocks of classes) are still created with the context.
+     * <p/>
+     * Default is false.
+     *
+     * @return
+     */
+    boolean lazyMocks() default false;
+
     /**
      * Representation of <b>web.xml's</b> &lt;servlet&gt; and &lt;servlet-mapping&gt; tags.
      *
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.annotation;
+
+/**
+ * Strategy used by the bootstrap to obtain a listening port for servers without explicitly configured {@link Server#port()}.
+ *
+ * @date 17/10/26
+ * @see Server#portAllocation()
+ */
+public enum PortAllocation {
+
+    /**
+     * Probe ports upwards from {@link Server#startAtPort()} until a free one is found.
+     * <p/>
+     * The probe socket is closed before the server binds, so another process may still take the port in between.
+     */
+    SCAN,
+
+    /**
+     * Same search as {@link #SCAN}, but ports are leased from a table shared with all other JVMs on the box,
+     * so parallel forks never hand out the same port. Leases are released when the tests complete.
+     *
+     * @see org.jmockring.utils.PortLeaseRegistry
+     */
+    LEASE,
+
+    /**
+     * Let the operating system assign a free ephemeral port when the server connector is bound.
+     * <p/>
+     * No probing is done: the server binds port 0 during {@link org.jmockring.webserver.WebServer#initialise(org.jmockring.configuration.ServerConfiguration)}
+     * and publishes the actual port back to the {@link org.jmockring.configuration.ServerConfiguration}.
+     * This is race-free and is the recommended mode when several JVMs run servers on the same box.
+     */
+    EPHEMERAL
+}
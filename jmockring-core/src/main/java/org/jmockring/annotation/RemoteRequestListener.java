@@ -32,6 +32,8 @@ import org.jmockring.webserver.WebServer;
 /**
  * Injects instance of {@link org.jmockring.webserver.callback.CallbackRequestEventListener}
  * which can be uses to suspend the current thread and wait for request notification.
+ * <p/>
+ * The requests are only captured while a test class using this annotation is running.
  *
  * @author Pavel Lechev
  * @date 31/01/13
@@ -58,4 +60,30 @@ public @interface RemoteRequestListener {
 
     /** @return  */
     Class<? extends WebServer> bootstrap() default WebServer.class;
+
+    /**
+     * Copy the request parameters into the captured {@link org.jmockring.webserver.callback.Request}s.
+     * <p/>
+     * Off by default: reading the parameters makes the server parse form bodies of all requests.
+     *
+     * @return
+     */
+    boolean captureParameters() default false;
+
+    /**
+     * Copy the request headers into the captured {@link org.jmockring.webserver.callback.Request}s.
+     *
+     * @return
+     */
+    boolean captureHeaders() default false;
+
+    /**
+     * Record latency, CPU time and allocated bytes of the requests per endpoint.
+     * <p/>
+     * The statistics are available from {@link org.jmockring.webserver.callback.CallbackRequestEventListener#getStatistics()}
+     * and are cleared before each test method.
+     *
+     * @return
+     */
+    boolean collectStatistics() default false;
 }
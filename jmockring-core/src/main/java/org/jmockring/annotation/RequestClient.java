@@ -33,6 +33,7 @@ import org.jmockring.webserver.WebServer;
  * Inject various types of HTTP clients.
  * <p/>
  * <b>Usage:</b> Simply annotate the field in the test class. The field type must be supported (see SPI providers).
+ * A new client is injected for each test method.
  *
  * @author Pavel Lechev
  * @date 04/01/13
@@ -71,6 +71,16 @@ public @interface Server {
      */
     String propertiesLocation() default "";
 
+    /**
+     * Properties of this server, overriding the ones in {@link #propertiesLocation()}.
+     * <p/>
+     * Mostly useful for the web server settings, e.g. the <code>jetty.*</code> connector and thread pool tuning
+     * (see <code>org.jmockring.webserver.jetty.JettySettings</code>). The settings are validated when the server is initialised.
+     *
+     * @return
+     */
+    Param[] properties() default {};
+
     /**
      * The Main class used to bootstrap the server.
      * <p/>
@@ -100,9 +110,21 @@ public @interface Server {
      *
      * @return
      * @see org.jmockring.junit.ServerBootstrap#allocateAvailablePort(Server)
+     * @see #portAllocation()
      */
     int startAtPort() default 30000;
 
+    /**
+     * How the dynamic port is obtained when {@link #port()} is not set.
+     * <p/>
+     * {@link PortAllocation#SCAN} (default) uses {@link #startAtPort()} to search for a free port before the server is created.
+     * {@link PortAllocation#LEASE} does the same search, coordinated with other JVMs running on the same box.
+     * {@link PortAllocation#EPHEMERAL} lets the OS assign the port when the server binds, which avoids any race with other processes.
+     *
+     * @return
+     */
+    PortAllocation portAllocation() default PortAllocation.SCAN;
+
     /**
      * By default ports will be allocated dynamically.
      * This can be changed here - just specify a port number and ensure it does not clash with anything else on the same machine.
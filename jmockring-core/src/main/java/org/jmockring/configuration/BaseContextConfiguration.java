@@ -34,6 +34,8 @@ public abstract class BaseContextConfiguration<A> {
 
     private final Server server;
 
+    private final BootstrapTimings timings = new BootstrapTimings();
+
     public BaseContextConfiguration(Server server) {
         this.server = server;
     }
@@ -42,10 +44,26 @@ public abstract class BaseContextConfiguration<A> {
         this.requestEventListener = requestEventListener;
     }
 
+    /**
+     * The shared listener of the server: it records nothing unless something has subscribed.
+     * <p/>
+     * Callers must {@link CallbackRequestEventListener#subscribe(boolean, boolean) subscribe(...)} and wait on
+     * {@link CallbackRequestEventListener.Subscription#getListener()}, which has its own cursors,
+     * and cancel the subscription when done.
+     *
+     * @return
+     */
     public CallbackRequestEventListener getRequestEventListener() {
         return requestEventListener;
     }
 
+    /**
+     * @return durations of the Spring bootstrap phases of this context
+     */
+    public BootstrapTimings getTimings() {
+        return timings;
+    }
+
     public boolean isEnableDebug() {
         return server.enableDebug();
     }
@@ -60,6 +78,11 @@ public abstract class BaseContextConfiguration<A> {
 
     public abstract boolean isEnableAutoMocks();
 
+    /**
+     * @return true if the auto-mocks of interfaces are created on first use
+     */
+    public abstract boolean isLazyMocks();
+
     public abstract A getConfig();
 
 
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.configuration;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Nanosecond durations of the bootstrap phases of a single server or context.
+ * <p/>
+ * Server-wide phases are recorded on {@link ServerConfiguration#getTimings()}, the Spring phases on each {@link BaseContextConfiguration#getTimings()}.
+ * Phases may be recorded from different threads (the bootstrap thread, the server thread, the Spring context loader).
+ *
+ * @date 17/10/26
+ * @see ServerExecutionConfiguration#getServerTimings()
+ * @see ServerExecutionConfiguration#getContextTimings()
+ */
+public class BootstrapTimings {
+
+    public enum Phase {
+
+        /** Dynamic port allocation by the bootstrap (server). */
+        PORT_ALLOCATION,
+
+        /** {@link org.jmockring.webserver.WebServer#initialise(ServerConfiguration)} (server). */
+        INITIALISE,
+
+        /** Opening the listening socket of the connector (server). */
+        CONNECTOR_BIND,
+
+        /** XML bean definitions loading (context). */
+        BEAN_DEFINITION_LOADING,
+
+        /** Auto-mock analysis of the bean definitions (context). */
+        AUTO_MOCK,
+
+        /** Instantiation of all non-lazy singletons (context). */
+        SINGLETON_INSTANTIATION,
+
+        /** Registering the context with {@link ServerExecutionRegistry} (context). */
+        REGISTRY_INITIALISATION,
+
+        /** From starting the server thread until the bootstrap confirmed the server can take requests (server). */
+        READINESS
+    }
+
+    private final Map<Phase, Long> durations = new EnumMap<Phase, Long>(Phase.class);
+
+    private final Map<Phase, Long> pending = new EnumMap<Phase, Long>(Phase.class);
+
+    /**
+     * Record a phase which started at `startNanos` (as obtained from {@link System#nanoTime()}) and ends now.
+     *
+     * @param phase
+     * @param startNanos
+     */
+    public synchronized void record(Phase phase, long startNanos) {
+        durations.put(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Start a phase which will end in a different place, see {@link #end(Phase)}.
+     *
+     * @param phase
+     */
+    public synchronized void begin(Phase phase) {
+        pending.put(phase, System.nanoTime());
+    }
+
+    /**
+     * End a phase previously started with {@link #begin(Phase)}. Ignored if the phase has not been started.
+     *
+     * @param phase
+     */
+    public synchronized void end(Phase phase) {
+        Long startNanos = pending.remove(phase);
+        if (startNanos != null) {
+            record(phase, startNanos);
+        }
+    }
+
+    /**
+     * @param phase
+     * @return the duration in nanoseconds or -1 if the phase was not recorded
+     */
+    public synchronized long getNanos(Phase phase) {
+        Long nanos = durations.get(phase);
+        return nanos != null ? nanos : -1;
+    }
+
+    /**
+     * @return snapshot of all recorded phases, in phase order
+     */
+    public synchronized Map<Phase, Long> asMap() {
+        return Collections.unmodifiableMap(new EnumMap<Phase, Long>(durations));
+    }
+}
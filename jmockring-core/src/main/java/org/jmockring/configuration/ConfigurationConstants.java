@@ -30,6 +30,18 @@ public abstract class ConfigurationConstants {
     /** The name of system property pointing to external .properties files locations. */
     public static final String EXTERNAL_CONFIG_SYSTEM_KEY = "jmockring.config.location";
 
+    /** The name of system property pointing to the port lease file shared by all JVMs on the box. */
+    public static final String PORT_LEASE_FILE_SYSTEM_KEY = "jmockring.port.lease.file";
+
+    /** The name of system property setting how many sets of servers can be kept running for reuse. Default is 3. */
+    public static final String SERVER_CACHE_SIZE_SYSTEM_KEY = "jmockring.server.cache.size";
+
+    /** The name of system property pointing to the directory where the bootstrap timings reports are written. No reports if not set. */
+    public static final String TIMINGS_REPORT_DIR_SYSTEM_KEY = "jmockring.timings.report.dir";
+
+    /** The name of system property pointing to the directory where the auto-mock plans are cached between runs. No caching if not set. */
+    public static final String AUTOMOCK_CACHE_DIR_SYSTEM_KEY = "jmockring.automock.cache.dir";
+
     public static final String EXECUTION_PROPERTIES_BOOTSTRAP = "jmockring.bootstrap";
 
     public static final String SERVER_CONFIGURATION_KEY = "jmockring.configuration";
@@ -37,6 +49,15 @@ public abstract class ConfigurationConstants {
     /** Key to set the Spring execution environment's properties as configured in */
     public static final String EXECUTION_ENVIRONMENT_KEY = "wtesterProperties";
 
+    /** Server property setting how many request events the {@link org.jmockring.webserver.callback.RequestJournal} holds. Default is 1024. */
+    public static final String REQUEST_JOURNAL_SIZE_KEY = "jmockring.request.journal.size";
+
+    /**
+     * Server property: serve the requests on virtual threads (one per request) when the JVM supports them, otherwise the
+     * server's own thread pool is used. Default is false.
+     */
+    public static final String VIRTUAL_THREADS_KEY = "jmockring.server.virtualThreads";
+
     /** Must be present in the properties */
     public static final String PORT_CONFIG_KEY = "base-webserver-ri.port";
 
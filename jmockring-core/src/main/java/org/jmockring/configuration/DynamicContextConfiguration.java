@@ -85,6 +85,11 @@ public class DynamicContextConfiguration extends BaseContextConfiguration<Dynami
         return dynamicContext.autoMocks();
     }
 
+    @Override
+    public boolean isLazyMocks() {
+        return dynamicContext.lazyMocks();
+    }
+
     @Override
     public DynamicContext getConfig() {
         return dynamicContext;
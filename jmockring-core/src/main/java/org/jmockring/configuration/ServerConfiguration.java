@@ -23,14 +23,24 @@ package org.jmockring.configuration;
 
 import static org.jmockring.utils.Functions.ifEmpty;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.jmockring.annotation.BootstrapConfig;
+import org.jmockring.annotation.Param;
 import org.jmockring.annotation.Server;
 import org.jmockring.utils.PropertyFileReader;
+import org.jmockring.webserver.LocalTransport;
 
 /**
  * Aggregate configuration of all contexts on this serverConfig + serverConfig global settings.
@@ -40,6 +50,8 @@ import org.jmockring.utils.PropertyFileReader;
  */
 public class ServerConfiguration {
 
+    private static final Logger log = LoggerFactory.getLogger(ServerConfiguration.class);
+
     private Set<DynamicContextConfiguration> dynamicContexts = new HashSet<DynamicContextConfiguration>();
 
     private Set<WebAppContextConfiguration> webAppContexts = new HashSet<WebAppContextConfiguration>();
@@ -54,10 +66,20 @@ public class ServerConfiguration {
 
     private int defaultPort;
 
+    private boolean ephemeralPort;
+
     private Properties cachedProperties;
 
     private Server serverConfig;
 
+    private final BootstrapTimings timings = new BootstrapTimings();
+
+    private volatile LocalTransport localTransport;
+
+    private final ConcurrentMap<Class<?>, Closeable> sharedResources = new ConcurrentHashMap<Class<?>, Closeable>();
+
+    private final AtomicInteger sharedResourceUsers = new AtomicInteger();
+
     public ServerConfiguration(Server serverConfig, BootstrapConfig bootstrapConfig) {
         this.serverConfig = serverConfig;
         this.bootstrapConfig = bootstrapConfig;
@@ -140,6 +162,28 @@ public class ServerConfiguration {
         this.port = port;
     }
 
+    /**
+     * @return true if a listening port has already been set, either from the annotations or by the server after binding
+     */
+    public boolean isPortAssigned() {
+        return this.port > 0;
+    }
+
+    /**
+     * When set, no port is allocated up front: the server must bind its connector to port 0 during initialisation
+     * and publish the port assigned by the OS via {@link #setPort(int)}.
+     *
+     * @return
+     * @see org.jmockring.annotation.PortAllocation#EPHEMERAL
+     */
+    public boolean isEphemeralPort() {
+        return ephemeralPort;
+    }
+
+    public void setEphemeralPort(boolean ephemeralPort) {
+        this.ephemeralPort = ephemeralPort;
+    }
+
     public void setDefaultPort(int defaultPort) {
         this.defaultPort = defaultPort;
     }
@@ -171,7 +215,16 @@ public class ServerConfiguration {
         final String configFile = System.getProperty(ConfigurationConstants.EXTERNAL_CONFIG_SYSTEM_KEY);
         // load external properties, if any:
         Properties externalProperties = (configFile == null || configFile.isEmpty()) ? new Properties() : new PropertyFileReader(configFile).load();
-        cachedProperties = propertiesLocation != null ? PropertyFileReader.fromClasspath(propertiesLocation).override(externalProperties) : externalProperties;
+        Properties properties = propertiesLocation != null ? PropertyFileReader.fromClasspath(propertiesLocation).load() : new Properties();
+        // @Server(properties) override the properties file, the external configuration overrides both
+        Param[] serverProperties = serverConfig != null ? serverConfig.properties() : null;
+        if (serverProperties != null) {
+            for (Param param : serverProperties) {
+                properties.setProperty(param.name(), param.value());
+            }
+        }
+        properties.putAll(externalProperties);
+        cachedProperties = properties;
     }
 
     public void setBootstrapConfig(BootstrapConfig bootstrapConfig) {
@@ -186,6 +239,98 @@ public class ServerConfiguration {
         return serverConfig;
     }
 
+    /**
+     * @return durations of the server-wide bootstrap phases
+     */
+    public BootstrapTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * @return the in-memory transport of the running server, or null if the server does not provide one
+     */
+    public LocalTransport getLocalTransport() {
+        return localTransport;
+    }
+
+    public void setLocalTransport(LocalTransport localTransport) {
+        this.localTransport = localTransport;
+    }
+
+    /**
+     * Get the client side resource of the given type shared by all tests talking to this server (e.g. a connection pool).
+     *
+     * @param type
+     * @param <T>
+     *
+     * @return the resource or null if none is registered
+     */
+    public <T extends Closeable> T getSharedResource(Class<T> type) {
+        return type.cast(sharedResources.get(type));
+    }
+
+    /**
+     * Register a shared resource, unless one of the same type is already registered.
+     * <p/>
+     * The registered resources are closed by {@link #releaseSharedResources()} when the last test class using this server completes.
+     *
+     * @param type
+     * @param resource
+     * @param <T>
+     *
+     * @return the resource now registered for this type: either the passed one or the one registered before it
+     */
+    public <T extends Closeable> T registerSharedResource(Class<T> type, T resource) {
+        Closeable previous = sharedResources.putIfAbsent(type, resource);
+        return type.cast(previous != null ? previous : resource);
+    }
+
+    /**
+     * Mark a test class as user of the shared resources, so they stay open until it calls {@link #releaseSharedResources()}.
+     * <p/>
+     * Servers reused by several test classes are used by each of them in turn, with the same shared resources.
+     *
+     * @return the number of test classes now using the shared resources
+     */
+    public int retainSharedResources() {
+        return sharedResourceUsers.incrementAndGet();
+    }
+
+    /**
+     * Release the shared resources used by a test class and close them if no other test class uses them.
+     *
+     * @return the number of test classes still using the shared resources
+     *
+     * @should close the resources when the last user releases them
+     * @should keep the resources open while other users retain them
+     */
+    public int releaseSharedResources() {
+        int users = sharedResourceUsers.decrementAndGet();
+        if (users <= 0) {
+            sharedResourceUsers.set(0);
+            closeSharedResources();
+            return 0;
+        }
+        return users;
+    }
+
+    /**
+     * Close and unregister all shared resources, regardless of their users.
+     */
+    public void closeSharedResources() {
+        for (Class<?> type : sharedResources.keySet()) {
+            Closeable resource = sharedResources.remove(type);
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (IOException e) {
+                log.warn("LOG00620: Failed to close shared resource {}", resource, e);
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return String.format("%s -> [%s://%s:%d]",
@@ -56,6 +56,20 @@ public class ServerExecutionConfiguration {
         return contextConfiguration;
     }
 
+    /**
+     * @return durations of the server-wide bootstrap phases, shared by all contexts of the server
+     */
+    public BootstrapTimings getServerTimings() {
+        return configuration.getTimings();
+    }
+
+    /**
+     * @return durations of the Spring bootstrap phases of this context
+     */
+    public BootstrapTimings getContextTimings() {
+        return contextConfiguration.getTimings();
+    }
+
     /**
      * @param path the URL path after the context path
      *
@@ -107,11 +107,13 @@ public class ServerExecutionRegistry implements ApplicationContextAware, Servlet
                 if (bootstrap == null) {
                     throw new IllegalStateException("Can't find server execution class type in context.\n Is `ServerConfigurationAwareContextLoaderListener` enabled?");
                 }
+                long started = System.nanoTime();
                 ConfigurableWebApplicationContext springContext = (ConfigurableWebApplicationContext) configurationAware.getSpringContext();
                 postProcessSpringContext(springContext);
                 serverExecutionConfigurations.put(
                         uniqueName(bootstrap, configuration.getExecutionName(), contextConfiguration.getContextPath()),
                         new ServerExecutionConfiguration(configuration, contextConfiguration, springContext));
+                contextConfiguration.getTimings().record(BootstrapTimings.Phase.REGISTRY_INITIALISATION, started);
                 // TODO debugWriteout(context, contextConfiguration);
             }
             remoteApplicationContexts.clear(); // clear it once initialised
@@ -120,6 +122,21 @@ public class ServerExecutionRegistry implements ApplicationContextAware, Servlet
         }
     }
 
+    /**
+     * Register configurations of servers that are already running, e.g. when they are reused by another test class.
+     *
+     * @param executionConfigurations as previously obtained from {@link #getAllServers()}
+     */
+    public static synchronized void register(ServerExecutionConfiguration... executionConfigurations) {
+        for (ServerExecutionConfiguration execution : executionConfigurations) {
+            ServerConfiguration configuration = execution.getConfiguration();
+            serverExecutionConfigurations.put(
+                    uniqueName(configuration.getServerConfig().bootstrap(), configuration.getExecutionName(), execution.getContextConfiguration().getContextPath()),
+                    execution);
+        }
+        log.info("Registered {} running server contexts", executionConfigurations.length);
+    }
+
     private static void postProcessSpringContext(ConfigurableWebApplicationContext springContext) {
         if (springContext.getBean("TheSnooper") == null) {
             springContext.addApplicationListener(new SpringEventSnooper<ApplicationEvent>());
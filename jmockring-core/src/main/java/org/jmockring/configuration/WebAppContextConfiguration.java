@@ -71,4 +71,9 @@ public class WebAppContextConfiguration extends BaseContextConfiguration<WebCont
     public boolean isEnableAutoMocks() {
         return webContext.autoMocks();
     }
+
+    @Override
+    public boolean isLazyMocks() {
+        return webContext.lazyMocks();
+    }
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.junit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.jmockring.configuration.BaseContextConfiguration;
+import org.jmockring.configuration.BootstrapTimings;
+import org.jmockring.configuration.ServerConfiguration;
+
+/**
+ * Writes the bootstrap timings of a set of servers as CSV and JSON files, named after the configured test class.
+ * <p/>
+ * The CSV has one row per server/context phase, which is convenient for spreadsheets and for tracking startup regressions over time.
+ * The JSON has the same data grouped by server and context.
+ *
+ * @date 17/10/26
+ * @see org.jmockring.configuration.ConfigurationConstants#TIMINGS_REPORT_DIR_SYSTEM_KEY
+ */
+final class BootstrapTimingsReport {
+
+    private static final String SERVER_SCOPE = "<server>";
+
+    private BootstrapTimingsReport() {
+    }
+
+    /**
+     * @param reportDir
+     * @param reportName
+     * @param configurations
+     * @throws IOException
+     */
+    static void write(File reportDir, String reportName, Collection<ServerConfiguration> configurations) throws IOException {
+        if (!reportDir.exists() && !reportDir.mkdirs()) {
+            throw new IOException("Can not create report directory " + reportDir);
+        }
+        writeFile(new File(reportDir, "bootstrap-timings-" + reportName + ".csv"), toCsv(reportName, configurations));
+        writeFile(new File(reportDir, "bootstrap-timings-" + reportName + ".json"), toJson(reportName, configurations));
+    }
+
+    /**
+     * @param reportName
+     * @param configurations
+     * @return
+     * @should write one row per phase
+     * @should quote values containing separators
+     */
+    static String toCsv(String reportName, Collection<ServerConfiguration> configurations) {
+        StringBuilder csv = new StringBuilder("testClass,server,executionName,port,context,phase,nanos\n");
+        for (ServerConfiguration configuration : configurations) {
+            appendCsvRows(csv, reportName, configuration, SERVER_SCOPE, configuration.getTimings());
+            for (BaseContextConfiguration context : contextsOf(configuration)) {
+                appendCsvRows(csv, reportName, configuration, context.getContextPath(), context.getTimings());
+            }
+        }
+        return csv.toString();
+    }
+
+    /**
+     * @param reportName
+     * @param configurations
+     * @return
+     * @should escape control characters
+     */
+    static String toJson(String reportName, Collection<ServerConfiguration> configurations) {
+        StringBuilder json = new StringBuilder("{\"testClass\":").append(quote(reportName)).append(",\"servers\":[");
+        String separator = "";
+        for (ServerConfiguration configuration : configurations) {
+            json.append(separator)
+                    .append("{\"server\":").append(quote(configuration.getServerConfig().bootstrap().getName()))
+                    .append(",\"executionName\":").append(quote(configuration.getExecutionName()))
+                    .append(",\"port\":").append(portOf(configuration))
+                    .append(",\"phases\":");
+            appendJsonPhases(json, configuration.getTimings());
+            json.append(",\"contexts\":[");
+            String contextSeparator = "";
+            for (BaseContextConfiguration context : contextsOf(configuration)) {
+                json.append(contextSeparator).append("{\"contextPath\":").append(quote(context.getContextPath())).append(",\"phases\":");
+                appendJsonPhases(json, context.getTimings());
+                json.append('}');
+                contextSeparator = ",";
+            }
+            json.append("]}");
+            separator = ",";
+        }
+        return json.append("]}\n").toString();
+    }
+
+    private static void appendCsvRows(StringBuilder csv, String reportName, ServerConfiguration configuration, String context, BootstrapTimings timings) {
+        for (Map.Entry<BootstrapTimings.Phase, Long> phase : timings.asMap().entrySet()) {
+            csv.append(csvValue(reportName)).append(',')
+                    .append(csvValue(configuration.getServerConfig().bootstrap().getName())).append(',')
+                    .append(csvValue(configuration.getExecutionName())).append(',')
+                    .append(portOf(configuration)).append(',')
+                    .append(csvValue(context)).append(',')
+                    .append(phase.getKey()).append(',')
+                    .append(phase.getValue()).append('\n');
+        }
+    }
+
+    private static void appendJsonPhases(StringBuilder json, BootstrapTimings timings) {
+        json.append('{');
+        String separator = "";
+        for (Map.Entry<BootstrapTimings.Phase, Long> phase : timings.asMap().entrySet()) {
+            json.append(separator).append(quote(phase.getKey().name())).append(':').append(phase.getValue());
+            separator = ",";
+        }
+        json.append('}');
+    }
+
+    private static List<BaseContextConfiguration> contextsOf(ServerConfiguration configuration) {
+        List<BaseContextConfiguration> contexts = new ArrayList<BaseContextConfiguration>();
+        contexts.addAll(configuration.getWebAppContexts());
+        contexts.addAll(configuration.getDynamicContexts());
+        return contexts;
+    }
+
+    private static int portOf(ServerConfiguration configuration) {
+        return configuration.isPortAssigned() ? configuration.getPort() : -1;
+    }
+
+    /**
+     * RFC 4180: values with separators, quotes or line breaks are quoted, quotes inside are doubled.
+     *
+     * @param value
+     * @return
+     */
+    private static String csvValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static void writeFile(File file, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
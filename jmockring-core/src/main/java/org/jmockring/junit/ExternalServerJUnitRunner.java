@@ -278,6 +278,11 @@ public class ExternalServerJUnitRunner extends BlockJUnit4ClassRunner implements
             resetRemoteState(); // first reset any remote state left after the previous method execution
         }
 
+        @Override
+        public void afterClass() {
+            runner.postProcessor.releaseRequestListeners(); // stop capturing requests once the test class has completed
+        }
+
         private void resetRemoteState() {
             if (runner.usedMocks.size() > 0) {
                 log.info("LOG00220: Resetting {} used mocks: {}", runner.usedMocks.size(), Iterables.transform(runner.usedMocks, new Function<Object, Object>() {
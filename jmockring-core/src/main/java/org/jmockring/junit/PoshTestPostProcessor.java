@@ -26,6 +26,7 @@ import static org.jmockring.utils.Functions.ifEmpty;
 import static org.jmockring.utils.Functions.ifNot;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -52,6 +53,7 @@ import org.jmockring.spi.MockProviderSPI;
 import org.jmockring.spi.PluggableServiceLoader;
 import org.jmockring.spring.event.SpringEventSnooper;
 import org.jmockring.spring.mock.BeanAutoMockPostProcessor;
+import org.jmockring.spring.mock.LazyMockProxy;
 import org.jmockring.webserver.WebServer;
 import org.jmockring.webserver.callback.CallbackRequestEventListener;
 
@@ -76,6 +78,13 @@ class PoshTestPostProcessor {
 
     private MockProviderSPI mockingProvider;
 
+    private List<Injection> injectionPlan;
+
+    /**
+     * Request capture subscriptions held for the {@link RemoteRequestListener} fields of the test class
+     */
+    private final List<CallbackRequestEventListener.Subscription> requestSubscriptions = new ArrayList<CallbackRequestEventListener.Subscription>();
+
     public PoshTestPostProcessor(ConfigurableTargetRunner runner) {
         if (!(runner instanceof ExternalServerJUnitRunner) && !(runner instanceof ExternalServerJUnitSuiteRunner)) {
             throw new IllegalArgumentException("Unsupported JUnit runner!");
@@ -85,27 +94,75 @@ class PoshTestPostProcessor {
     }
 
     /**
+     * Inject the annotated fields of the current test instance.
+     * <p/>
+     * The fields and their values are resolved only for the first test instance (i.e. once per test class),
+     * every following instance gets the same values assigned. The exceptions are request clients, which are created for each test method,
+     * so no client state (e.g. cookies) leaks from one test method to the next.
      *
+     * @should resolve the remote beans only once per test class
+     * @should create a new request client for each test method
+     * @should skip the requests of the previous test methods
      */
     void postProcessTestClass() {
-        Class<? extends Object> testClass = runner.getTestInstance().getClass();
+        Object testInstance = runner.getTestInstance();
+        if (injectionPlan == null) {
+            injectionPlan = createInjectionPlan(testInstance);
+        }
+        for (Injection injection : injectionPlan) {
+            injection.inject(testInstance);
+        }
+    }
+
+    /**
+     * Stop capturing requests for the {@link RemoteRequestListener} fields of the test class.
+     * <p/>
+     * Must be called after all test methods have completed.
+     *
+     * @should cancel the request capture subscriptions
+     */
+    void releaseRequestListeners() {
+        for (CallbackRequestEventListener.Subscription subscription : requestSubscriptions) {
+            subscription.cancel();
+        }
+        requestSubscriptions.clear();
+    }
+
+    /**
+     * @param testInstance
+     * @return
+     */
+    private List<Injection> createInjectionPlan(Object testInstance) {
+        Class<? extends Object> testClass = testInstance.getClass();
         ContextDefaults defaults = testClass.getAnnotation(ContextDefaults.class);
         if (defaults == null) {
             // just to ensure we don't get NPEs
             defaults = ContextDefaults.DEFAULTS.get();
         }
-        Field[] fields = testClass.getDeclaredFields();
-        for (Field f : fields) {
-            boolean res = injectSpringContext(runner.getTestInstance(), f, defaults)
-                    || injectConfiguration(runner.getTestInstance(), f, defaults)
-                    || injectMock(runner.getTestInstance(), f, defaults)
-                    || injectBean(runner.getTestInstance(), f, defaults)
-                    || injectHttpClient(runner.getTestInstance(), f, defaults)
-                    || injectRequestListener(runner.getTestInstance(), f, defaults);
-            if (res) {
+        List<Injection> plan = new ArrayList<Injection>();
+        for (Field f : testClass.getDeclaredFields()) {
+            Injection injection = injectSpringContext(testInstance, f, defaults);
+            if (injection == null) {
+                injection = injectConfiguration(testInstance, f, defaults);
+            }
+            if (injection == null) {
+                injection = injectMock(testInstance, f, defaults);
+            }
+            if (injection == null) {
+                injection = injectBean(testInstance, f, defaults);
+            }
+            if (injection == null) {
+                injection = injectHttpClient(testInstance, f, defaults);
+            }
+            if (injection == null) {
+                injection = injectRequestListener(testInstance, f, defaults);
+            }
+            if (injection != null) {
+                plan.add(injection);
                 LOG.info("Auto-injected field '{}' in class '{}'", f.getName(), testClass.getName());
             }
         }
+        return plan;
     }
 
     /**
@@ -124,7 +181,7 @@ class PoshTestPostProcessor {
      * @param field
      * @return
      */
-    private boolean injectBean(Object testInstance, Field field, ContextDefaults defaults) {
+    private Injection injectBean(Object testInstance, Field field, ContextDefaults defaults) {
         RemoteBean ba = field.getAnnotation(RemoteBean.class);
         if (ba != null) {
             ServerSpec serverSpec = ServerSpec
@@ -139,15 +196,9 @@ class PoshTestPostProcessor {
             } else {
                 bean = doGetBeanFromContext(serverSpec, requiredType, ba.beanName(), false);
             }
-            field.setAccessible(true);
-            try {
-                field.set(testInstance, bean);
-                return true;
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
+            return new Injection(field, bean);
         }
-        return false;
+        return null;
     }
 
 
@@ -156,7 +207,7 @@ class PoshTestPostProcessor {
      * @param field
      * @return
      */
-    private boolean injectMock(Object testInstance, Field field, ContextDefaults defaults) {
+    private Injection injectMock(Object testInstance, Field field, ContextDefaults defaults) {
         RemoteMock ba = field.getAnnotation(RemoteMock.class);
         if (ba != null) {
             ServerSpec serverSpec = ServerSpec
@@ -166,16 +217,10 @@ class PoshTestPostProcessor {
             Class requiredType = ba.type() != RemoteMock.class ? ba.type() : field.getType();
             Object mock = doGetBeanFromContext(serverSpec, requiredType, ba.beanName(), true); // require mock.
             mockingProvider.resetMocks(newArrayList(mock));
-            field.setAccessible(true);
-            try {
-                field.set(testInstance, mock);
-                this.runner.addUsedMock(mock);
-                return true;
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
+            this.runner.addUsedMock(mock); // reset after each test method from now on
+            return new Injection(field, mock);
         }
-        return false;
+        return null;
     }
 
     /**
@@ -183,7 +228,7 @@ class PoshTestPostProcessor {
      * @param field
      * @return
      */
-    private boolean injectConfiguration(Object testInstance, Field field, ContextDefaults defaults) {
+    private Injection injectConfiguration(Object testInstance, Field field, ContextDefaults defaults) {
         ExecutionConfiguration exc = field.getAnnotation(ExecutionConfiguration.class);
         if (exc != null) {
             // check the type is compatible
@@ -203,22 +248,16 @@ class PoshTestPostProcessor {
             if (configuration == null) {
                 throw new IllegalStateException("Can't find configuration for specification " + serverSpec);
             }
-            field.setAccessible(true);
-            try {
-                field.set(testInstance, configuration);
-                return true;
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
+            return new Injection(field, configuration);
         }
-        return false;
+        return null;
     }
 
     /**
      * @param testInstance
      * @param field
      */
-    private boolean injectSpringContext(Object testInstance, Field field, ContextDefaults defaults) {
+    private Injection injectSpringContext(Object testInstance, Field field, ContextDefaults defaults) {
         RemoteSpring sc = field.getAnnotation(RemoteSpring.class);
         if (sc != null) {
             // check the type is compatible
@@ -239,15 +278,9 @@ class PoshTestPostProcessor {
             if (configuration == null) {
                 throw new IllegalStateException("Can't find configuration for specification " + serverSpec);
             }
-            field.setAccessible(true);
-            try {
-                field.set(testInstance, configuration.getSpringContext());
-                return true;
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
+            return new Injection(field, configuration.getSpringContext());
         }
-        return false;
+        return null;
     }
 
     /**
@@ -255,31 +288,29 @@ class PoshTestPostProcessor {
      * @param field
      * @return
      */
-    private boolean injectHttpClient(Object testInstance, Field field, ContextDefaults defaults) {
+    private Injection injectHttpClient(Object testInstance, final Field field, ContextDefaults defaults) {
         RequestClient rc = field.getAnnotation(RequestClient.class);
         if (rc != null) {
             ServerSpec serverSpec = ServerSpec
                     .forServer(ifNot(WebServer.class, rc.bootstrap(), defaults.bootstrap()))
                     .withName(ifNot(Server.DEFAULT_EXECUTION_NAME, rc.executionName(), defaults.executionName()))
                     .withContext(ifEmpty(rc.contextPath(), defaults.contextPath()));
-            ServerExecutionConfiguration configuration = ServerExecutionRegistry.getConfiguration(serverSpec);
-            Object client = PluggableServiceLoader.loadRequestClient(
-                    field.getType(),
-                    configuration != null ? configuration.getConfiguration() : null,
-                    configuration != null ? configuration.getContextConfiguration() : null);
-            if (client != null) {
-                try {
-                    field.setAccessible(true);
-                    field.set(testInstance, client);
-                    return true;
-                } catch (IllegalAccessException e) {
-                    LOG.error("Can't inject spi executor", e);
+            final ServerExecutionConfiguration configuration = ServerExecutionRegistry.getConfiguration(serverSpec);
+            return new Injection(field, null) {
+                @Override
+                Object valueForTest() {
+                    Object client = PluggableServiceLoader.loadRequestClient(
+                            field.getType(),
+                            configuration != null ? configuration.getConfiguration() : null,
+                            configuration != null ? configuration.getContextConfiguration() : null);
+                    if (client == null) {
+                        throw new IllegalStateException("Can not locate provider for client of type " + field.getType());
+                    }
+                    return client;
                 }
-            } else {
-                throw new IllegalStateException("Can not locate provider for client of type " + field.getType());
-            }
+            };
         }
-        return false;
+        return null;
     }
 
     /**
@@ -287,7 +318,7 @@ class PoshTestPostProcessor {
      * @param field
      * @return
      */
-    private boolean injectRequestListener(Object testInstance, Field field, ContextDefaults defaults) {
+    private Injection injectRequestListener(Object testInstance, Field field, ContextDefaults defaults) {
         RemoteRequestListener rl = field.getAnnotation(RemoteRequestListener.class);
         if (rl != null) {
             // check the type is compatible
@@ -308,15 +339,20 @@ class PoshTestPostProcessor {
             if (configuration == null) {
                 throw new IllegalStateException("Can't find configuration for specification " + serverSpec);
             }
-            field.setAccessible(true);
-            try {
-                field.set(testInstance, configuration.getContextConfiguration().getRequestEventListener());
-                return true;
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
+            CallbackRequestEventListener listener = configuration.getContextConfiguration().getRequestEventListener();
+            // the server only captures requests while someone is listening; the test class reads them with the subscription's own cursors
+            final CallbackRequestEventListener.Subscription subscription = listener.subscribe(rl.captureParameters(), rl.captureHeaders(), rl.collectStatistics());
+            requestSubscriptions.add(subscription);
+            return new Injection(field, subscription.getListener()) {
+                @Override
+                Object valueForTest() {
+                    // each test method only sees its own requests
+                    subscription.skipToLatest();
+                    return subscription.getListener();
+                }
+            };
         }
-        return false;
+        return null;
     }
 
 
@@ -339,6 +375,7 @@ class PoshTestPostProcessor {
 
         ApplicationContext remoteContext = serverConfig.getSpringContext();
         T bean = beanName != null && beanName.length() > 0 ? remoteContext.getBean(beanName, beanType) : remoteContext.getBean(beanType);
+        bean = (T) LazyMockProxy.getMock(bean); // the test gets the actual mock
         if (bean == null) {
             throw new IllegalArgumentException(String.format("No bean of type [%s] was found in context.", beanType.getName()));
         }
@@ -413,4 +450,37 @@ class PoshTestPostProcessor {
     public MockProviderSPI getMockingProvider() {
         return mockingProvider;
     }
+
+    /**
+     * Resolved value for an annotated test class field.
+     */
+    private static class Injection {
+
+        private final Field field;
+
+        private final Object value;
+
+        private Injection(Field field, Object value) {
+            field.setAccessible(true);
+            this.field = field;
+            this.value = value;
+        }
+
+        /**
+         * Called for each test method. Override to prepare or create the value per test method.
+         *
+         * @return the value to inject, by default the same for all test methods of the class
+         */
+        Object valueForTest() {
+            return value;
+        }
+
+        private void inject(Object testInstance) {
+            try {
+                field.set(testInstance, valueForTest());
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
 }
@@ -21,10 +21,17 @@
 
 package org.jmockring.junit;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -36,22 +43,35 @@ import org.apache.commons.collections.map.MultiValueMap;
 import org.junit.runners.model.TestClass;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.ConfigurableApplicationContext;
 
 import org.jmockring.annotation.BootstrapConfig;
 import org.jmockring.annotation.DynamicContext;
 import org.jmockring.annotation.Param;
+import org.jmockring.annotation.PortAllocation;
 import org.jmockring.annotation.Security;
 import org.jmockring.annotation.Server;
 import org.jmockring.annotation.Servers;
 import org.jmockring.annotation.WebContext;
+import org.jmockring.configuration.BootstrapTimings;
+import org.jmockring.configuration.ConfigurationConstants;
 import org.jmockring.configuration.DynamicContextConfiguration;
 import org.jmockring.configuration.ServerConfiguration;
+import org.jmockring.configuration.ServerExecutionConfiguration;
 import org.jmockring.configuration.ServerExecutionRegistry;
 import org.jmockring.configuration.WebAppContextConfiguration;
 import org.jmockring.security.SecurityUtils;
+import org.jmockring.spi.MockProviderSPI;
+import org.jmockring.spi.PluggableServiceLoader;
 import org.jmockring.spi.PostShutdownHook;
 import org.jmockring.spi.PreStartupHook;
+import org.jmockring.spring.event.SpringEventSnooper;
+import org.jmockring.spring.mock.LazyMockProxy;
 import org.jmockring.utils.PortChecker;
+import org.jmockring.utils.PortLeaseRegistry;
+import org.jmockring.webserver.SignallingWebServer;
 import org.jmockring.webserver.WebServer;
 
 /**
@@ -90,8 +110,29 @@ public class ServerBootstrap {
      */
     private static final long ABSOLUTE_MAX_WAIT_FOR_SHUTDOWN = 2;
 
+    /**
+     * Pause between port checks for servers which do not signal their readiness.
+     */
+    private static final long PORT_POLL_INTERVAL_MILLIS = 200;
+
     private final List<WebServer> servers;
 
+    /**
+     * The configuration each server was initialised with.
+     */
+    private final Map<WebServer, ServerConfiguration> serverConfigurations;
+
+    /**
+     * Ports handed out by this bootstrap. Used to avoid giving the same port to two servers when
+     * all configurations are created before any of the servers has been started.
+     */
+    private final Set<Integer> allocatedPorts;
+
+    /**
+     * Ports leased from the cross-JVM {@link PortLeaseRegistry}, to be released after the tests.
+     */
+    private final Set<Integer> leasedPorts;
+
     private final ConfigurableTargetRunner<?> runner;
 
     private ExecutorService executorService;
@@ -100,8 +141,23 @@ public class ServerBootstrap {
 
     private CountDownLatch startUpLatch;
 
+    /**
+     * Canonical form of the servers configuration. Only set when the servers can be reused by other test classes.
+     */
+    private String fingerprint;
+
+    /**
+     * Registry entries of the running servers, captured once the registry is initialised so they can be restored for the next test class.
+     */
+    private ServerExecutionConfiguration[] executionSnapshot;
+
+    private boolean timingsReported;
+
     ServerBootstrap(ConfigurableTargetRunner<?> runner) {
         this.servers = new ArrayList<WebServer>();
+        this.serverConfigurations = Collections.synchronizedMap(new LinkedHashMap<WebServer, ServerConfiguration>());
+        this.allocatedPorts = new HashSet<Integer>();
+        this.leasedPorts = new HashSet<Integer>();
         this.runner = runner;
     }
 
@@ -110,13 +166,22 @@ public class ServerBootstrap {
      * Albeit highly unlikely, an allocated port may become unavailable
      * in the short interval between this call and the startup of the server.
      * If this becomes an issue, try playing with port ranges via {@link org.jmockring.annotation.Server#startAtPort()},
+     * or use {@link PortAllocation#LEASE} when several JVMs start servers at the same time.
      *
      * @param serverContext
      * @return
      */
     private int allocateAvailablePort(Server serverContext) {
+        if (serverContext.portAllocation() == PortAllocation.LEASE) {
+            // skip ports already given to scanned servers in this bootstrap
+            int port = PortLeaseRegistry.getInstance().lease(serverContext.startAtPort(), allocatedPorts);
+            allocatedPorts.add(port);
+            leasedPorts.add(port);
+            return port;
+        }
         for (int portToCheck = serverContext.startAtPort(); portToCheck <= PortChecker.MAX_PORT_NUMBER; ++portToCheck) {
-            if (PortChecker.available(portToCheck)) {
+            if (!allocatedPorts.contains(portToCheck) && PortChecker.available(portToCheck)) {
+                allocatedPorts.add(portToCheck);
                 return portToCheck;
             }
         }
@@ -127,44 +192,36 @@ public class ServerBootstrap {
     }
 
     /**
-     * Verify that the server is up and running so we can un-latch the waiting (tests executor) thread.
-     *
-     * @param portNumber
-     * @param tryAttempts
-     * @throws InterruptedException
+     * Stop the servers created so far, un-latch the waiting threads and kill the server threads after a failed startup.
      */
-    private void checkServerRunning(int portNumber, int tryAttempts) throws InterruptedException {
-
-        int pauseFor = 1000; // a sec is good enough
-        int attempts = 0;
-
-        while (true) {
-            boolean isRunning = !PortChecker.available(portNumber);
-            attempts++;
-            if (isRunning) {
-                startUpLatch.countDown();
-                log.info(String.format("Good-to-go for server on port %s after %s attempts. Total startup wait %s sec",
-                                portNumber,
-                                attempts,
-                                (pauseFor * attempts) / 1000)
-                );
-                return;
-            }
-            if (attempts > tryAttempts) {
-                startUpLatch.countDown(); // un-latch before exception
-                shutDownLatch.countDown();
-                executorService.shutdown(); // kill all executing threads
-                throw new IllegalStateException(
-                        String.format(
-                                "Can't connect to server on port %s after %s attempts. " +
-                                        "When debugging make sure no breakpoints exist anywhere in the bootstrap call stack. " +
-                                        "If this problem persists, use @BootstrapConfig to increase the number of allowed attempts before giving up to connect.",
-                                portNumber,
-                                attempts));
-            }
-            Thread.sleep(pauseFor);
+    private void abortStartup() {
+        for (WebServer server : servers) {
+            // also stops servers which are initialised (and bound to their port) but not started yet
+            stopQuietly(server);
         }
+        while (startUpLatch.getCount() > 0) {
+            startUpLatch.countDown();
+        }
+        while (shutDownLatch.getCount() > 0) {
+            shutDownLatch.countDown();
+        }
+        executorService.shutdown(); // kill all executing threads
+        releaseLeasedPorts();
+    }
 
+    private void stopQuietly(WebServer server) {
+        try {
+            server.shutdown();
+        } catch (RuntimeException e) {
+            log.warn(String.format("LOG00770: Failed to stop server '%s' after aborted startup", server.getName()), e);
+        }
+    }
+
+    private void releaseLeasedPorts() {
+        for (Integer port : leasedPorts) {
+            PortLeaseRegistry.getInstance().release(port);
+        }
+        leasedPorts.clear();
     }
 
     /**
@@ -197,13 +254,19 @@ public class ServerBootstrap {
             log.info("Creating custom configuration for server [{}] ", serverConfig.bootstrap().getName());
         }
 
-        if (serverConfig.port() <= 0) {  // port nto specified, use dynamic ports
+        long started = System.nanoTime();
+        if (serverConfig.port() <= 0 && serverConfig.portAllocation() == PortAllocation.EPHEMERAL) {
+            // the server binds port 0 in WebServer#initialise() and sets the real port back on the configuration
+            configuration.setEphemeralPort(true);
+            log.info("Port for server [{}] will be assigned by the OS on bind", serverConfig.bootstrap().getName());
+        } else if (serverConfig.port() <= 0) {  // port nto specified, use dynamic ports
             configuration.setPort(allocateAvailablePort(serverConfig));
             log.info("Allocated dynamic port [{}] for server [{}]", configuration.getPort(), serverConfig.bootstrap().getName());
         } else {
             configuration.setPort(serverConfig.port());
             log.info("Set pre-configured port [{}] for server [{}]", configuration.getPort(), serverConfig.bootstrap().getName());
         }
+        configuration.getTimings().record(BootstrapTimings.Phase.PORT_ALLOCATION, started);
         configuration.setExecutionName(serverConfig.name());
         return configuration;
     }
@@ -281,6 +344,8 @@ public class ServerBootstrap {
             // on some OS `availableProcessors` is 0
             threadPoolSize = 2;
         }
+        // each running server blocks one thread in WebServer#start() and needs another one for the shutdown call
+        threadPoolSize = Math.max(threadPoolSize, serversNum * 2);
         log.info("Configuring Executor service with pool size {} for {} servers. ", threadPoolSize, serversNum);
         this.executorService = Executors.newFixedThreadPool(threadPoolSize, new ThreadFactory() {
             ThreadFactory wrappedFactory = Executors.defaultThreadFactory();
@@ -289,6 +354,8 @@ public class ServerBootstrap {
             public Thread newThread(Runnable r) {
                 Thread t = wrappedFactory.newThread(r);
                 t.setName("SRVExec:" + t.getName());
+                // servers kept for reuse are only stopped by the JVM shutdown hook, which must not wait for them
+                t.setDaemon(fingerprint != null);
                 t.setUncaughtExceptionHandler(new BootstrapUncaughtExceptionHandler());
                 return t;
             }
@@ -320,8 +387,12 @@ public class ServerBootstrap {
 
         // start the servers:
         log.info("Initiating servers startup (>>)");
-        for (Server context : servers) {
-            startSingleServer(context, bootstrapConfig);
+        if (bootstrapConfig.concurrentStartup()) {
+            startServersConcurrently(servers, bootstrapConfig);
+        } else {
+            for (Server context : servers) {
+                startSingleServer(context, bootstrapConfig);
+            }
         }
         // wait for all servers to start
         this.startUpLatch.await(ABSOLUTE_MAX_WAIT_FOR_STARTUP * servers.length, TimeUnit.SECONDS);
@@ -337,23 +408,85 @@ public class ServerBootstrap {
      * @throws InstantiationException
      */
     private void startSingleServer(final Server serverConfig, final BootstrapConfig bootstrapConfig) throws InterruptedException {
-        final ServerConfiguration serverConfiguration = createConfiguration(serverConfig, bootstrapConfig);
+        final WebServer server;
+        try {
+            server = createServer(serverConfig, createConfiguration(serverConfig, bootstrapConfig));
+        } catch (RuntimeException e) {
+            abortStartup();
+            throw e;
+        }
+        this.executorService.execute(new ServerRunner(server));
+        this.servers.add(server);
+        try {
+            awaitServerStartup(server, bootstrapConfig);
+        } catch (IllegalStateException e) {
+            abortStartup();
+            throw e;
+        }
+    }
+
+    /**
+     * Create and initialise all servers first, then start them together and wait for all of them to come up.
+     * <p/>
+     * Failures are collected per server and reported together once all servers have been checked.
+     *
+     * @param serverConfigs
+     * @param bootstrapConfig
+     * @throws InterruptedException
+     */
+    private void startServersConcurrently(Server[] serverConfigs, BootstrapConfig bootstrapConfig) throws InterruptedException {
         try {
-            final WebServer server = serverConfig.bootstrap().newInstance();
+            for (Server serverConfig : serverConfigs) {
+                this.servers.add(createServer(serverConfig, createConfiguration(serverConfig, bootstrapConfig)));
+            }
+        } catch (RuntimeException e) {
+            abortStartup(); // the servers initialised so far have already bound their ports
+            throw e;
+        }
+        for (WebServer server : this.servers) {
+            this.executorService.execute(new ServerRunner(server));
+        }
+
+        Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+        for (WebServer server : this.servers) {
+            try {
+                awaitServerStartup(server, bootstrapConfig);
+            } catch (RuntimeException e) {
+                log.error(String.format("LOG00430: Server '%s' on port %s failed to start", server.getName(), server.getPort()), e);
+                failures.put(String.format("%s [port %s]", server.getName(), server.getPort()), e);
+            }
+        }
+        if (!failures.isEmpty()) {
+            abortStartup();
+            StringBuilder message = new StringBuilder(String.format("%s of %s servers failed to start:", failures.size(), this.servers.size()));
+            for (Map.Entry<String, Throwable> failure : failures.entrySet()) {
+                message.append("\n    ").append(failure.getKey()).append(": ").append(failure.getValue().getMessage());
+            }
+            throw new IllegalStateException(message.toString(), failures.values().iterator().next());
+        }
+    }
+
+    /**
+     * @param serverConfig
+     * @param serverConfiguration
+     * @return initialised server instance, ready to be started
+     */
+    private WebServer createServer(Server serverConfig, ServerConfiguration serverConfiguration) {
+        try {
+            WebServer server = serverConfig.bootstrap().newInstance();
+            long started = System.nanoTime();
             server.initialise(serverConfiguration);
-            this.executorService.execute(new Runnable() {
-                @Override
-                public void run() {
-                    log.info("Starting the server {} on port {}", server.getName(), server.getPort());
-                    server.start(); // block here ....
-                    shutDownLatch.countDown();
-                    log.info("Prepare to shut down the server '{}' on port {}", server.getName(), server.getPort());
+            serverConfiguration.getTimings().record(BootstrapTimings.Phase.INITIALISE, started);
+            serverConfigurations.put(server, serverConfiguration);
+            if (serverConfiguration.isEphemeralPort()) {
+                if (!serverConfiguration.isPortAssigned()) {
+                    stopQuietly(server); // not registered with this bootstrap yet: release whatever it has bound
+                    throw new IllegalStateException(String.format("Server [%s] did not publish the ephemeral port it is bound to. Use PortAllocation.SCAN for this server.",
+                            serverConfig.bootstrap().getName()));
                 }
-            });
-            this.servers.add(server);
-            checkServerRunning(server.getPort(), bootstrapConfig.numberOfAttempts());
-            server.waitForInitialisation();
-
+                log.info("Bound ephemeral port [{}] for server [{}]", serverConfiguration.getPort(), serverConfig.bootstrap().getName());
+            }
+            return server;
         } catch (InstantiationException e) {
             throw new IllegalArgumentException(e);
         } catch (IllegalAccessException e) {
@@ -361,6 +494,71 @@ public class ServerBootstrap {
         }
     }
 
+    /**
+     * Block until the server is listening and its applications are initialised.
+     * <p/>
+     * For a {@link SignallingWebServer} there is no polling: the wait is released by the server's {@link org.jmockring.webserver.StartupSignal},
+     * which is also failed straight away if the server thread dies. Other servers are polled until their port accepts connections.
+     *
+     * @param server
+     * @param bootstrapConfig
+     * @throws InterruptedException
+     * @throws IllegalStateException if the server failed or did not start within the configured time
+     */
+    private void awaitServerStartup(WebServer server, BootstrapConfig bootstrapConfig) throws InterruptedException {
+        long startedAt = System.currentTimeMillis();
+        int timeout = getStartupTimeout(bootstrapConfig);
+        try {
+            if (server instanceof SignallingWebServer) {
+                ((SignallingWebServer) server).getStartupSignal().await(timeout, TimeUnit.SECONDS);
+            } else {
+                awaitPortOpen(server, timeout);
+            }
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(
+                    String.format(
+                            "Server on port %s is not available: %s. " +
+                                    "When debugging make sure no breakpoints exist anywhere in the bootstrap call stack. " +
+                                    "If this problem persists, use @BootstrapConfig to increase the allowed startup time.",
+                            server.getPort(),
+                            e.getMessage()), e.getCause() != null ? e.getCause() : e);
+        }
+        server.waitForInitialisation();
+        serverConfigurations.get(server).getTimings().end(BootstrapTimings.Phase.READINESS);
+        startUpLatch.countDown();
+        log.info("Good-to-go for server on port {}. Total startup wait {} ms", server.getPort(), System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * Poll the server port until it accepts connections.
+     *
+     * @param server
+     * @param timeout in seconds
+     * @throws InterruptedException
+     * @throws IllegalStateException if the port is still closed after the timeout
+     */
+    private void awaitPortOpen(WebServer server, int timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
+        while (PortChecker.available(server.getPort())) {
+            if (System.nanoTime() - deadline >= 0) {
+                throw new IllegalStateException(String.format("Server did not start within %s seconds", timeout));
+            }
+            Thread.sleep(PORT_POLL_INTERVAL_MILLIS);
+        }
+    }
+
+    /**
+     * @param bootstrapConfig
+     * @return the startup timeout in seconds, falling back to the deprecated {@link BootstrapConfig#numberOfAttempts()}
+     */
+    @SuppressWarnings("deprecation")
+    static int getStartupTimeout(BootstrapConfig bootstrapConfig) {
+        if (bootstrapConfig.startupTimeout() != BootstrapConfig.DEFAULT_STARTUP_TIMEOUT) {
+            return bootstrapConfig.startupTimeout();
+        }
+        return bootstrapConfig.numberOfAttempts(); // one attempt per second
+    }
+
     /**
      * @param allServers
      * @throws IllegalArgumentException if any of the context configurations are inconsistent
@@ -390,6 +588,39 @@ public class ServerBootstrap {
         }
     }
 
+    /**
+     * Runs the server in the executor thread. {@link WebServer#start()} blocks until the server is shut down.
+     */
+    private class ServerRunner implements Runnable {
+
+        private final WebServer server;
+
+        private ServerRunner(WebServer server) {
+            this.server = server;
+        }
+
+        @Override
+        public void run() {
+            log.info("Starting the server {} on port {}", server.getName(), server.getPort());
+            serverConfigurations.get(server).getTimings().begin(BootstrapTimings.Phase.READINESS);
+            try {
+                server.start(); // block here ....
+            } catch (RuntimeException e) {
+                if (server instanceof SignallingWebServer) {
+                    ((SignallingWebServer) server).getStartupSignal().failed(e);
+                }
+                throw e;
+            } finally {
+                if (server instanceof SignallingWebServer) {
+                    // no-op if the server has already reported its startup
+                    ((SignallingWebServer) server).getStartupSignal().failed(new IllegalStateException("Server thread exited before the server was started"));
+                }
+                shutDownLatch.countDown();
+            }
+            log.info("Prepare to shut down the server '{}' on port {}", server.getName(), server.getPort());
+        }
+    }
+
     static class BootstrapUncaughtExceptionHandler implements Thread.UncaughtExceptionHandler {
 
         private static Logger logB = LoggerFactory.getLogger(BootstrapUncaughtExceptionHandler.class);
@@ -400,6 +631,147 @@ public class ServerBootstrap {
         }
     }
 
+    /**
+     * Write the bootstrap timings of all servers and their contexts, if a report directory is configured.
+     * The report is written only once: classes reusing the servers do not repeat it.
+     *
+     * @see ConfigurationConstants#TIMINGS_REPORT_DIR_SYSTEM_KEY
+     */
+    private void writeTimingsReport() {
+        String reportDir = System.getProperty(ConfigurationConstants.TIMINGS_REPORT_DIR_SYSTEM_KEY);
+        if (timingsReported || reportDir == null || reportDir.isEmpty()) {
+            return;
+        }
+        timingsReported = true;
+        String reportName = runner.getConfiguredTestClass().getName();
+        try {
+            BootstrapTimingsReport.write(new File(reportDir), reportName, serverConfigurations.values());
+            log.info("LOG00550: Bootstrap timings for '{}' written to {}", reportName, reportDir);
+        } catch (IOException e) {
+            log.error("LOG00560: Failed to write bootstrap timings report", e);
+        }
+    }
+
+    /**
+     * Mark the running test class as user of the client side resources (e.g. connection pools) attached to the server configurations.
+     */
+    private void retainSharedResources() {
+        synchronized (serverConfigurations) {
+            for (ServerConfiguration configuration : serverConfigurations.values()) {
+                configuration.retainSharedResources();
+            }
+        }
+    }
+
+    /**
+     * Release the client side resources used by the completed test class.
+     * <p/>
+     * They are closed only when no other test class uses them, so the resources of servers kept for reuse stay open.
+     */
+    private void releaseSharedResources() {
+        synchronized (serverConfigurations) {
+            for (ServerConfiguration configuration : serverConfigurations.values()) {
+                configuration.releaseSharedResources();
+            }
+        }
+    }
+
+    /**
+     * Close the client side resources attached to the server configurations, regardless of their users.
+     */
+    private void closeSharedResources() {
+        synchronized (serverConfigurations) {
+            for (ServerConfiguration configuration : serverConfigurations.values()) {
+                configuration.closeSharedResources();
+            }
+        }
+    }
+
+    /**
+     * Stop all servers started by this bootstrap and release their ports.
+     * <p/>
+     * Called after the tests, or when servers kept for reuse are evicted from the {@link ServerBootstrapCache}.
+     */
+    void shutdown() {
+        try {
+            closeSharedResources();
+            shutdownServers();
+        } finally {
+            releaseLeasedPorts();
+        }
+    }
+
+    private void shutdownServers() {
+        if (executorService != null) {
+            if (executorService.isTerminated() || executorService.isShutdown()) {
+                log.warn("Executor service has already been terminated. Perhaps uncaught exception shut down the server thread prematurely - see console/log output for details.");
+                return;
+            }
+            // System.err.println(String.format("executorService: isShutdown=%s, isTerminated=%s", executorService.isShutdown(), executorService.isTerminated()));
+            // System.err.println(String.format("shutDownLatch.count: %s", shutDownLatch.getCount()));
+            for (final WebServer server : servers) {
+                executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        log.info("Sending 'stop' signal to server on port {} ...", server.getPort());
+                        server.shutdown();
+                    }
+                });
+            }
+            log.info("Initiating executor service shutdown (>>)");
+            try {
+                shutDownLatch.await(ABSOLUTE_MAX_WAIT_FOR_SHUTDOWN, TimeUnit.SECONDS); // give each server some time to stop, else kill the threads forcefully.
+                executorService.shutdown();
+                executorService.awaitTermination(servers.size() * ABSOLUTE_MAX_WAIT_FOR_SHUTDOWN, TimeUnit.SECONDS);
+                log.info("Executor service shutdown complete - graceful servers wind-up in progress ... (<<)");
+
+                // shutdown hook
+                Class<? extends PostShutdownHook> shutdownHookClass = getBootstrapConfig().shutdownHook();
+                if (shutdownHookClass != PostShutdownHook.class) {
+                    log.info("LOG00400: Calling shutdown cleanup: {}", shutdownHookClass);
+                    try {
+                        shutdownHookClass.newInstance().onTestsComplete();
+                    } catch (Exception e) {
+                        log.error("LOG00410: Failed to execute shutdown cleanup!", e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                log.error("Unexpected InterruptedException", e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Clear the state left in the remote contexts by the previous test class: recorded mock behaviour and snooper delegates.
+     */
+    private void resetRemoteState() {
+        MockProviderSPI mockingProvider = PluggableServiceLoader.loadMockingProvider(false);
+        for (ServerExecutionConfiguration execution : executionSnapshot) {
+            if (!(execution.getSpringContext() instanceof ConfigurableApplicationContext)) {
+                continue;
+            }
+            ConfigurableListableBeanFactory factory = ((ConfigurableApplicationContext) execution.getSpringContext()).getBeanFactory();
+            List<Object> mocks = new ArrayList<Object>();
+            for (String name : factory.getSingletonNames()) {
+                Object singleton = factory.getSingleton(name);
+                if (singleton instanceof FactoryBean && ((FactoryBean) singleton).isSingleton()) {
+                    singleton = factory.getBean(name); // auto-mocks are created via factory beans
+                }
+                singleton = LazyMockProxy.getMaterialisedMock(singleton); // unused lazy mocks have nothing to reset
+                if (singleton instanceof SpringEventSnooper) {
+                    ((SpringEventSnooper) singleton).clear();
+                } else if (mockingProvider != null && singleton != null && mockingProvider.isMock(singleton)) {
+                    mocks.add(singleton);
+                }
+            }
+            if (!mocks.isEmpty()) {
+                log.info("LOG00510: Resetting {} remote mocks in context '{}'", mocks.size(), execution.getContextConfiguration().getContextPath());
+                mockingProvider.resetMocks(mocks);
+            }
+        }
+    }
+
     /**
      *
      */
@@ -407,9 +779,10 @@ public class ServerBootstrap {
 
         @Override
         public void beforeClass() {
-            // startup hook
+            retainSharedResources();
+            // startup hook: only before the tests which started the servers, a reusing class has the same hook but did not start anything
             Class<? extends PreStartupHook> startupHookClass = getBootstrapConfig().startupHook();
-            if (startupHookClass != PreStartupHook.class) {
+            if (startupHookClass != PreStartupHook.class && executionSnapshot == null) {
                 log.info("LOG00400: Calling shutdown cleanup: {}", startupHookClass);
                 try {
                     startupHookClass.newInstance().beforeTestsCommence();
@@ -419,8 +792,21 @@ public class ServerBootstrap {
                 }
             }
             log.info(" ================= All tests STARTING ... ================= ");
+            if (executionSnapshot != null) {
+                // servers are reused from a previous test class: restore the registry and reset what the previous class left behind.
+                ServerExecutionRegistry.register(executionSnapshot);
+                resetRemoteState();
+                return;
+            }
             // initialise registry  before the tests start.
             ServerExecutionRegistry.initialise();
+            if (fingerprint != null) {
+                if (ServerBootstrapCache.getInstance().put(fingerprint, ServerBootstrap.this)) {
+                    executionSnapshot = ServerExecutionRegistry.getAllServers();
+                } else {
+                    fingerprint = null; // not cached: shut down after this class as usual
+                }
+            }
         }
 
 
@@ -429,49 +815,47 @@ public class ServerBootstrap {
             log.info(" ================= All tests COMPLETE: SHUTTING DOWN ... ================= ");
             // System.err.println("All tests finished - doing clean-up...");
             ServerExecutionRegistry.cleanup(); // don't need these anymore, so we cleanup ready for other tests executed in this JVM instance.
-            log.debug("ServerExecutionRegistry cleaned - shutting down the servers...");
-            if (executorService != null) {
-                if (executorService.isTerminated() || executorService.isShutdown()) {
-                    log.warn("Executor service has already been terminated. Perhaps uncaught exception shut down the server thread prematurely - see console/log output for details.");
-                    return;
-                }
-                // System.err.println(String.format("executorService: isShutdown=%s, isTerminated=%s", executorService.isShutdown(), executorService.isTerminated()));
-                // System.err.println(String.format("shutDownLatch.count: %s", shutDownLatch.getCount()));
-                for (final WebServer server : servers) {
-                    executorService.execute(new Runnable() {
-                        @Override
-                        public void run() {
-                            log.info("Sending 'stop' signal to server on port {} ...", server.getPort());
-                            server.shutdown();
-                        }
-                    });
-                }
-                log.info("Initiating executor service shutdown (>>)");
-                try {
-                    shutDownLatch.await(ABSOLUTE_MAX_WAIT_FOR_SHUTDOWN, TimeUnit.SECONDS); // give each server some time to stop, else kill the threads forcefully.
-                    executorService.shutdown();
-                    executorService.awaitTermination(servers.size() * ABSOLUTE_MAX_WAIT_FOR_SHUTDOWN, TimeUnit.SECONDS);
-                    log.info("Executor service shutdown complete - graceful servers wind-up in progress ... (<<)");
-
-                    // shutdown hook
-                    Class<? extends PostShutdownHook> shutdownHookClass = getBootstrapConfig().shutdownHook();
-                    if (shutdownHookClass != PostShutdownHook.class) {
-                        log.info("LOG00400: Calling shutdown cleanup: {}", shutdownHookClass);
-                        try {
-                            shutdownHookClass.newInstance().onTestsComplete();
-                        } catch (Exception e) {
-                            log.error("LOG00410: Failed to execute shutdown cleanup!", e);
-                        }
-                    }
-                } catch (InterruptedException e) {
-                    log.error("Unexpected InterruptedException", e);
-                    throw new RuntimeException(e);
-                }
+            releaseSharedResources();
+            writeTimingsReport();
+            if (executionSnapshot != null) {
+                log.info("LOG00520: Servers are kept running for reuse by other test classes");
+                ServerBootstrapCache.getInstance().release(fingerprint);
+                return;
             }
+            if (fingerprint != null) {
+                ServerBootstrapCache.getInstance().cancel(fingerprint); // reserved, but the servers never made it into the cache
+            }
+            log.debug("ServerExecutionRegistry cleaned - shutting down the servers...");
+            shutdown();
         }
     }
 
     ServersRunstateListener runAll() {
+        BootstrapConfig bootstrapConfig = getBootstrapConfig();
+        if (bootstrapConfig.reuseServers()) {
+            fingerprint = ServerBootstrapCache.fingerprint(getServerAnnotations(), bootstrapConfig, getSecurityPolicy());
+            ServerBootstrap running = ServerBootstrapCache.getInstance().acquire(fingerprint);
+            if (running != null) {
+                log.info("LOG00500: [BOOTSTRAP] Reusing running servers for class '{}'", runner.getConfiguredTestClass().getName());
+                return running.new ServersRunstateListener();
+            }
+            if (!ServerBootstrapCache.getInstance().reserve(fingerprint)) {
+                // another class is starting (or has just started) the same servers: run this one on its own servers
+                log.info("LOG00820: [BOOTSTRAP] Servers for class '{}' are being started by another class, starting uncached servers", runner.getConfiguredTestClass().getName());
+                fingerprint = null;
+            }
+        }
+        try {
+            return startAll();
+        } catch (RuntimeException e) {
+            if (fingerprint != null) {
+                ServerBootstrapCache.getInstance().cancel(fingerprint);
+            }
+            throw e;
+        }
+    }
+
+    private ServersRunstateListener startAll() {
         // startup hook
         Class<? extends PreStartupHook> startupHookClass = getBootstrapConfig().startupHook();
         if (startupHookClass != PreStartupHook.class) {
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.junit;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jmockring.annotation.BootstrapConfig;
+import org.jmockring.annotation.Server;
+import org.jmockring.configuration.ConfigurationConstants;
+
+/**
+ * JVM-wide cache of running servers, to be reused by test classes with identical configuration.
+ * <p/>
+ * Entries are keyed by a canonical fingerprint of the configuration annotations and evicted in least-recently-used order.
+ * Each entry counts the test classes currently using its servers: only entries with no users are evicted (and their servers shut down),
+ * so the cache may temporarily grow beyond its size while all entries are in use. The remaining servers are shut down when the JVM exits.
+ * <p/>
+ * A test class starting the servers for a configuration first {@link #reserve(String) reserves} its fingerprint, so a concurrent
+ * test class with the same configuration does not start a second set of servers competing for the same entry.
+ *
+ * @date 17/10/26
+ * @see org.jmockring.annotation.BootstrapConfig#reuseServers()
+ */
+final class ServerBootstrapCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ServerBootstrapCache.class);
+
+    private static final int DEFAULT_SIZE = 3;
+
+    private static final ServerBootstrapCache INSTANCE = new ServerBootstrapCache(Integer.getInteger(ConfigurationConstants.SERVER_CACHE_SIZE_SYSTEM_KEY, DEFAULT_SIZE));
+
+    private final int maxSize;
+
+    /**
+     * In access order: the eldest entry is the least recently used.
+     */
+    private final LinkedHashMap<String, Entry> running = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private boolean shutdownHookRegistered;
+
+    ServerBootstrapCache(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    static ServerBootstrapCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the running servers for this configuration and register one more user of them.
+     * Every successful call must be paired with a {@link #release(String)}.
+     *
+     * @param fingerprint
+     * @return the bootstrap with running servers for this configuration or null
+     * @should return null for unknown configuration
+     * @should return cached bootstrap for known configuration
+     */
+    synchronized ServerBootstrap acquire(String fingerprint) {
+        Entry entry = running.get(fingerprint);
+        if (entry == null || entry.bootstrap == null) {
+            return null;
+        }
+        entry.users++;
+        return entry.bootstrap;
+    }
+
+    /**
+     * Reserve the entry for a configuration whose servers are about to be started by the caller.
+     * <p/>
+     * Until the caller {@link #put(String, ServerBootstrap) puts} the started servers or {@link #cancel(String) cancels} the reservation,
+     * other callers with the same configuration can neither acquire nor reserve it: they start their own servers without caching them.
+     *
+     * @param fingerprint
+     * @return true if the caller now owns the entry, false if it is already reserved or running
+     * @should reserve unknown configuration only once
+     */
+    synchronized boolean reserve(String fingerprint) {
+        if (running.containsKey(fingerprint)) {
+            return false;
+        }
+        running.put(fingerprint, new Entry(null));
+        return true;
+    }
+
+    /**
+     * Drop the reservation made with {@link #reserve(String)}, e.g. because the servers failed to start.
+     *
+     * @param fingerprint
+     */
+    synchronized void cancel(String fingerprint) {
+        Entry entry = running.get(fingerprint);
+        if (entry != null && entry.bootstrap == null) {
+            running.remove(fingerprint);
+        }
+    }
+
+    /**
+     * Keep the servers of a successfully started bootstrap, evicting the least recently used idle ones if the cache is full.
+     * The caller is registered as the first user of the servers.
+     * <p/>
+     * Servers already cached for this configuration are never replaced: the caller must then shut down its own servers itself.
+     *
+     * @param fingerprint
+     * @param bootstrap
+     * @return true if the servers are now cached, false if other servers are cached for this configuration
+     * @should shut down least recently used idle servers when full
+     * @should not shut down servers in use
+     * @should not replace running servers
+     */
+    synchronized boolean put(String fingerprint, ServerBootstrap bootstrap) {
+        Entry entry = running.get(fingerprint);
+        if (entry != null && entry.bootstrap != null && entry.bootstrap != bootstrap) {
+            log.warn("LOG00810: Servers for this configuration are already cached, the new servers will not be reused");
+            return false;
+        }
+        running.put(fingerprint, new Entry(bootstrap));
+        registerShutdownHook();
+        evictIdle();
+        return true;
+    }
+
+    /**
+     * Unregister a user of the servers for this configuration. Idle servers stay running unless the cache is over its size.
+     *
+     * @param fingerprint
+     * @should shut down released servers if the cache is over its size
+     */
+    synchronized void release(String fingerprint) {
+        Entry entry = running.get(fingerprint);
+        if (entry != null && entry.bootstrap != null && entry.users > 0) {
+            entry.users--;
+            evictIdle();
+        }
+    }
+
+    /**
+     * Shut down all cached servers.
+     */
+    synchronized void shutdownAll() {
+        for (Entry entry : running.values()) {
+            if (entry.bootstrap == null) {
+                continue; // reserved only: its servers are not cached yet
+            }
+            try {
+                entry.bootstrap.shutdown();
+            } catch (RuntimeException e) {
+                log.error("LOG00540: Failed to shut down cached servers", e);
+            }
+        }
+        running.clear();
+    }
+
+    private void evictIdle() {
+        Iterator<Entry> eldest = running.values().iterator();
+        while (running.size() > maxSize && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            if (entry.users == 0 && entry.bootstrap != null) {
+                eldest.remove();
+                log.info("LOG00530: Cache is full ({} entries): shutting down least recently used servers", maxSize);
+                entry.bootstrap.shutdown();
+            }
+        }
+    }
+
+    private void registerShutdownHook() {
+        if (shutdownHookRegistered) {
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread("ServerBootstrapCacheShutdown") {
+            @Override
+            public void run() {
+                shutdownAll();
+            }
+        });
+        shutdownHookRegistered = true;
+    }
+
+    /**
+     * Build a canonical representation of the servers configuration.
+     * <p/>
+     * All annotation members are included in a fixed (alphabetical) order. {@link Server#testClass()} is replaced by the code source location
+     * of the class, as it is only used to resolve resources relative to that location.
+     *
+     * @param servers
+     * @param bootstrapConfig
+     * @param securityPolicy
+     * @return
+     * @should create same fingerprint for identical configurations on different classes
+     * @should create different fingerprints for different configurations
+     */
+    static String fingerprint(Server[] servers, BootstrapConfig bootstrapConfig, String securityPolicy) {
+        StringBuilder sb = new StringBuilder();
+        appendAnnotation(sb, bootstrapConfig);
+        sb.append("|security=").append(securityPolicy);
+        for (Server server : servers) {
+            sb.append('|');
+            appendAnnotation(sb, server);
+        }
+        return sb.toString();
+    }
+
+    private static void appendAnnotation(StringBuilder sb, Annotation annotation) {
+        List<Method> members = new ArrayList<Method>(Arrays.asList(annotation.annotationType().getDeclaredMethods()));
+        Collections.sort(members, new Comparator<Method>() {
+            @Override
+            public int compare(Method m1, Method m2) {
+                return m1.getName().compareTo(m2.getName());
+            }
+        });
+        sb.append('@').append(annotation.annotationType().getName()).append('(');
+        for (Method member : members) {
+            Object value;
+            try {
+                value = member.invoke(annotation);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException(e);
+            }
+            if (annotation instanceof Server && "testClass".equals(member.getName())) {
+                value = codeSourceLocation((Class<?>) value);
+            }
+            sb.append(member.getName()).append('=');
+            appendValue(sb, value);
+            sb.append(',');
+        }
+        sb.append(')');
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value instanceof Annotation) {
+            appendAnnotation(sb, (Annotation) value);
+        } else if (value instanceof Class) {
+            sb.append(((Class) value).getName());
+        } else if (value != null && value.getClass().isArray()) {
+            sb.append('[');
+            for (int i = 0; i < Array.getLength(value); i++) {
+                appendValue(sb, Array.get(value, i));
+                sb.append(';');
+            }
+            sb.append(']');
+        } else if (value instanceof String) {
+            // length-prefixed, so separators inside the value can't produce the same fingerprint for different configurations
+            sb.append(((String) value).length()).append(':').append(value);
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static String codeSourceLocation(Class<?> testClass) {
+        CodeSource codeSource = testClass.getProtectionDomain().getCodeSource();
+        URL location = codeSource != null ? codeSource.getLocation() : null;
+        return location != null ? location.toString() : testClass.getName();
+    }
+
+    private static final class Entry {
+
+        /**
+         * Null while the entry is only reserved.
+         */
+        private final ServerBootstrap bootstrap;
+
+        /**
+         * Number of test classes currently running against the servers.
+         */
+        private int users = 1;
+
+        private Entry(ServerBootstrap bootstrap) {
+            this.bootstrap = bootstrap;
+        }
+    }
+}
@@ -77,7 +77,7 @@ public interface MockProviderSPI {
     void processTestClass(Class testClass, Object testInstance);
 
     /**
-     * Clears the state of any used mocks.
+     * Clears the state of any used mocks, as well as the framework's own state (e.g. unfinished stubbing), even if the collection is empty.
      *
      * @param usedMocks
      */
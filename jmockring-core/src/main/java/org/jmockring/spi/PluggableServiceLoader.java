@@ -21,6 +21,9 @@
 
 package org.jmockring.spi;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.ServiceLoader;
 
 import org.slf4j.Logger;
@@ -31,6 +34,10 @@ import org.jmockring.configuration.ServerConfiguration;
 
 /**
  * Utility class to load SPI providers.
+ * <p/>
+ * The providers are discovered once per JVM: the first active mocking provider is memoised and the request clients
+ * are indexed by their {@link RequestClientSPI#clientClass()}. All lookups after the first one are plain reads and
+ * are safe to use from parallel test runners.
  *
  * @author Pavel Lechev
  * @version 0.0.1
@@ -40,10 +47,16 @@ public final class PluggableServiceLoader {
 
     private static final Logger log = LoggerFactory.getLogger(PluggableServiceLoader.class);
 
+    private static final Object LOCK = new Object();
+
     private static ServiceLoader<RequestClientSPI> requestClientLoader = ServiceLoader.load(RequestClientSPI.class);
 
     private static ServiceLoader<MockProviderSPI> mockringLoader = ServiceLoader.load(MockProviderSPI.class);
 
+    private static volatile Map<Class<?>, RequestClientSPI> requestClients;
+
+    private static volatile MockProviderResolution mockProviderResolution;
+
     private PluggableServiceLoader() {
     }
 
@@ -58,16 +71,17 @@ public final class PluggableServiceLoader {
     public static <T extends Object> T loadRequestClient(Class<?> requiredType,
                                                          ServerConfiguration serverConfiguration,
                                                          BaseContextConfiguration contextConfiguration) {
-        for (RequestClientSPI<T> clientProvider : requestClientLoader) {
-            if (clientProvider.clientClass() == requiredType) {
-                return clientProvider.createClient(serverConfiguration, contextConfiguration);
-            }
+        RequestClientSPI<T> clientProvider = getRequestClients().get(requiredType);
+        if (clientProvider != null) {
+            return clientProvider.createClient(serverConfiguration, contextConfiguration);
         }
         return null;
     }
 
     /**
      * Load the first available mocking provider or throw exception, if none is found on the classpath.
+     * <p/>
+     * The providers are scanned on the first call only, subsequent calls return the same provider instance.
      *
      * @param isRequired true if failure to find one should result in an error. Can be `false` if auto-mocking is not enabled,
      *                   which means we don't care if a mocking framework is being used.
@@ -75,19 +89,71 @@ public final class PluggableServiceLoader {
      * @return
      */
     public static MockProviderSPI loadMockingProvider(boolean isRequired) {
+        MockProviderResolution resolution = getMockProviderResolution();
+        if (resolution.provider == null && isRequired) {
+            throw new IllegalStateException("Can't find active mocking provider on the classpath. Scanned providers are: " + resolution.registered);
+        }
+        return resolution.provider;
+    }
+
+    private static Map<Class<?>, RequestClientSPI> getRequestClients() {
+        Map<Class<?>, RequestClientSPI> clients = requestClients;
+        if (clients == null) {
+            synchronized (LOCK) {
+                clients = requestClients;
+                if (clients == null) {
+                    clients = new HashMap<Class<?>, RequestClientSPI>();
+                    for (RequestClientSPI clientProvider : requestClientLoader) {
+                        // keep the first registered provider for each client class
+                        if (!clients.containsKey(clientProvider.clientClass())) {
+                            clients.put(clientProvider.clientClass(), clientProvider);
+                        }
+                    }
+                    requestClients = clients = Collections.unmodifiableMap(clients);
+                }
+            }
+        }
+        return clients;
+    }
+
+    private static MockProviderResolution getMockProviderResolution() {
+        MockProviderResolution resolution = mockProviderResolution;
+        if (resolution == null) {
+            synchronized (LOCK) {
+                resolution = mockProviderResolution;
+                if (resolution == null) {
+                    resolution = mockProviderResolution = resolveMockProvider();
+                }
+            }
+        }
+        return resolution;
+    }
+
+    private static MockProviderResolution resolveMockProvider() {
         StringBuilder registered = new StringBuilder();
         for (MockProviderSPI mockProvider : mockringLoader) {
             registered.append(mockProvider.providerName()).append(" ");
             if (mockProvider.isActive()) {
                 log.info("LOG00020: Using mocking provider: {}", mockProvider.providerName());
-                return mockProvider;
+                return new MockProviderResolution(mockProvider, registered.toString());
             }
         }
-        if (isRequired) {
-            throw new IllegalStateException("Can't find active mocking provider on the classpath. Scanned providers are: " + registered);
-        }
-        return null;
+        return new MockProviderResolution(null, registered.toString());
     }
 
+    /**
+     * Outcome of the one-off mocking provider scan.
+     */
+    private static final class MockProviderResolution {
+
+        private final MockProviderSPI provider;
+
+        private final String registered;
+
+        private MockProviderResolution(MockProviderSPI provider, String registered) {
+            this.provider = provider;
+            this.registered = registered;
+        }
+    }
 
 }
@@ -37,6 +37,7 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.web.context.support.XmlWebApplicationContext;
 
 import org.jmockring.configuration.BaseContextConfiguration;
+import org.jmockring.configuration.BootstrapTimings;
 import org.jmockring.configuration.ConfigurationConstants;
 import org.jmockring.configuration.ServerConfiguration;
 import org.jmockring.configuration.ServerConfigurationAware;
@@ -103,7 +104,16 @@ public class CusomizableXMLWebApplicationContext extends XmlWebApplicationContex
         // Allow a subclass to provide custom initialization of the reader,
         // then proceed with actually loading the bean definitions.
         super.initBeanDefinitionReader(beanDefinitionReader);
+        long started = System.nanoTime();
         super.loadBeanDefinitions(beanDefinitionReader);
+        baseContextConfiguration.getTimings().record(BootstrapTimings.Phase.BEAN_DEFINITION_LOADING, started);
+    }
+
+    @Override
+    protected void finishBeanFactoryInitialization(ConfigurableListableBeanFactory beanFactory) {
+        long started = System.nanoTime();
+        super.finishBeanFactoryInitialization(beanFactory);
+        baseContextConfiguration.getTimings().record(BootstrapTimings.Phase.SINGLETON_INSTANTIATION, started);
     }
 
 
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.spring.mock;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import org.jmockring.configuration.BaseContextConfiguration;
+import org.jmockring.configuration.ConfigurationConstants;
+
+/**
+ * The outcome of the auto-mock analysis of a context: which definitions were removed and which mock definitions were registered, in order.
+ * <p/>
+ * Plans are cached on disk (see {@link ConfigurationConstants#AUTOMOCK_CACHE_DIR_SYSTEM_KEY}), keyed by a hash of everything the analysis reads from the context:
+ * the bean definitions as loaded from the XML files, the registered singletons and the auto-mock settings of the context.
+ * The plan also records the class files consulted by the analysis, and is discarded if any of them has changed since.
+ *
+ * @date 17/10/26
+ */
+final class AutoMockPlan {
+
+    private static final Logger log = LoggerFactory.getLogger(AutoMockPlan.class);
+
+    private static final String FORMAT = "jmockring-automock-plan-1";
+
+    private static final String CLASS = "class";
+
+    private final List<Operation> operations = new ArrayList<Operation>();
+
+    /**
+     * @return the cache directory, or null if plans are not cached
+     */
+    static File getCacheDirectory() {
+        String location = System.getProperty(ConfigurationConstants.AUTOMOCK_CACHE_DIR_SYSTEM_KEY);
+        return location != null && location.trim().length() > 0 ? new File(location.trim()) : null;
+    }
+
+    /**
+     * Must be called before the bean factory is modified by the analysis.
+     *
+     * @param factory
+     * @param configuration
+     *
+     * @return
+     * @should create same key for same definitions
+     * @should create different key when a bean reference changes
+     */
+    static String key(DefaultListableBeanFactory factory, BaseContextConfiguration configuration) {
+        Digest digest = new Digest();
+        digest.update(FORMAT);
+        digest.update(configuration.isEnableAutoMocks(), configuration.isLazyMocks());
+        digest.update((Object[]) configuration.getExcludedContextLocationPatterns());
+        for (Class forcedMockType : configuration.getForcedMockTypes()) {
+            digest.update(forcedMockType.getName());
+        }
+        for (String name : factory.getBeanDefinitionNames()) {
+            BeanDefinition definition = factory.getBeanDefinition(name);
+            digest.update(name, definition.getBeanClassName(), definition.getFactoryBeanName(), definition.getFactoryMethodName(), definition.isAbstract());
+            digest.update((Object[]) factory.getAliases(name));
+            for (PropertyValue value : definition.getPropertyValues().getPropertyValueList()) {
+                digest.update(value.getName(), reference(value.getValue()));
+            }
+            ConstructorArgumentValues arguments = definition.getConstructorArgumentValues();
+            for (Map.Entry<Integer, ConstructorArgumentValues.ValueHolder> argument : arguments.getIndexedArgumentValues().entrySet()) {
+                digest.update(argument.getKey(), reference(argument.getValue().getValue()));
+            }
+            for (ConstructorArgumentValues.ValueHolder argument : arguments.getGenericArgumentValues()) {
+                digest.update(reference(argument.getValue()));
+            }
+        }
+        for (String name : factory.getSingletonNames()) {
+            Object singleton = factory.getSingleton(name);
+            digest.update(name, singleton != null ? singleton.getClass().getName() : null);
+        }
+        return digest.toHex();
+    }
+
+    /**
+     * @param cacheDir
+     * @param key
+     * @param classScanner used to check the recorded class files
+     *
+     * @return the cached plan, or null if there is no valid plan for this key
+     * @should load the stored operations
+     * @should not load plan if a recorded class file has changed
+     */
+    static AutoMockPlan load(File cacheDir, String key, BeanClassScanner classScanner) {
+        File file = new File(cacheDir, key + ".plan");
+        if (!file.isFile()) {
+            return null;
+        }
+        AutoMockPlan plan = new AutoMockPlan();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                if (!FORMAT.equals(reader.readLine())) {
+                    return null;
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t", -1);
+                    if (CLASS.equals(fields[0])) {
+                        if (!fields[2].equals(classScanner.classFileStamp(fields[1]))) {
+                            log.debug("Cached auto-mock plan {} is stale: class {} has changed", key, fields[1]);
+                            return null;
+                        }
+                    } else {
+                        plan.operations.add(new Operation(Operation.Kind.valueOf(fields[0]), fields[1], fields[2].length() > 0 ? fields[2] : null));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            log.warn("LOG00600: Can't read auto-mock plan " + file, e);
+            return null;
+        } catch (RuntimeException e) {
+            log.warn("LOG00600: Can't read auto-mock plan " + file, e);
+            return null;
+        }
+        return plan;
+    }
+
+    /**
+     * Write the plan along with the stamps of all class files consulted by the scanner.
+     *
+     * @param cacheDir
+     * @param key
+     * @param classScanner
+     * @should store plan which reproduces the full analysis
+     */
+    void store(File cacheDir, String key, BeanClassScanner classScanner) {
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            log.warn("LOG00600: Can't create auto-mock plan cache directory {}", cacheDir);
+            return;
+        }
+        File file = new File(cacheDir, key + ".plan");
+        // concurrent JVMs may write the same plan: write a private file and replace the plan in one step
+        File tempFile = new File(cacheDir, key + "." + System.nanoTime() + ".tmp");
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8");
+            try {
+                writer.write(FORMAT + "\n");
+                for (String className : classScanner.getConsultedClassNames()) {
+                    writer.write(CLASS + "\t" + className + "\t" + classScanner.classFileStamp(className) + "\n");
+                }
+                for (Operation operation : operations) {
+                    writer.write(operation.kind + "\t" + operation.beanName + "\t" + (operation.typeName != null ? operation.typeName : "") + "\n");
+                }
+            } finally {
+                writer.close();
+            }
+            if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+                throw new IOException("Can't rename " + tempFile + " to " + file);
+            }
+            log.debug("LOG00590: Stored auto-mock plan {} with {} operations", file, operations.size());
+        } catch (IOException e) {
+            log.warn("LOG00600: Can't write auto-mock plan " + file, e);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    void recordMock(String beanName, Class type) {
+        operations.add(new Operation(Operation.Kind.MOCK, beanName, type.getName()));
+    }
+
+    void recordProperties(String beanName, Class type) {
+        operations.add(new Operation(Operation.Kind.PROPERTIES, beanName, type.getName()));
+    }
+
+    void recordRemoval(String beanName) {
+        operations.add(new Operation(Operation.Kind.REMOVE, beanName, null));
+    }
+
+    List<Operation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    private static String reference(Object value) {
+        return value instanceof RuntimeBeanReference ? "ref:" + ((RuntimeBeanReference) value).getBeanName() : "value";
+    }
+
+    /**
+     * Single step of the plan.
+     */
+    static final class Operation {
+
+        enum Kind {
+            /**
+             * Remove the bean definition.
+             */
+            REMOVE,
+            /**
+             * Register a {@link SpringMockitoFactory} definition for the type.
+             */
+            MOCK,
+            /**
+             * Register a {@link CustomPropertiesFactory} definition.
+             */
+            PROPERTIES
+        }
+
+        private final Kind kind;
+
+        private final String beanName;
+
+        private final String typeName;
+
+        private Operation(Kind kind, String beanName, String typeName) {
+            this.kind = kind;
+            this.beanName = beanName;
+            this.typeName = typeName;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        String getBeanName() {
+            return beanName;
+        }
+
+        /**
+         * @return null for {@link Kind#REMOVE}
+         */
+        String getTypeName() {
+            return typeName;
+        }
+    }
+
+    /**
+     * SHA-1 over a sequence of values, each one delimited so that adjacent values can't run into each other.
+     */
+    private static final class Digest {
+
+        private final MessageDigest messageDigest;
+
+        private Digest() {
+            try {
+                messageDigest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void update(Object... values) {
+            try {
+                for (Object value : values) {
+                    String text = String.valueOf(value);
+                    messageDigest.update((text.length() + ":" + text + ";").getBytes("UTF-8"));
+                }
+                messageDigest.update((byte) '\n');
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private String toHex() {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : messageDigest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        }
+    }
+}
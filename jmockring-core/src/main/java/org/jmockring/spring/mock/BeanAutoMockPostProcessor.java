@@ -25,14 +25,9 @@ import static java.lang.String.format;
 
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.AccessibleObject;
-import java.lang.reflect.Constructor;
+import java.io.File;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -42,22 +37,16 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import javax.annotation.Resource;
-import javax.inject.Inject;
-import javax.inject.Named;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.PersistenceContext;
 
 import org.jmockring.configuration.BaseContextConfiguration;
+import org.jmockring.configuration.BootstrapTimings;
 import org.jmockring.spring.SpringContextUtils;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.MutablePropertyValues;
 import org.springframework.beans.PropertyValue;
-import org.springframework.beans.factory.FactoryBean;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.config.ConstructorArgumentValues;
@@ -70,9 +59,7 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.annotation.PersistenceExceptionTranslationPostProcessor;
-
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
+import org.springframework.util.ClassUtils;
 
 /**
  * Create Mockito mocks for all unavailable beans ...
@@ -88,10 +75,16 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
 
     private ApplicationContext applicationContext;
 
-    private Set<Class> availableFactoredTypes = null; // this must be null initially
+    private BeanTypeIndex beanTypeIndex; // only available while the bean definitions are analysed
+
+    private AutoMockPlan plan; // only when the plans are cached
 
     private Set<MockedBeanDescriptor> createdForcedMocks = new HashSet<MockedBeanDescriptor>();
 
+    private final Map<String, String> forceMockedBeanNames = new HashMap<String, String>();
+
+    private final BeanClassScanner classScanner = new BeanClassScanner(BeanAutoMockPostProcessor.class.getClassLoader());
+
     private final BaseContextConfiguration contextConfiguration;
 
     public BeanAutoMockPostProcessor(BaseContextConfiguration contextConfiguration) {
@@ -108,11 +101,75 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
      */
     @Override
     public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+        long started = System.nanoTime();
+        analyseBeanDefinitions(registry);
+        contextConfiguration.getTimings().record(BootstrapTimings.Phase.AUTO_MOCK, started);
+    }
+
+    private void analyseBeanDefinitions(BeanDefinitionRegistry registry) {
         DefaultListableBeanFactory factory = (DefaultListableBeanFactory) registry;
+        File planCacheDir = AutoMockPlan.getCacheDirectory();
+        String planKey = null;
+        if (planCacheDir != null) {
+            planKey = AutoMockPlan.key(factory, contextConfiguration);
+            AutoMockPlan cachedPlan = AutoMockPlan.load(planCacheDir, planKey, classScanner);
+            if (cachedPlan != null) {
+                applyPlan(factory, cachedPlan);
+                log.info("LOG00580: Applied cached auto-mock plan {} to context '{}'", planKey, contextConfiguration.getContextPath());
+                return;
+            }
+            plan = new AutoMockPlan();
+        }
         if (contextConfiguration.getForcedMockTypes().length > 0) {
             processForcedMocks(factory);
         }
+        beanTypeIndex = new BeanTypeIndex(factory, classScanner);
+        try {
+            processBeanDefinitions(factory);
+            if (plan != null) {
+                plan.store(planCacheDir, planKey, classScanner);
+            }
+        } finally {
+            beanTypeIndex = null;
+            plan = null;
+            forceMockedBeanNames.clear();
+        }
+    }
 
+    /**
+     * Repeat the registrations and removals of a previous analysis of the same context.
+     *
+     * @param factory
+     * @param cachedPlan
+     */
+    private void applyPlan(DefaultListableBeanFactory factory, AutoMockPlan cachedPlan) {
+        for (AutoMockPlan.Operation operation : cachedPlan.getOperations()) {
+            String beanName = operation.getBeanName();
+            switch (operation.getKind()) {
+                case REMOVE:
+                    factory.removeBeanDefinition(beanName);
+                    mockedBeans.remove(beanName);
+                    break;
+                case MOCK:
+                    defineMock(factory, beanName, loadPlannedType(operation));
+                    break;
+                case PROPERTIES:
+                    defineProperties(factory, beanName, loadPlannedType(operation));
+                    break;
+            }
+        }
+    }
+
+    private Class loadPlannedType(AutoMockPlan.Operation operation) {
+        try {
+            return classScanner.load(operation.getTypeName());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Type in cached auto-mock plan is not available: " + operation.getTypeName(), e);
+        }
+    }
+
+    private void processBeanDefinitions(DefaultListableBeanFactory factory) {
+        BeanDefinitionRegistry registry = factory;
         Set<String> overriddenForcedMocks = new HashSet<String>();
         for (String beanName : factory.getBeanDefinitionNames()) {
             BeanDefinition owningBeanDefinition = registry.getBeanDefinition(beanName);
@@ -129,20 +186,20 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
             }
 
             try {
-                Class beanClass = Class.forName(beanClassName);
-                String forceMockedBeanName = getForceMockedBeanName(beanClass);
+                // the bean class is only loaded if it needs to be mocked
+                String forceMockedBeanName = getForceMockedBeanName(beanClassName);
                 if (forceMockedBeanName != null) {
-                    registry.removeBeanDefinition(beanName);
-                    registerMockedBean(factory, beanName, beanClass);
+                    removeDefinition(factory, beanName);
+                    registerMockedBean(factory, beanName, classScanner.load(beanClassName));
                     overriddenForcedMocks.add(forceMockedBeanName);
-                    log.info("LOG00380: Overriding bean definition factory name for bean [{}={}] as its type is already force-mocked", beanName, beanClass.getName());
+                    log.info("LOG00380: Overriding bean definition factory name for bean [{}={}] as its type is already force-mocked", beanName, beanClassName);
                     // this bean will be mocked, no need to rocess its dependencies, so we skip the rest of its processing
                     continue;
                 }
                 if (contextConfiguration.isEnableAutoMocks()) {
                     // System.err.println(">>>>>>>>> Check class for creating referenced mocks: " + beanClass);
-                    processAnnotatedDependencies(factory, beanClass);
-                    processExtraDependencies(factory, beanClass, owningBeanDefinition);
+                    processAnnotatedDependencies(factory, classScanner.scan(beanClassName));
+                    processExtraDependencies(factory, beanClassName, owningBeanDefinition);
                 }
             } catch (Exception e) {
                 log.error("LOG00160:", e);
@@ -150,7 +207,7 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
         }
 
         for (String overriddenForcedMockName : overriddenForcedMocks) {
-            registry.removeBeanDefinition(overriddenForcedMockName);
+            removeDefinition(factory, overriddenForcedMockName);
             mockedBeans.remove(overriddenForcedMockName);
             log.info("LOG00390: Removing overridden forced-mock definition for name = {}", overriddenForcedMockName);
         }
@@ -161,17 +218,25 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
     }
 
     /**
-     * @param type
+     * The forced mocks are all created before the bean definitions are processed, so the result is cached per type.
+     *
+     * @param typeName
      *
      * @return
      */
-    private String getForceMockedBeanName(Class type) {
+    private String getForceMockedBeanName(String typeName) throws ClassNotFoundException {
+        if (forceMockedBeanNames.containsKey(typeName)) {
+            return forceMockedBeanNames.get(typeName);
+        }
+        String forceMockedBeanName = null;
         for (MockedBeanDescriptor mockedDescriptor : createdForcedMocks) {
-            if (mockedDescriptor.getType().isAssignableFrom(type)) {
-                return mockedDescriptor.getName();
+            if (classScanner.isAssignable(mockedDescriptor.getType().getName(), typeName)) {
+                forceMockedBeanName = mockedDescriptor.getName();
+                break;
             }
         }
-        return null;
+        forceMockedBeanNames.put(typeName, forceMockedBeanName);
+        return forceMockedBeanName;
     }
 
 
@@ -187,7 +252,7 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
      */
     private void processForcedMocks(DefaultListableBeanFactory factory) {
         for (Class<?> typeToForceMock : contextConfiguration.getForcedMockTypes()) {
-            String beanName = getSpringCompatibleBeanName(typeToForceMock);
+            String beanName = getSpringCompatibleBeanName(typeToForceMock.getSimpleName());
             MockedBeanDescriptor descriptor = registerMockedBean(factory, beanName, typeToForceMock);
             if (descriptor != null) {
                 log.info("LOG00360: Created forced mock for bean [{}={}]", beanName, typeToForceMock.getName());
@@ -201,37 +266,26 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
     }
 
     /**
+     * The wiring metadata of each class is read from the class file and shared by all contexts in the JVM.
+     *
      * @param factory
      * @param beanClass
      *
      * @throws ClassNotFoundException
      */
-    private void processAnnotatedDependencies(DefaultListableBeanFactory factory, Class beanClass) throws ClassNotFoundException, NoSuchMethodException {
-        WiringOperation mockOperation = null;
-        List<AccessibleObject> annotationWiredMembers = getWiredMembers(beanClass);
-        if (annotationWiredMembers.size() > 0) {
-            for (final AccessibleObject accessibleObject : annotationWiredMembers) {
-                if (accessibleObject.getClass() == Field.class) {
-                    mockOperation = WiringOperation.FIELD;
-                } else if (accessibleObject.getClass() == Method.class) {
-                    mockOperation = WiringOperation.METHOD;
-                } else if (accessibleObject.getClass() == Constructor.class) {
-                    mockOperation = WiringOperation.CONSTRUCTOR;
-                }
-                if (mockOperation != null) {
-                    mockOperation.mock(this, factory, accessibleObject);
-                }
-            }
+    private void processAnnotatedDependencies(DefaultListableBeanFactory factory, BeanClassMetadata beanClass) throws ClassNotFoundException, NoSuchMethodException {
+        for (WiringMetadata.InjectionPoint injectionPoint : beanClass.getWiringMetadata().getInjectionPoints()) {
+            WiringOperation.valueOf(injectionPoint.getKind().name()).mock(this, factory, injectionPoint);
         }
     }
 
     /**
      * @param factory
-     * @param beanClass
+     * @param beanClassName
      * @param beanDefinition
      */
-    private void processExtraDependencies(DefaultListableBeanFactory factory, Class beanClass, BeanDefinition beanDefinition) throws NoSuchMethodException {
-        List<PropertyDescriptor> xmlWiredMembers = getXmlWiredMembers(beanClass, beanDefinition, factory);
+    private void processExtraDependencies(DefaultListableBeanFactory factory, String beanClassName, BeanDefinition beanDefinition) throws ClassNotFoundException, NoSuchMethodException {
+        List<PropertyDescriptor> xmlWiredMembers = getXmlWiredMembers(beanClassName, beanDefinition, factory);
         if (xmlWiredMembers.size() > 0) {
             // log.info("Processing XML defined properties for {} [{}]", beanClass.getName(), xmlWiredMembers);
             for (PropertyDescriptor pd : xmlWiredMembers) {
@@ -246,13 +300,13 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
     /**
      * This checks for any dependencies not identified via annotaiton wiring (e.g. from XMLs).
      *
-     * @param beanClass
+     * @param beanClassName
      * @param beanDefinition
      * @param factory
      *
      * @return
      */
-    private List<PropertyDescriptor> getXmlWiredMembers(Class beanClass, BeanDefinition beanDefinition, DefaultListableBeanFactory factory) throws NoSuchMethodException {
+    private List<PropertyDescriptor> getXmlWiredMembers(String beanClassName, BeanDefinition beanDefinition, DefaultListableBeanFactory factory) throws ClassNotFoundException, NoSuchMethodException {
 
         Map<String, RuntimeBeanReference> beanReferences = new HashMap<String, RuntimeBeanReference>();
         // check properties:
@@ -296,6 +350,7 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
 
                 // bean is not available
                 log.warn(">>> Referenced bean {} not available for {}: ", referencedBeanName, beanDefinition + "." + propertyName);
+                Class beanClass = classScanner.load(beanClassName);
                 PropertyDescriptor pd = BeanUtils.getPropertyDescriptor(beanClass, propertyName);
                 if (pd == null) {
                     // pd not found: check the fields:
@@ -337,7 +392,7 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
                             format("Can't find property descriptor for class [%s] and property [%s]", beanClass.getName(), referencedBeanName));
                 }
                 pd.setValue("referencedBeanName", referencedBeanName);
-                if (!isFactoryBeanAvailable(factory, pd.getPropertyType())) {
+                if (!isFactoryBeanAvailable(factory, ClassUtils.getQualifiedName(pd.getPropertyType()))) {
                     // only add it for processing iof there is no factory bean for this type
                     propertyDescriptors.add(pd);
                 }
@@ -351,72 +406,13 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
      * The relies on all factory beans being parameterised with the relevant bean type they create.
      *
      * @param factory
-     * @param beanClassToCheck
+     * @param beanTypeToCheck
      *
      * @return
+     * @see BeanTypeIndex#isFactored(String)
      */
-    private boolean isFactoryBeanAvailable(DefaultListableBeanFactory factory, Class<?> beanClassToCheck) throws NoSuchMethodException {
-        if (availableFactoredTypes == null) {
-            obtainFactoredTypes(factory);
-        }
-        for (Class factoredBeanClass : availableFactoredTypes) {
-            if (beanClassToCheck.isAssignableFrom(factoredBeanClass)) {
-                log.info("Found factory for bean type '{}' ", beanClassToCheck.getName());
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * @param factory
-     */
-    private void obtainFactoredTypes(DefaultListableBeanFactory factory) throws NoSuchMethodException {
-        if (availableFactoredTypes != null) {
-            throw new IllegalStateException("obtainFactoredTypes() was already called - there should not be a need to call more than once!");
-        }
-        availableFactoredTypes = new HashSet<Class>();
-        String[] allBdNames = factory.getBeanDefinitionNames();
-        for (String bdName : allBdNames) {
-            BeanDefinition bd = factory.getBeanDefinition(bdName);
-            try {
-                Class fClass = Class.forName(bd.getBeanClassName());
-                if (FactoryBean.class.isAssignableFrom(fClass)) {
-                    Class factoredBeanClass = null;
-                    if (fClass.getGenericInterfaces() != null && fClass.getGenericInterfaces().length > 0) {
-                        if (fClass.getGenericInterfaces()[0] instanceof ParameterizedType) {
-                            Type[] genericTypes = ((ParameterizedType) fClass.getGenericInterfaces()[0]).getActualTypeArguments();
-                            if (genericTypes.length > 0) {
-                                factoredBeanClass = (Class) genericTypes[0];
-                            }
-                        }
-                    }
-                    if (factoredBeanClass == null) {
-                        // check the return type of #getObject()
-                        Method factoryMethod = fClass.getMethod("getObjectType", null);
-                        Class<?> factoryReturnType = factoryMethod.getReturnType();
-                        if (factoryReturnType.getGenericInterfaces() != null && factoryReturnType.getGenericInterfaces().length > 0) {
-                            if (factoryReturnType.getGenericInterfaces()[0] instanceof ParameterizedType) {
-                                Type[] genericTypes = ((ParameterizedType) factoryReturnType.getGenericInterfaces()[0]).getActualTypeArguments();
-                                if (genericTypes.length > 0) {
-                                    factoredBeanClass = (Class) genericTypes[0];
-                                }
-                            }
-                        }
-                    }
-                    if (factoredBeanClass != null) {
-                        log.info("Found factory bean '{}' for type '{}'", fClass.getName(), factoredBeanClass.getName());
-                        availableFactoredTypes.add(factoredBeanClass);
-                    } else {
-                        // the alternative to find out the type is to create instance of the factory, call the #getObject and inspect the returned type,
-                        // however this can cause problems, so we are not doing it here ... instead alert the user.
-                        log.warn("Found FactoryBean class {} which does not define generic interface for the target bean. Factory auto-mocking is likely to fail.", fClass.getName());
-                    }
-                }
-            } catch (ClassNotFoundException e) {
-                log.warn("An attempt to load bean class failed", e);
-            }
-        }
+    private boolean isFactoryBeanAvailable(DefaultListableBeanFactory factory, String beanTypeToCheck) {
+        return beanTypeIndex.isFactored(beanTypeToCheck);
     }
 
 
@@ -436,39 +432,6 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
         }
     }
 
-    /**
-     * Return all fields with Autowired or Inject annotations
-     *
-     * @param targetBean
-     *
-     * @return
-     */
-    private List<AccessibleObject> getWiredMembers(Class targetBean) {
-        List<AccessibleObject> accessibles = new ArrayList<AccessibleObject>();
-        // fields
-        accessibles.addAll(Collections2.filter(Arrays.asList(targetBean.getDeclaredFields()), new Predicate<Field>() {
-            @Override
-            public boolean apply(Field input) {
-                return input.isAnnotationPresent(Autowired.class) || input.isAnnotationPresent(Inject.class) || input.isAnnotationPresent(PersistenceContext.class);
-            }
-        }));
-        // methods
-        accessibles.addAll(Collections2.filter(Arrays.asList(targetBean.getDeclaredMethods()), new Predicate<Method>() {
-            @Override
-            public boolean apply(Method input) {
-                return input.isAnnotationPresent(Autowired.class) || input.isAnnotationPresent(Inject.class) || input.isAnnotationPresent(PersistenceContext.class);
-            }
-        }));
-        // methods
-        accessibles.addAll(Collections2.filter(Arrays.asList(targetBean.getDeclaredConstructors()), new Predicate<Constructor>() {
-            @Override
-            public boolean apply(Constructor input) {
-                return input.isAnnotationPresent(Autowired.class) || input.isAnnotationPresent(Inject.class) || input.isAnnotationPresent(PersistenceContext.class);
-            }
-        }));
-        return accessibles;
-    }
-
     /**
      * Retrieve mock from the context
      *
@@ -502,10 +465,8 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
 
         FIELD {
             @Override
-            MockedBeanDescriptor[] mock(BeanAutoMockPostProcessor autoMockProcessor, DefaultListableBeanFactory factory, AccessibleObject target) throws ClassNotFoundException, NoSuchMethodException {
-                Field field = (Field) target;
-                Class propertyType = field.getType();
-                MockedBeanDescriptor descriptor = doRegisterMock(autoMockProcessor, factory, propertyType, field.getAnnotations());
+            MockedBeanDescriptor[] mock(BeanAutoMockPostProcessor autoMockProcessor, DefaultListableBeanFactory factory, WiringMetadata.InjectionPoint target) throws ClassNotFoundException, NoSuchMethodException {
+                MockedBeanDescriptor descriptor = doRegisterMock(autoMockProcessor, factory, target.getDependencyType(0), target.getQualifier(0));
                 if (descriptor != null) {
                     return new MockedBeanDescriptor[]{descriptor};
                 }
@@ -514,15 +475,13 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
         },
         METHOD {
             @Override
-            MockedBeanDescriptor[] mock(BeanAutoMockPostProcessor autoMockProcessor, DefaultListableBeanFactory factory, AccessibleObject target) throws ClassNotFoundException, NoSuchMethodException {
-                Method method = (Method) target;
-                if (method.getParameterTypes().length != 1) {
+            MockedBeanDescriptor[] mock(BeanAutoMockPostProcessor autoMockProcessor, DefaultListableBeanFactory factory, WiringMetadata.InjectionPoint target) throws ClassNotFoundException, NoSuchMethodException {
+                if (target.getDependencyCount() != 1) {
                     throw new IllegalArgumentException(
-                            format("Setter method with single argument expected: [%s.%s]: " + method.getDeclaringClass().getName(), method.getName())
+                            format("Setter method with single argument expected: [%s]", target.getDescription())
                     );
                 }
-                Class propertyType = method.getParameterTypes()[0];
-                MockedBeanDescriptor descriptor = doRegisterMock(autoMockProcessor, factory, propertyType, method.getAnnotations());
+                MockedBeanDescriptor descriptor = doRegisterMock(autoMockProcessor, factory, target.getDependencyType(0), target.getQualifier(0));
                 if (descriptor != null) {
                     return new MockedBeanDescriptor[]{descriptor};
                 }
@@ -531,18 +490,13 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
         },
         CONSTRUCTOR {
             @Override
-            MockedBeanDescriptor[] mock(BeanAutoMockPostProcessor autoMockProcessor, DefaultListableBeanFactory factory, AccessibleObject target) throws ClassNotFoundException, NoSuchMethodException {
-                Constructor constructor = (Constructor) target;
-                Class[] parameters = constructor.getParameterTypes();
+            MockedBeanDescriptor[] mock(BeanAutoMockPostProcessor autoMockProcessor, DefaultListableBeanFactory factory, WiringMetadata.InjectionPoint target) throws ClassNotFoundException, NoSuchMethodException {
                 List<MockedBeanDescriptor> mockedBeanDescriptors = new ArrayList<MockedBeanDescriptor>();
-                Annotation[][] parameterAnnotations = constructor.getParameterAnnotations();
-                int paramIdx = 0;
-                for (Class typeToMock : parameters) {
-                    MockedBeanDescriptor descriptor = doRegisterMock(autoMockProcessor, factory, typeToMock, parameterAnnotations[paramIdx]);
+                for (int paramIdx = 0; paramIdx < target.getDependencyCount(); paramIdx++) {
+                    MockedBeanDescriptor descriptor = doRegisterMock(autoMockProcessor, factory, target.getDependencyType(paramIdx), target.getQualifier(paramIdx));
                     if (descriptor != null) {
                         mockedBeanDescriptors.add(descriptor);
                     }
-                    paramIdx++;
                 }
                 MockedBeanDescriptor[] arr = new MockedBeanDescriptor[mockedBeanDescriptors.size()];
                 return mockedBeanDescriptors.toArray(arr);
@@ -553,38 +507,38 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
         /**
          * @param factory
          * @param beanTypeToMock
-         * @param annotations
+         * @param qualifiedBeanName
          *
          * @return
          * @throws ClassNotFoundException
          */
         private static MockedBeanDescriptor doRegisterMock(BeanAutoMockPostProcessor autoMockProcessor,
                                                            DefaultListableBeanFactory factory,
-                                                           Class beanTypeToMock,
-                                                           Annotation[] annotations) throws ClassNotFoundException, NoSuchMethodException {
-            if (ApplicationEventPublisher.class.isAssignableFrom(beanTypeToMock)) {
+                                                           String beanTypeToMock,
+                                                           String qualifiedBeanName) throws ClassNotFoundException, NoSuchMethodException {
+            if (autoMockProcessor.classScanner.isAssignable(ApplicationEventPublisher.class.getName(), beanTypeToMock)) {
                 // Beans may choose to inject the Application context itself. (check from top of the hierarchy `ApplicationEventPublisher`)
                 // Spring handles this as a special inject operation - obviously no bean definition is required here.
                 // In our case the real ApplicationContext will be injected regardless whether we create mock or not (which makes no sense anyway)
                 return null;
             } else if (autoMockProcessor.isFactoryBeanAvailable(factory, beanTypeToMock)) {
-                log.info("LOG00370: Dependent type '{}' has available factory bean. Skip mocking ...", beanTypeToMock.getName());
+                log.info("LOG00370: Dependent type '{}' has available factory bean. Skip mocking ...", beanTypeToMock);
                 // this type has a factory bean already created, so we don't need to mock it.
                 // the factory will create real instances as required.
                 return null;
             }
 
-            String beanName = getAnnotatedBeanName(annotations);
+            String beanName = qualifiedBeanName;
             if (beanName == null) {
-                beanName = beanNameForClass(beanTypeToMock, false, factory);
+                beanName = beanNameForClass(autoMockProcessor, beanTypeToMock, false);
             }
             if (autoMockProcessor.getForceMockedBeanName(beanTypeToMock) != null) {
-                log.info("LOG00371: Dependent type '{}' is already force mocked. Skip mocking ...", beanTypeToMock.getName());
+                log.info("LOG00371: Dependent type '{}' is already force mocked. Skip mocking ...", beanTypeToMock);
                 return null;
             }
             if (!factory.isBeanNameInUse(beanName)) {
-                // not yet created
-                return autoMockProcessor.registerMockedBean(factory, beanName, beanTypeToMock);
+                // not yet created: only now the type needs to be loaded
+                return autoMockProcessor.registerMockedBean(factory, beanName, autoMockProcessor.classScanner.load(beanTypeToMock));
             }
             return null;
         }
@@ -598,43 +552,23 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
          */
         abstract MockedBeanDescriptor[] mock(BeanAutoMockPostProcessor autoMockProcessor,
                                              DefaultListableBeanFactory factory,
-                                             AccessibleObject target) throws ClassNotFoundException, NoSuchMethodException;
-
-
-        /**
-         * @param annotations
-         *
-         * @return
-         */
-        private static String getAnnotatedBeanName(Annotation[] annotations) {
-            String beanName = null;
-            for (Annotation annotation : annotations) {
-                if (annotation.annotationType() == Qualifier.class) {
-                    beanName = ((Qualifier) annotation).value();
-                } else if (annotation.annotationType() == Resource.class) {
-                    beanName = ((Resource) annotation).name();
-                } else if (annotation.annotationType() == Named.class) {
-                    beanName = ((Named) annotation).value();
-                }
-            }
-            return beanName;
-        }
+                                             WiringMetadata.InjectionPoint target) throws ClassNotFoundException, NoSuchMethodException;
 
 
         /**
          * Check if definition already exists for a bean of the type <code>type</code> and return its name,
          * else, create a bean name from the class name.
          *
+         * @param autoMockProcessor
          * @param type
          * @param isNamed
-         * @param factory
          *
          * @return `
          * @throws ClassNotFoundException
          */
-        private static String beanNameForClass(Class type, boolean isNamed, DefaultListableBeanFactory factory) throws ClassNotFoundException {
+        private static String beanNameForClass(BeanAutoMockPostProcessor autoMockProcessor, String type, boolean isNamed) throws ClassNotFoundException {
             // check if definition already exists for class
-            String[] names = factory.getBeanNamesForType(type, true, false);
+            String[] names = autoMockProcessor.beanTypeIndex.namesForType(type);
             if (names.length > 1 && !isNamed) {
                 log.warn(format("More than one bean names detected for type to be mocked, [%s]", Arrays.toString(names)));
                 return names[0];
@@ -643,18 +577,12 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
                 return names[0];
             }
 
-            String name = getSpringCompatibleBeanName(type);
-            if (type.isInterface() && !isNamed) {
+            String name = getSpringCompatibleBeanName(ClassUtils.getShortName(type).replaceFirst(".*\\.", ""));
+            if (autoMockProcessor.classScanner.scan(type).isInterface() && !isNamed) {
                 // the target wired type is an interface: check if there are concrete implementations which aren't mocked.
-                for (String defName : factory.getBeanDefinitionNames()) {
-                    BeanDefinition bd = factory.getBeanDefinition(defName);
-                    if (bd.getBeanClassName() != null) {
-                        Class existingClass = Class.forName(bd.getBeanClassName());
-                        if (type.isAssignableFrom(existingClass)) {
-                            name = defName;
-                            break;
-                        }
-                    }
+                String implementationName = autoMockProcessor.beanTypeIndex.firstDefinitionOfType(type);
+                if (implementationName != null) {
+                    name = implementationName;
                 }
             }
             return name;
@@ -665,12 +593,12 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
     /**
      * This is what Spring uses when name isn't supplied
      *
-     * @param type
+     * @param simpleName
      *
      * @return
      */
-    private static String getSpringCompatibleBeanName(Class type) {
-        String name = type.getSimpleName(); //
+    private static String getSpringCompatibleBeanName(String simpleName) {
+        String name = simpleName;
         name = name.replaceFirst("^\\w", name.substring(0, 1).toLowerCase());
         return name;
     }
@@ -688,16 +616,8 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
             throw new IllegalArgumentException("Illegal attempt to create mock for internal Spring bean. Aborting!");
         }
 
-        MockedBeanDescriptor descriptor;
         if (Properties.class.isAssignableFrom(typeToMock)) {
-            // retrieve properties previously injected by `ServerConfigurationAwareContextLoaderListener`
-            Properties executionProperties = SpringContextUtils.getConfiguredPropertiesFromContext(factory);
-            RootBeanDefinition definition = new RootBeanDefinition(CustomPropertiesFactory.class);
-            MutablePropertyValues values = new MutablePropertyValues();
-            values.addPropertyValue(new PropertyValue("properties", executionProperties));
-            definition.setPropertyValues(values);
-            factory.registerBeanDefinition(beanName, definition);
-            descriptor = new MockedBeanDescriptor(beanName, typeToMock);
+            return defineProperties(factory, beanName, typeToMock);
         } else {
             Class internalType = typeToMock;
             // TODO :: auto-mocking EM is bit flaky, needs more thought !!
@@ -711,15 +631,74 @@ public class BeanAutoMockPostProcessor implements BeanDefinitionRegistryPostProc
                     registerMockedBean(factory, "persistenceExceptionTranslationPostProcessor", PersistenceExceptionTranslationPostProcessor.class);
                 }
             }
-            RootBeanDefinition definition = new RootBeanDefinition(SpringMockitoFactory.class);
-            MutablePropertyValues values = new MutablePropertyValues();
-            values.addPropertyValue(new PropertyValue("type", internalType));
-            definition.setPropertyValues(values);
-            factory.registerBeanDefinition(beanName, definition);
-            descriptor = new MockedBeanDescriptor(beanName, internalType);
+            return defineMock(factory, beanName, internalType);
+        }
+    }
+
+    /**
+     * @param factory
+     * @param beanName
+     * @param propertiesType
+     *
+     * @return
+     */
+    private MockedBeanDescriptor defineProperties(DefaultListableBeanFactory factory, String beanName, Class propertiesType) {
+        // retrieve properties previously injected by `ServerConfigurationAwareContextLoaderListener`
+        Properties executionProperties = SpringContextUtils.getConfiguredPropertiesFromContext(factory);
+        RootBeanDefinition definition = new RootBeanDefinition(CustomPropertiesFactory.class);
+        MutablePropertyValues values = new MutablePropertyValues();
+        values.addPropertyValue(new PropertyValue("properties", executionProperties));
+        definition.setPropertyValues(values);
+        factory.registerBeanDefinition(beanName, definition);
+        indexDefinition(beanName, CustomPropertiesFactory.class);
+        if (plan != null) {
+            plan.recordProperties(beanName, propertiesType);
+        }
+        mockedBeans.put(beanName, propertiesType);
+        return new MockedBeanDescriptor(beanName, propertiesType);
+    }
+
+    /**
+     * @param factory
+     * @param beanName
+     * @param typeToMock
+     *
+     * @return
+     */
+    private MockedBeanDescriptor defineMock(DefaultListableBeanFactory factory, String beanName, Class typeToMock) {
+        RootBeanDefinition definition = new RootBeanDefinition(SpringMockitoFactory.class);
+        MutablePropertyValues values = new MutablePropertyValues();
+        values.addPropertyValue(new PropertyValue("type", typeToMock));
+        if (contextConfiguration.isLazyMocks() && typeToMock.isInterface()) {
+            values.addPropertyValue(new PropertyValue("lazy", true));
+        }
+        definition.setPropertyValues(values);
+        factory.registerBeanDefinition(beanName, definition);
+        indexDefinition(beanName, SpringMockitoFactory.class);
+        if (plan != null) {
+            plan.recordMock(beanName, typeToMock);
+        }
+        mockedBeans.put(beanName, typeToMock);
+        return new MockedBeanDescriptor(beanName, typeToMock);
+    }
+
+    /**
+     * @param factory
+     * @param beanName
+     */
+    private void removeDefinition(DefaultListableBeanFactory factory, String beanName) {
+        factory.removeBeanDefinition(beanName);
+        beanTypeIndex.remove(beanName);
+        if (plan != null) {
+            plan.recordRemoval(beanName);
+        }
+    }
+
+    private void indexDefinition(String beanName, Class beanClass) {
+        if (beanTypeIndex != null) {
+            // forced mocks are registered before the index is built
+            beanTypeIndex.add(beanName, beanClass);
         }
-        mockedBeans.put(descriptor.getName(), descriptor.getType());
-        return descriptor;
     }
 
     public Map<String, Class> getMockedBeans() {
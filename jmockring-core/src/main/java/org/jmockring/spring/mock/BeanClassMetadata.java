@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.spring.mock;
+
+import java.util.Set;
+
+/**
+ * What the auto-mock analysis needs to know about a bean class, without the class itself being loaded.
+ * <p/>
+ * All types are referred to by their qualified class names.
+ *
+ * @date 17/10/26
+ */
+final class BeanClassMetadata {
+
+    private final String className;
+
+    private final String superClassName;
+
+    private final String[] interfaceNames;
+
+    private final boolean isInterface;
+
+    private final String factoredTypeName;
+
+    private final WiringMetadata wiringMetadata;
+
+    private volatile Set<String> typeNames;
+
+    BeanClassMetadata(String className, String superClassName, String[] interfaceNames, boolean isInterface,
+                      String factoredTypeName, WiringMetadata wiringMetadata) {
+        this.className = className;
+        this.superClassName = superClassName;
+        this.interfaceNames = interfaceNames;
+        this.isInterface = isInterface;
+        this.factoredTypeName = factoredTypeName;
+        this.wiringMetadata = wiringMetadata;
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return null for interfaces, primitives and {@link Object}
+     */
+    String getSuperClassName() {
+        return superClassName;
+    }
+
+    String[] getInterfaceNames() {
+        return interfaceNames;
+    }
+
+    boolean isInterface() {
+        return isInterface;
+    }
+
+    /**
+     * @return the class argument of the first generic interface (i.e. the bean type of a parameterised {@link org.springframework.beans.factory.FactoryBean}), or null
+     */
+    String getFactoredTypeName() {
+        return factoredTypeName;
+    }
+
+    WiringMetadata getWiringMetadata() {
+        return wiringMetadata;
+    }
+
+    /**
+     * @return this class and all its super classes and interfaces, or null if not resolved yet
+     * @see BeanClassScanner#typeNamesOf(String)
+     */
+    Set<String> getTypeNames() {
+        return typeNames;
+    }
+
+    void setTypeNames(Set<String> typeNames) {
+        this.typeNames = typeNames;
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.spring.mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.signature.SignatureReader;
+import org.springframework.asm.signature.SignatureVisitor;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ResourceUtils;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Reads the bean class metadata needed by the auto-mock analysis directly from the class files,
+ * so the bean classes do not have to be loaded (and their static state initialised) just to be inspected.
+ * Only the types which are actually mocked get loaded, via {@link #load(String)}.
+ * <p/>
+ * If a class file can't be read (e.g. generated classes, or class file versions not supported by the ASM version shipped with Spring),
+ * the class is loaded and inspected with reflection instead.
+ * <p/>
+ * The metadata is cached for the whole JVM, per class loader.
+ *
+ * @date 17/10/26
+ */
+final class BeanClassScanner {
+
+    private static final Logger log = LoggerFactory.getLogger(BeanClassScanner.class);
+
+    private static final ConcurrentMap<ClassLoader, ConcurrentMap<String, BeanClassMetadata>> CACHE = new MapMaker().weakKeys().makeMap();
+
+    private static final int PARSING_OPTIONS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+    private final ClassLoader classLoader;
+
+    private final ConcurrentMap<String, BeanClassMetadata> metadataByName;
+
+    private final Set<String> consultedClassNames = Collections.synchronizedSet(new LinkedHashSet<String>());
+
+    BeanClassScanner(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+        ConcurrentMap<String, BeanClassMetadata> metadata = CACHE.get(classLoader);
+        if (metadata == null) {
+            ConcurrentMap<String, BeanClassMetadata> created = new ConcurrentHashMap<String, BeanClassMetadata>();
+            metadata = CACHE.putIfAbsent(classLoader, created);
+            if (metadata == null) {
+                metadata = created;
+            }
+        }
+        this.metadataByName = metadata;
+    }
+
+    /**
+     * @param className qualified class name
+     *
+     * @return
+     * @throws ClassNotFoundException if neither the class file nor the class is available
+     * @should read wiring metadata from class file
+     * @should read factored type of parameterised factory bean
+     */
+    BeanClassMetadata scan(String className) throws ClassNotFoundException {
+        consultedClassNames.add(className);
+        BeanClassMetadata metadata = metadataByName.get(className);
+        if (metadata == null) {
+            metadata = read(className);
+            if (metadata == null) {
+                metadata = introspect(load(className));
+            }
+            metadataByName.putIfAbsent(className, metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * @param className
+     *
+     * @return the class name and the names of all its super classes and interfaces
+     * @throws ClassNotFoundException
+     * @should resolve all super types
+     */
+    Set<String> typeNamesOf(String className) throws ClassNotFoundException {
+        BeanClassMetadata metadata = scan(className);
+        Set<String> typeNames = metadata.getTypeNames();
+        if (typeNames == null) {
+            typeNames = new LinkedHashSet<String>();
+            typeNames.add(className);
+            if (metadata.getSuperClassName() != null) {
+                typeNames.addAll(typeNamesOf(metadata.getSuperClassName()));
+            }
+            for (String interfaceName : metadata.getInterfaceNames()) {
+                typeNames.addAll(typeNamesOf(interfaceName));
+            }
+            typeNames = Collections.unmodifiableSet(typeNames);
+            metadata.setTypeNames(typeNames);
+        }
+        return typeNames;
+    }
+
+    /**
+     * Type names of an already loaded class.
+     *
+     * @param type
+     *
+     * @return
+     */
+    Set<String> typeNamesOf(Class type) {
+        Set<String> typeNames = new LinkedHashSet<String>();
+        collectTypeNames(type, typeNames);
+        return typeNames;
+    }
+
+    /**
+     * Name based equivalent of {@link Class#isAssignableFrom(Class)}.
+     *
+     * @param typeName
+     * @param className
+     *
+     * @return true if <code>className</code> is, extends or implements <code>typeName</code>
+     * @throws ClassNotFoundException
+     */
+    boolean isAssignable(String typeName, String className) throws ClassNotFoundException {
+        return typeName.equals(className) || typeNamesOf(className).contains(typeName);
+    }
+
+    /**
+     * Load the class, without initialising it.
+     *
+     * @param className
+     *
+     * @return
+     * @throws ClassNotFoundException
+     */
+    Class load(String className) throws ClassNotFoundException {
+        return ClassUtils.forName(className, classLoader);
+    }
+
+    /**
+     * @return names of all classes scanned by this instance, whether they were found or not
+     */
+    Set<String> getConsultedClassNames() {
+        synchronized (consultedClassNames) {
+            return new LinkedHashSet<String>(consultedClassNames);
+        }
+    }
+
+    /**
+     * Cheap fingerprint of the class file, which changes when the class is recompiled or its jar replaced:
+     * the location, size and modification time of the file or of the jar containing it.
+     *
+     * @param className
+     *
+     * @return
+     */
+    String classFileStamp(String className) {
+        URL resource = classLoader.getResource(ClassUtils.convertClassNameToResourcePath(className) + ClassUtils.CLASS_FILE_SUFFIX);
+        if (resource == null) {
+            return "-";
+        }
+        try {
+            File file = ResourceUtils.isJarURL(resource) ? ResourceUtils.getFile(ResourceUtils.extractJarFileURL(resource)) : ResourceUtils.getFile(resource);
+            return resource + ";" + file.length() + ";" + file.lastModified();
+        } catch (IOException e) {
+            // not on the file system, e.g. nested jar: can only be identified by its location
+            return resource.toString();
+        }
+    }
+
+    private BeanClassMetadata read(String className) {
+        InputStream classFile = classLoader.getResourceAsStream(ClassUtils.convertClassNameToResourcePath(className) + ClassUtils.CLASS_FILE_SUFFIX);
+        if (classFile == null) {
+            return null;
+        }
+        try {
+            MetadataVisitor visitor = new MetadataVisitor();
+            new ClassReader(classFile).accept(visitor, PARSING_OPTIONS);
+            return visitor.toMetadata();
+        } catch (IOException e) {
+            log.debug("LOG00570: Can't read class file of {}: {}", className, e.getMessage());
+        } catch (RuntimeException e) {
+            log.debug("LOG00570: Can't read class file of {}: {}", className, e.getMessage());
+        } finally {
+            try {
+                classFile.close();
+            } catch (IOException e) {
+                log.debug("Failed to close class file", e);
+            }
+        }
+        return null;
+    }
+
+    private static BeanClassMetadata introspect(Class type) {
+        Class[] interfaces = type.getInterfaces();
+        String[] interfaceNames = new String[interfaces.length];
+        for (int i = 0; i < interfaces.length; i++) {
+            interfaceNames[i] = interfaces[i].getName();
+        }
+        String factoredTypeName = null;
+        Type[] genericInterfaces = type.getGenericInterfaces();
+        if (genericInterfaces.length > 0 && genericInterfaces[0] instanceof ParameterizedType) {
+            Type[] genericTypes = ((ParameterizedType) genericInterfaces[0]).getActualTypeArguments();
+            if (genericTypes.length > 0 && genericTypes[0] instanceof Class) {
+                factoredTypeName = ClassUtils.getQualifiedName((Class) genericTypes[0]);
+            }
+        }
+        return new BeanClassMetadata(
+                ClassUtils.getQualifiedName(type),
+                type.getSuperclass() != null ? type.getSuperclass().getName() : null,
+                interfaceNames,
+                type.isInterface(),
+                factoredTypeName,
+                WiringMetadata.introspect(type)
+        );
+    }
+
+    private static void collectTypeNames(Class type, Set<String> typeNames) {
+        if (type == null || !typeNames.add(ClassUtils.getQualifiedName(type))) {
+            return;
+        }
+        collectTypeNames(type.getSuperclass(), typeNames);
+        for (Class implemented : type.getInterfaces()) {
+            collectTypeNames(implemented, typeNames);
+        }
+    }
+
+    private static String toClassName(String internalName) {
+        return ClassUtils.convertResourcePathToClassName(internalName);
+    }
+
+    /**
+     * The qualifier annotations hold the bean name in the `value` attribute, except for {@link javax.annotation.Resource} which uses `name`.
+     * As with reflection, an annotation without the attribute set gives an empty name.
+     *
+     * @param descriptor
+     * @param qualifiers
+     * @param index
+     *
+     * @return visitor collecting the bean name into <code>qualifiers[index]</code>, or null if this is not a qualifier annotation
+     */
+    private static AnnotationVisitor visitQualifier(String descriptor, final String[] qualifiers, final int index) {
+        final String attribute;
+        if (WiringMetadata.QUALIFIER_DESCRIPTOR.equals(descriptor) || WiringMetadata.NAMED_DESCRIPTOR.equals(descriptor)) {
+            attribute = "value";
+        } else if (WiringMetadata.RESOURCE_DESCRIPTOR.equals(descriptor)) {
+            attribute = "name";
+        } else {
+            return null;
+        }
+        qualifiers[index] = "";
+        return new AnnotationVisitor(SpringAsmInfo.ASM_VERSION) {
+            @Override
+            public void visit(String name, Object value) {
+                if (attribute.equals(name)) {
+                    qualifiers[index] = (String) value;
+                }
+            }
+        };
+    }
+
+    private static boolean isWiringAnnotation(String descriptor) {
+        return WiringMetadata.AUTOWIRED_DESCRIPTOR.equals(descriptor)
+                || WiringMetadata.INJECT_DESCRIPTOR.equals(descriptor)
+                || WiringMetadata.PERSISTENCE_CONTEXT_DESCRIPTOR.equals(descriptor);
+    }
+
+    private static String[] typeNames(org.springframework.asm.Type[] types) {
+        String[] names = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            names[i] = types[i].getClassName();
+        }
+        return names;
+    }
+
+    /**
+     * Collects the class metadata in the same order as the reflective introspection: fields, methods, then constructors.
+     */
+    private static final class MetadataVisitor extends ClassVisitor {
+
+        private String className;
+
+        private String superClassName;
+
+        private String[] interfaceNames;
+
+        private boolean isInterface;
+
+        private String factoredTypeName;
+
+        private final List<WiringMetadata.InjectionPoint> fields = new ArrayList<WiringMetadata.InjectionPoint>();
+
+        private final List<WiringMetadata.InjectionPoint> methods = new ArrayList<WiringMetadata.InjectionPoint>();
+
+        private final List<WiringMetadata.InjectionPoint> constructors = new ArrayList<WiringMetadata.InjectionPoint>();
+
+        private MetadataVisitor() {
+            super(SpringAsmInfo.ASM_VERSION);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            className = toClassName(name);
+            isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
+            superClassName = superName != null && !isInterface ? toClassName(superName) : null;
+            interfaceNames = new String[interfaces != null ? interfaces.length : 0];
+            for (int i = 0; i < interfaceNames.length; i++) {
+                interfaceNames[i] = toClassName(interfaces[i]);
+            }
+            if (signature != null && interfaceNames.length > 0) {
+                FactoredTypeVisitor factoredTypeVisitor = new FactoredTypeVisitor();
+                new SignatureReader(signature).accept(factoredTypeVisitor);
+                factoredTypeName = factoredTypeVisitor.getTypeName();
+            }
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, final String name, final String desc, String signature, Object value) {
+            final String[] qualifiers = new String[1];
+            return new FieldVisitor(SpringAsmInfo.ASM_VERSION) {
+
+                private boolean wired;
+
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotationDesc, boolean visible) {
+                    if (!visible) {
+                        return null;
+                    }
+                    wired |= isWiringAnnotation(annotationDesc);
+                    return visitQualifier(annotationDesc, qualifiers, 0);
+                }
+
+                @Override
+                public void visitEnd() {
+                    if (wired) {
+                        fields.add(new WiringMetadata.InjectionPoint(WiringMetadata.InjectionPoint.Kind.FIELD, className + "." + name,
+                                new String[]{org.springframework.asm.Type.getType(desc).getClassName()}, qualifiers));
+                    }
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, final String name, String desc, String signature, String[] exceptions) {
+            if ((access & (Opcodes.ACC_BRIDGE | Opcodes.ACC_SYNTHETIC)) != 0 || "<clinit>".equals(name)) {
+                return null;
+            }
+            final boolean isConstructor = "<init>".equals(name);
+            final String[] parameterTypes = typeNames(org.springframework.asm.Type.getArgumentTypes(desc));
+            final String[] parameterQualifiers = new String[parameterTypes.length];
+            final String[] methodQualifier = new String[1];
+            return new MethodVisitor(SpringAsmInfo.ASM_VERSION) {
+
+                private boolean wired;
+
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotationDesc, boolean visible) {
+                    if (!visible) {
+                        return null;
+                    }
+                    wired |= isWiringAnnotation(annotationDesc);
+                    return visitQualifier(annotationDesc, methodQualifier, 0);
+                }
+
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String annotationDesc, boolean visible) {
+                    if (!visible || parameter >= parameterQualifiers.length) {
+                        return null;
+                    }
+                    return visitQualifier(annotationDesc, parameterQualifiers, parameter);
+                }
+
+                @Override
+                public void visitEnd() {
+                    if (!wired) {
+                        return;
+                    }
+                    if (isConstructor) {
+                        constructors.add(new WiringMetadata.InjectionPoint(WiringMetadata.InjectionPoint.Kind.CONSTRUCTOR, className + ".<init>",
+                                parameterTypes, parameterQualifiers));
+                    } else {
+                        // the method annotations qualify its single parameter
+                        String[] qualifiers = new String[parameterTypes.length];
+                        if (qualifiers.length > 0) {
+                            qualifiers[0] = methodQualifier[0];
+                        }
+                        methods.add(new WiringMetadata.InjectionPoint(WiringMetadata.InjectionPoint.Kind.METHOD, className + "." + name,
+                                parameterTypes, qualifiers));
+                    }
+                }
+            };
+        }
+
+        private BeanClassMetadata toMetadata() {
+            List<WiringMetadata.InjectionPoint> injectionPoints = new ArrayList<WiringMetadata.InjectionPoint>(fields);
+            injectionPoints.addAll(methods);
+            injectionPoints.addAll(constructors);
+            return new BeanClassMetadata(className, superClassName, interfaceNames, isInterface, factoredTypeName, new WiringMetadata(injectionPoints));
+        }
+    }
+
+    /**
+     * Finds the first type argument of the first generic interface in a class signature, if that argument is a plain class.
+     */
+    private static final class FactoredTypeVisitor extends SignatureVisitor {
+
+        private static final SignatureVisitor IGNORE = new SignatureVisitor(SpringAsmInfo.ASM_VERSION) {
+        };
+
+        private int interfaces;
+
+        private int arguments;
+
+        private String typeName;
+
+        private boolean isClass = true;
+
+        private FactoredTypeVisitor() {
+            super(SpringAsmInfo.ASM_VERSION);
+        }
+
+        @Override
+        public SignatureVisitor visitInterface() {
+            return ++interfaces == 1 ? new FirstInterfaceVisitor() : IGNORE;
+        }
+
+        private String getTypeName() {
+            return isClass ? typeName : null;
+        }
+
+        private final class FirstInterfaceVisitor extends SignatureVisitor {
+
+            private FirstInterfaceVisitor() {
+                super(SpringAsmInfo.ASM_VERSION);
+            }
+
+            @Override
+            public void visitTypeArgument() {
+                arguments++;
+            }
+
+            @Override
+            public SignatureVisitor visitTypeArgument(char wildcard) {
+                if (++arguments == 1) {
+                    isClass = wildcard == SignatureVisitor.INSTANCEOF;
+                    return new ArgumentVisitor();
+                }
+                return IGNORE;
+            }
+        }
+
+        private final class ArgumentVisitor extends SignatureVisitor {
+
+            private ArgumentVisitor() {
+                super(SpringAsmInfo.ASM_VERSION);
+            }
+
+            @Override
+            public void visitClassType(String name) {
+                typeName = toClassName(name);
+            }
+
+            @Override
+            public void visitInnerClassType(String name) {
+                typeName = typeName + "$" + name;
+            }
+
+            @Override
+            public SignatureVisitor visitTypeArgument(char wildcard) {
+                // parameterised type
+                isClass = false;
+                return IGNORE;
+            }
+
+            @Override
+            public void visitTypeArgument() {
+                isClass = false;
+            }
+
+            @Override
+            public void visitTypeVariable(String name) {
+                isClass = false;
+            }
+
+            @Override
+            public SignatureVisitor visitArrayType() {
+                isClass = false;
+                return IGNORE;
+            }
+
+            @Override
+            public void visitBaseType(char descriptor) {
+                isClass = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.spring.mock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+/**
+ * Type index over the bean definitions of a single bean factory, used by the auto-mock analysis.
+ * <p/>
+ * Each definition is registered under the names of its class and all of its superclasses and interfaces, as read by the {@link BeanClassScanner},
+ * so looking up the beans of a type neither scans the whole factory nor loads the bean classes. The index is built once, when the analysis starts,
+ * and then kept up to date by {@link #add(String, Class)} and {@link #remove(String)} as the mock definitions are registered.
+ * <p/>
+ * Definitions without a usable class (e.g. created by factory methods) are not indexed by type:
+ * they are checked against the bean factory on every lookup, which is what {@link DefaultListableBeanFactory#getBeanNamesForType(Class, boolean, boolean)} would do.
+ *
+ * @date 17/10/26
+ */
+final class BeanTypeIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BeanTypeIndex.class);
+
+    private static final String FACTORY_BEAN_TYPE = FactoryBean.class.getName();
+
+    private final DefaultListableBeanFactory factory;
+
+    private final BeanClassScanner classScanner;
+
+    /**
+     * Type name -> definitions whose class is assignable to it, in registration order.
+     */
+    private final Map<String, Set<IndexedBean>> beansByType = new HashMap<String, Set<IndexedBean>>();
+
+    private final Map<String, IndexedBean> beansByName = new HashMap<String, IndexedBean>();
+
+    /**
+     * Definitions whose type can only be predicted by the bean factory.
+     */
+    private final Set<String> untypedNames = new LinkedHashSet<String>();
+
+    /**
+     * Types created by the {@link FactoryBean} definitions available when the index was built.
+     */
+    private final Set<String> factoredTypes = new HashSet<String>();
+
+    private final Map<String, Boolean> factoredTypeMatches = new HashMap<String, Boolean>();
+
+    BeanTypeIndex(DefaultListableBeanFactory factory, BeanClassScanner classScanner) {
+        this.factory = factory;
+        this.classScanner = classScanner;
+        for (String name : factory.getBeanDefinitionNames()) {
+            BeanDefinition definition = factory.getBeanDefinition(name);
+            String beanClassName = definition.getBeanClassName();
+            Set<String> typeNames = null;
+            if (beanClassName != null && definition.getFactoryMethodName() == null) {
+                // the bean class is not the type of the bean when a factory method is used
+                try {
+                    typeNames = classScanner.typeNamesOf(beanClassName);
+                } catch (ClassNotFoundException e) {
+                    log.warn("An attempt to load bean class failed", e);
+                } catch (LinkageError e) {
+                    log.warn("An attempt to load bean class failed", e);
+                }
+            }
+            if (typeNames == null) {
+                untypedNames.add(name);
+                continue;
+            }
+            add(name, typeNames, definition.isAbstract());
+            if (typeNames.contains(FACTORY_BEAN_TYPE)) {
+                addFactoredType(beanClassName);
+            }
+        }
+        // singletons registered directly by the context, e.g. `environment`, `systemProperties`
+        for (String name : factory.getSingletonNames()) {
+            Object singleton = factory.getSingleton(name);
+            if (!factory.containsBeanDefinition(name) && singleton != null && !(singleton instanceof FactoryBean)) {
+                add(name, classScanner.typeNamesOf(singleton.getClass()), false);
+            }
+        }
+        log.debug("Indexed {} bean definitions under {} types ({} not typed)", new Object[]{beansByName.size(), beansByType.size(), untypedNames.size()});
+    }
+
+    /**
+     * Index a definition added after the index was built.
+     *
+     * @param name
+     * @param beanClass
+     */
+    void add(String name, Class beanClass) {
+        remove(name);
+        add(name, classScanner.typeNamesOf(beanClass), false);
+    }
+
+    /**
+     * @param name of a removed definition
+     */
+    void remove(String name) {
+        untypedNames.remove(name);
+        IndexedBean removed = beansByName.remove(name);
+        if (removed != null) {
+            for (Iterator<Set<IndexedBean>> it = beansByType.values().iterator(); it.hasNext(); ) {
+                Set<IndexedBean> beans = it.next();
+                beans.remove(removed);
+                if (beans.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Same result as {@code factory.getBeanNamesForType(type, true, false)}: non-abstract beans of the given type and,
+     * as their products are not known before they are instantiated, the `&`-prefixed names of matching factory beans.
+     * <p/>
+     * Only the definitions which can't be indexed require the type to be loaded.
+     *
+     * @param typeName
+     *
+     * @return
+     */
+    String[] namesForType(String typeName) {
+        List<String> names = new ArrayList<String>();
+        Set<IndexedBean> beans = beansByType.get(typeName);
+        if (beans != null) {
+            for (IndexedBean bean : beans) {
+                if (!bean.isAbstract) {
+                    names.add(bean.isFactoryBean ? BeanFactory.FACTORY_BEAN_PREFIX + bean.name : bean.name);
+                }
+            }
+        }
+        for (String name : untypedNames) {
+            try {
+                if (!requiresEagerInit(name) && factory.isTypeMatch(name, classScanner.load(typeName))) {
+                    names.add(name);
+                }
+            } catch (ClassNotFoundException e) {
+                log.debug("Can't load type {}: {}", typeName, e.getMessage());
+                break;
+            } catch (RuntimeException e) {
+                log.debug("Can't predict type of bean {}: {}", name, e.getMessage());
+            }
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * @param typeName
+     *
+     * @return the first definition (including abstract and factory beans) whose class is assignable to the type, or null
+     */
+    String firstDefinitionOfType(String typeName) {
+        Set<IndexedBean> beans = beansByType.get(typeName);
+        if (beans != null) {
+            for (IndexedBean bean : beans) {
+                if (factory.containsBeanDefinition(bean.name)) {
+                    return bean.name;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param typeName
+     *
+     * @return true if any factory bean available when the index was built creates instances of this type
+     */
+    boolean isFactored(String typeName) {
+        Boolean match = factoredTypeMatches.get(typeName);
+        if (match == null) {
+            match = false;
+            for (String factoredType : factoredTypes) {
+                try {
+                    if (classScanner.isAssignable(typeName, factoredType)) {
+                        log.info("Found factory for bean type '{}' ", typeName);
+                        match = true;
+                        break;
+                    }
+                } catch (ClassNotFoundException e) {
+                    log.warn("An attempt to load factored bean class failed", e);
+                }
+            }
+            factoredTypeMatches.put(typeName, match);
+        }
+        return match;
+    }
+
+    private void add(String name, Set<String> typeNames, boolean isAbstract) {
+        IndexedBean bean = new IndexedBean(name, typeNames.contains(FACTORY_BEAN_TYPE), isAbstract);
+        beansByName.put(name, bean);
+        for (String typeName : typeNames) {
+            Set<IndexedBean> beans = beansByType.get(typeName);
+            if (beans == null) {
+                beans = new LinkedHashSet<IndexedBean>();
+                beansByType.put(typeName, beans);
+            }
+            beans.add(bean);
+        }
+    }
+
+    /**
+     * This relies on all factory beans being parameterised with the relevant bean type they create.
+     *
+     * @param factoryClassName
+     */
+    private void addFactoredType(String factoryClassName) {
+        String factoredTypeName = null;
+        try {
+            factoredTypeName = classScanner.scan(factoryClassName).getFactoredTypeName();
+        } catch (ClassNotFoundException e) {
+            log.warn("An attempt to load bean class failed", e);
+        }
+        if (factoredTypeName != null) {
+            log.info("Found factory bean '{}' for type '{}'", factoryClassName, factoredTypeName);
+            factoredTypes.add(factoredTypeName);
+        } else {
+            // the alternative to find out the type is to create instance of the factory, call the #getObject and inspect the returned type,
+            // however this can cause problems, so we are not doing it here ... instead alert the user.
+            log.warn("Found FactoryBean class {} which does not define generic interface for the target bean. Factory auto-mocking is likely to fail.", factoryClassName);
+        }
+    }
+
+    /**
+     * Same rule as the bean factory: the type of a bean created by a method of a factory bean is not predicted without instantiating the factory.
+     */
+    private boolean requiresEagerInit(String name) {
+        String factoryBeanName = factory.getBeanDefinition(name).getFactoryBeanName();
+        IndexedBean factoryBean = factoryBeanName != null ? beansByName.get(factoryBeanName) : null;
+        return factoryBean != null && factoryBean.isFactoryBean && !factory.containsSingleton(factoryBeanName);
+    }
+
+    private static final class IndexedBean {
+
+        private final String name;
+
+        private final boolean isFactoryBean;
+
+        private final boolean isAbstract;
+
+        private IndexedBean(String name, boolean isFactoryBean, boolean isAbstract) {
+            this.name = name;
+            this.isFactoryBean = isFactoryBean;
+            this.isAbstract = isAbstract;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.spring.mock;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import org.jmockring.spi.MockProviderSPI;
+
+/**
+ * Stand-in for an interface mock, which creates the actual mock on its first use.
+ * <p/>
+ * All calls on the proxy are delegated to the mock, so stubbing and verifying the mock applies to the beans wired with the proxy.
+ * {@link Object#equals(Object)}, {@link Object#hashCode()} and {@link Object#toString()} are answered by the proxy itself and do not create the mock.
+ *
+ * @date 17/10/26
+ * @see org.jmockring.annotation.DynamicContext#lazyMocks()
+ */
+public final class LazyMockProxy implements InvocationHandler {
+
+    private final Class<?> type;
+
+    private final MockProviderSPI provider;
+
+    private volatile Object mock;
+
+    private LazyMockProxy(Class<?> type, MockProviderSPI provider) {
+        this.type = type;
+        this.provider = provider;
+    }
+
+    /**
+     * @param type     must be an interface
+     * @param provider
+     *
+     * @return
+     * @should not create the mock before first use
+     * @should create the mock once on first use
+     * @should answer equals, hashCode and toString without creating the mock
+     */
+    static Object create(Class<?> type, MockProviderSPI provider) {
+        if (!type.isInterface()) {
+            throw new IllegalArgumentException("Lazy mocks can only be created for interfaces: " + type.getName());
+        }
+        ClassLoader classLoader = type.getClassLoader() != null ? type.getClassLoader() : ClassUtils.getDefaultClassLoader();
+        return Proxy.newProxyInstance(classLoader, new Class[]{type}, new LazyMockProxy(type, provider));
+    }
+
+    /**
+     * Resolve the actual mock behind a lazy mock, creating it if not yet done.
+     *
+     * @param bean
+     *
+     * @return the mock if the bean is a lazy mock, otherwise the bean itself
+     */
+    public static Object getMock(Object bean) {
+        LazyMockProxy lazyMock = lazyMockOf(bean);
+        return lazyMock != null ? lazyMock.materialise() : bean;
+    }
+
+    /**
+     * @param bean
+     *
+     * @return the mock if the bean is a lazy mock, or null if its mock is not yet created. Otherwise the bean itself
+     * @should return the same instance as getMock once created
+     * @should return the bean itself if it is not a lazy mock
+     */
+    public static Object getMaterialisedMock(Object bean) {
+        LazyMockProxy lazyMock = lazyMockOf(bean);
+        return lazyMock != null ? lazyMock.mock : bean;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            if ("equals".equals(method.getName())) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(method.getName())) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(method.getName())) {
+                return "Lazy mock for " + type.getName() + (mock != null ? "" : " (not yet created)");
+            }
+        }
+        try {
+            ReflectionUtils.makeAccessible(method);
+            return method.invoke(materialise(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private Object materialise() {
+        Object created = mock;
+        if (created == null) {
+            synchronized (this) {
+                created = mock;
+                if (created == null) {
+                    created = provider.createMock(type);
+                    mock = created;
+                }
+            }
+        }
+        return created;
+    }
+
+    private static LazyMockProxy lazyMockOf(Object bean) {
+        if (bean != null && Proxy.isProxyClass(bean.getClass()) && Proxy.getInvocationHandler(bean) instanceof LazyMockProxy) {
+            return (LazyMockProxy) Proxy.getInvocationHandler(bean);
+        }
+        return null;
+    }
+}
@@ -35,16 +35,34 @@ public class SpringMockitoFactory implements FactoryBean {
 
     private MockProviderSPI provider;
 
+    private boolean lazy;
+
     public SpringMockitoFactory() {
-        provider = PluggableServiceLoader.loadMockingProvider(true);
+        this(PluggableServiceLoader.loadMockingProvider(true));
+    }
+
+    SpringMockitoFactory(MockProviderSPI provider) {
+        this.provider = provider;
     }
 
     public void setType(final Class type) {
         this.type = type;
     }
 
+    /**
+     * @param lazy if true, interface types get a {@link LazyMockProxy} instead of the mock
+     * @should create lazy proxy for interface types
+     * @should create mock straight away for class types
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
     @Override
     public Object getObject() {
+        if (lazy && type.isInterface()) {
+            return LazyMockProxy.create(type, provider);
+        }
         return provider.createMock(type);
     }
 
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.spring.mock;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Resource;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Annotation wiring metadata of a bean class: the injection points declared with {@link Autowired}, {@link Inject} or {@link PersistenceContext}
+ * along with the names of their dependency types and their qualifier names.
+ * <p/>
+ * The metadata is normally read from the class file by {@link BeanClassScanner}, which also caches it for the whole JVM.
+ * {@link #introspect(Class)} creates the same metadata from an already loaded class.
+ *
+ * @date 17/10/26
+ */
+final class WiringMetadata {
+
+    static final String AUTOWIRED_DESCRIPTOR = "Lorg/springframework/beans/factory/annotation/Autowired;";
+
+    static final String INJECT_DESCRIPTOR = "Ljavax/inject/Inject;";
+
+    static final String PERSISTENCE_CONTEXT_DESCRIPTOR = "Ljavax/persistence/PersistenceContext;";
+
+    static final String QUALIFIER_DESCRIPTOR = "Lorg/springframework/beans/factory/annotation/Qualifier;";
+
+    static final String RESOURCE_DESCRIPTOR = "Ljavax/annotation/Resource;";
+
+    static final String NAMED_DESCRIPTOR = "Ljavax/inject/Named;";
+
+    private final List<InjectionPoint> injectionPoints;
+
+    WiringMetadata(List<InjectionPoint> injectionPoints) {
+        this.injectionPoints = Collections.unmodifiableList(injectionPoints);
+    }
+
+    List<InjectionPoint> getInjectionPoints() {
+        return injectionPoints;
+    }
+
+    /**
+     * Reflective equivalent of the class file scanning.
+     *
+     * @param beanClass
+     *
+     * @return
+     */
+    static WiringMetadata introspect(Class beanClass) {
+        List<InjectionPoint> injectionPoints = new ArrayList<InjectionPoint>();
+        for (Field field : beanClass.getDeclaredFields()) {
+            if (isWired(field)) {
+                injectionPoints.add(new InjectionPoint(InjectionPoint.Kind.FIELD, field.toString(),
+                        new String[]{ClassUtils.getQualifiedName(field.getType())},
+                        new String[]{getAnnotatedBeanName(field.getAnnotations())}));
+            }
+        }
+        for (Method method : beanClass.getDeclaredMethods()) {
+            if (isWired(method)) {
+                String[] parameterTypes = typeNames(method.getParameterTypes());
+                // the method annotations qualify its single parameter
+                String[] qualifiers = new String[parameterTypes.length];
+                if (qualifiers.length > 0) {
+                    qualifiers[0] = getAnnotatedBeanName(method.getAnnotations());
+                }
+                injectionPoints.add(new InjectionPoint(InjectionPoint.Kind.METHOD, method.getDeclaringClass().getName() + "." + method.getName(),
+                        parameterTypes, qualifiers));
+            }
+        }
+        for (Constructor constructor : beanClass.getDeclaredConstructors()) {
+            if (isWired(constructor)) {
+                Annotation[][] parameterAnnotations = constructor.getParameterAnnotations();
+                String[] qualifiers = new String[parameterAnnotations.length];
+                for (int i = 0; i < parameterAnnotations.length; i++) {
+                    qualifiers[i] = getAnnotatedBeanName(parameterAnnotations[i]);
+                }
+                injectionPoints.add(new InjectionPoint(InjectionPoint.Kind.CONSTRUCTOR, constructor.toString(),
+                        typeNames(constructor.getParameterTypes()), qualifiers));
+            }
+        }
+        return new WiringMetadata(injectionPoints);
+    }
+
+    private static String[] typeNames(Class[] types) {
+        String[] names = new String[types.length];
+        for (int i = 0; i < types.length; i++) {
+            names[i] = ClassUtils.getQualifiedName(types[i]);
+        }
+        return names;
+    }
+
+    private static boolean isWired(AccessibleObject member) {
+        return member.isAnnotationPresent(Autowired.class) || member.isAnnotationPresent(Inject.class) || member.isAnnotationPresent(PersistenceContext.class);
+    }
+
+    /**
+     * @param annotations
+     *
+     * @return
+     */
+    private static String getAnnotatedBeanName(Annotation[] annotations) {
+        String beanName = null;
+        for (Annotation annotation : annotations) {
+            if (annotation.annotationType() == Qualifier.class) {
+                beanName = ((Qualifier) annotation).value();
+            } else if (annotation.annotationType() == Resource.class) {
+                beanName = ((Resource) annotation).name();
+            } else if (annotation.annotationType() == Named.class) {
+                beanName = ((Named) annotation).value();
+            }
+        }
+        return beanName;
+    }
+
+    /**
+     * Single wired field, method or constructor.
+     */
+    static final class InjectionPoint {
+
+        enum Kind {
+            FIELD, METHOD, CONSTRUCTOR
+        }
+
+        private final Kind kind;
+
+        private final String description;
+
+        private final String[] dependencyTypes;
+
+        private final String[] qualifiers;
+
+        InjectionPoint(Kind kind, String description, String[] dependencyTypes, String[] qualifiers) {
+            this.kind = kind;
+            this.description = description;
+            this.dependencyTypes = dependencyTypes;
+            this.qualifiers = qualifiers;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        String getDescription() {
+            return description;
+        }
+
+        int getDependencyCount() {
+            return dependencyTypes.length;
+        }
+
+        /**
+         * @param index
+         *
+         * @return the qualified class name, as used by {@link ClassUtils#forName(String, ClassLoader)}
+         */
+        String getDependencyType(int index) {
+            return dependencyTypes[index];
+        }
+
+        /**
+         * @param index
+         *
+         * @return the bean name from {@link Qualifier}, {@link Resource} or {@link Named}, or null if not qualified
+         */
+        String getQualifier(int index) {
+            return qualifiers[index];
+        }
+    }
+}
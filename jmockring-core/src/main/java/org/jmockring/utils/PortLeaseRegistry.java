@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jmockring.configuration.ConfigurationConstants;
+
+/**
+ * Port lease table shared by all JVMs running servers on the same box.
+ * <p/>
+ * The table is a memory-mapped file in the temp directory with one 8 byte slot per port in the range
+ * [{@link PortChecker#MIN_PORT_NUMBER}, {@link PortChecker#MAX_PORT_NUMBER}]. A non-zero slot holds the PID of the owner JVM
+ * and the time (in seconds) of its last heartbeat. All reads and writes are done under an exclusive {@link FileLock},
+ * so two forks can never lease the same port.
+ * <p/>
+ * The file header holds a cursor to the port after the last lease. Lookups resume from there instead of scanning the range
+ * from the start port, so in the common case a lease checks a single slot, no matter how many ports are already leased.
+ * <p/>
+ * Each JVM refreshes the heartbeat of its leases from a daemon thread. Leases not refreshed within the TTL,
+ * i.e. left behind by a crashed or killed JVM, are treated as free.
+ * <p/>
+ * The file location can be changed with the system property {@link ConfigurationConstants#PORT_LEASE_FILE_SYSTEM_KEY}.
+ *
+ * @date 17/10/26
+ * @see org.jmockring.annotation.PortAllocation#LEASE
+ */
+public final class PortLeaseRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(PortLeaseRegistry.class);
+
+    private static final String DEFAULT_LEASE_FILE = "jmockring-port-leases.bin";
+
+    private static final long DEFAULT_TTL_SECONDS = 60;
+
+    private static final int SLOT_SIZE = 8;
+
+    private static final int SLOTS = PortChecker.MAX_PORT_NUMBER - PortChecker.MIN_PORT_NUMBER + 1;
+
+    /**
+     * The first slot-sized block of the file holds the lease cursor.
+     */
+    private static final int HEADER_SIZE = SLOT_SIZE;
+
+    private static PortLeaseRegistry instance;
+
+    private final File leaseFile;
+
+    private final long ttlSeconds;
+
+    private final int pid;
+
+    /**
+     * Ports leased by this JVM.
+     */
+    private final Set<Integer> ownLeases = new HashSet<Integer>();
+
+    private FileChannel channel;
+
+    private MappedByteBuffer table;
+
+    private ScheduledExecutorService heartbeat;
+
+    PortLeaseRegistry(File leaseFile, long ttlSeconds) {
+        this.leaseFile = leaseFile;
+        this.ttlSeconds = ttlSeconds;
+        this.pid = currentPid();
+    }
+
+    /**
+     * @return the JVM-wide registry backed by the shared lease file
+     */
+    public static synchronized PortLeaseRegistry getInstance() {
+        if (instance == null) {
+            String location = System.getProperty(ConfigurationConstants.PORT_LEASE_FILE_SYSTEM_KEY);
+            File leaseFile = location != null && !location.isEmpty() ? new File(location) : new File(System.getProperty("java.io.tmpdir"), DEFAULT_LEASE_FILE);
+            final PortLeaseRegistry registry = new PortLeaseRegistry(leaseFile, DEFAULT_TTL_SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread("PortLeaseRegistryShutdown") {
+                @Override
+                public void run() {
+                    registry.close();
+                }
+            });
+            instance = registry;
+        }
+        return instance;
+    }
+
+    /**
+     * @param startAtPort
+     * @return the leased port
+     * @see #lease(int, java.util.Set)
+     */
+    public int lease(int startAtPort) {
+        return lease(startAtPort, Collections.<Integer>emptySet());
+    }
+
+    /**
+     * Lease a port in the range [`startAtPort`, {@link PortChecker#MAX_PORT_NUMBER}] which is neither leased by another live JVM
+     * nor in use on this box.
+     * <p/>
+     * The lookup starts at the shared cursor if it is within the range and wraps around to `startAtPort`,
+     * so ports released or expired behind the cursor are reused once the ports ahead of it are taken.
+     *
+     * @param startAtPort
+     * @param excluded    ports not to lease, e.g. already allocated by the caller in some other way
+     * @return the leased port
+     * @throws IllegalStateException if no port can be leased
+     * @should not lease port held by another registry
+     * @should lease port with expired heartbeat
+     * @should resume lookup after the last leased port
+     * @should not lease excluded ports
+     */
+    public synchronized int lease(int startAtPort, Set<Integer> excluded) {
+        if (startAtPort < PortChecker.MIN_PORT_NUMBER || startAtPort > PortChecker.MAX_PORT_NUMBER) {
+            throw new IllegalArgumentException("Invalid start port: " + startAtPort);
+        }
+        FileLock lock = lockTable();
+        try {
+            long now = nowSeconds();
+            int cursor = (int) table.getLong(0);
+            int port = cursor >= startAtPort && cursor <= PortChecker.MAX_PORT_NUMBER ? cursor : startAtPort;
+            for (int checked = startAtPort; checked <= PortChecker.MAX_PORT_NUMBER; ++checked) {
+                if (!excluded.contains(port) && isFree(table.getLong(offset(port)), now) && PortChecker.available(port)) {
+                    table.putLong(offset(port), slotValue(now));
+                    table.putLong(0, port + 1);
+                    ownLeases.add(port);
+                    startHeartbeat();
+                    log.info("LOG00460: Leased port {} for process {}", port, pid);
+                    return port;
+                }
+                port = port < PortChecker.MAX_PORT_NUMBER ? port + 1 : startAtPort;
+            }
+        } finally {
+            unlock(lock);
+        }
+        throw new IllegalStateException(String.format("Can not lease port. Attempted range [%s, %s]", startAtPort, PortChecker.MAX_PORT_NUMBER));
+    }
+
+    /**
+     * Release a port leased by this JVM. Ports not leased here are ignored.
+     *
+     * @param port
+     * @should make released port available to other registries
+     */
+    public synchronized void release(int port) {
+        if (!ownLeases.remove(port)) {
+            return;
+        }
+        FileLock lock = lockTable();
+        try {
+            clearSlot(port);
+            log.info("LOG00470: Released port {} for process {}", port, pid);
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    /**
+     * Release all leases of this JVM, stop the heartbeat and close the lease file.
+     *
+     * @should release all leases and stop the heartbeat
+     */
+    public synchronized void close() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+            heartbeat = null;
+        }
+        if (channel == null) {
+            ownLeases.clear();
+            return;
+        }
+        try {
+            if (!ownLeases.isEmpty()) {
+                FileLock lock = channel.lock();
+                try {
+                    for (Integer port : ownLeases) {
+                        clearSlot(port);
+                    }
+                } finally {
+                    unlock(lock);
+                }
+            }
+            ownLeases.clear();
+            channel.close(); // the mapping itself is released when the buffer is collected
+        } catch (IOException e) {
+            log.error("LOG00790: Failed to close port lease file", e);
+        } finally {
+            channel = null;
+            table = null;
+        }
+    }
+
+    /**
+     * Only clears the slot if it is still ours: it may have expired and been taken over meanwhile.
+     * The cursor is moved back to the released port, so the next lease picks it up straight away.
+     *
+     * @param port
+     */
+    private void clearSlot(int port) {
+        if ((int) (table.getLong(offset(port)) >>> 32) == pid) {
+            table.putLong(offset(port), 0L);
+        }
+        if (port < (int) table.getLong(0)) {
+            table.putLong(0, port);
+        }
+    }
+
+    /**
+     * @return true if the heartbeat thread is running
+     */
+    synchronized boolean isHeartbeatRunning() {
+        return heartbeat != null && !heartbeat.isShutdown();
+    }
+
+    /**
+     * Refresh the heartbeat on all leases held by this JVM.
+     */
+    synchronized void refresh() {
+        if (ownLeases.isEmpty()) {
+            return;
+        }
+        FileLock lock = lockTable();
+        try {
+            long value = slotValue(nowSeconds());
+            for (Integer port : ownLeases) {
+                table.putLong(offset(port), value);
+            }
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    private boolean isFree(long slot, long now) {
+        if (slot == 0L) {
+            return true;
+        }
+        long lastHeartbeat = slot & 0xFFFFFFFFL;
+        return now - lastHeartbeat > ttlSeconds;
+    }
+
+    private long slotValue(long now) {
+        return ((long) pid << 32) | (now & 0xFFFFFFFFL);
+    }
+
+    private int offset(int port) {
+        return HEADER_SIZE + (port - PortChecker.MIN_PORT_NUMBER) * SLOT_SIZE;
+    }
+
+    private FileLock lockTable() {
+        try {
+            if (table == null) {
+                File dir = leaseFile.getAbsoluteFile().getParentFile();
+                if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                    throw new IOException("Can not create directory " + dir);
+                }
+                channel = new RandomAccessFile(leaseFile, "rw").getChannel();
+                // the mapping is extended with zeros (i.e. free slots) if the file is new
+                table = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) SLOTS * SLOT_SIZE);
+            }
+            return channel.lock();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not access port lease file " + leaseFile, e);
+        }
+    }
+
+    private void unlock(FileLock lock) {
+        try {
+            lock.release();
+        } catch (IOException e) {
+            log.error("LOG00480: Failed to release lock on port lease file", e);
+        }
+    }
+
+    private void startHeartbeat() {
+        if (heartbeat != null) {
+            return;
+        }
+        heartbeat = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "PortLeaseHeartbeat");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        long period = Math.max(1, ttlSeconds / 3);
+        heartbeat.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    log.error("LOG00490: Failed to refresh port leases", e);
+                }
+            }
+        }, period, period, TimeUnit.SECONDS);
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    /**
+     * The runtime name is `pid@host` on all mainstream JVMs. Any non-zero value unique enough among the running JVMs will do.
+     *
+     * @return
+     */
+    private static int currentPid() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        if (at > 0) {
+            try {
+                return Integer.parseInt(name.substring(0, at));
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        return new Random().nextInt(Integer.MAX_VALUE - 1) + 1;
+    }
+}
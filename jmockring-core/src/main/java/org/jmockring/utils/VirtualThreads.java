@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.utils;
+
+import java.lang.reflect.Method;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jmockring.configuration.ConfigurationConstants;
+
+/**
+ * Access to virtual threads (JDK 21+) without compiling against them.
+ *
+ * @date 17/10/26
+ * @see ConfigurationConstants#VIRTUAL_THREADS_KEY
+ */
+public final class VirtualThreads {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if the running JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Executor for the server requests, if enabled with {@link ConfigurationConstants#VIRTUAL_THREADS_KEY}.
+     *
+     * @param properties the server properties
+     * @param name       prefix of the thread names
+     *
+     * @return executor starting a new virtual thread per task, or null if not enabled or not supported by the JVM
+     * @should return null if not enabled
+     * @should return executor only if supported by the JVM
+     */
+    public static ExecutorService forServer(Properties properties, String name) {
+        if (!Boolean.parseBoolean(properties.getProperty(ConfigurationConstants.VIRTUAL_THREADS_KEY, "false").trim())) {
+            return null;
+        }
+        ExecutorService executor = newThreadPerTaskExecutor(name);
+        if (executor == null) {
+            log.warn("LOG00720: Virtual threads are not supported by this JVM ({}), using the default thread pool for '{}'",
+                    System.getProperty("java.version"), name);
+        }
+        return executor;
+    }
+
+    /**
+     * @param name prefix of the thread names
+     *
+     * @return executor starting a new virtual thread per task, or null if not supported by the JVM
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        if (!isSupported()) {
+            return null;
+        }
+        try {
+            // Thread.ofVirtual().name(name + "-", 0).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, factory);
+        } catch (Exception e) {
+            log.warn("LOG00730: Failed to create virtual thread executor", e);
+            return null;
+        }
+    }
+}
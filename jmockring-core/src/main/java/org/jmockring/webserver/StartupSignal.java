@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.webserver;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One-shot readiness signal fired by a {@link SignallingWebServer} implementation.
+ * <p/>
+ * The server completes it with {@link #started()} once it is listening and all its web applications are initialised,
+ * or with {@link #failed(Throwable)} if it can not get there. Only the first call has any effect.
+ *
+ * @date 17/10/26
+ * @see SignallingWebServer#getStartupSignal()
+ */
+public final class StartupSignal {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+
+    private volatile Throwable failure;
+
+    /**
+     * Mark the server as started and release all waiting threads.
+     */
+    public void started() {
+        if (completed.compareAndSet(false, true)) {
+            latch.countDown();
+        }
+    }
+
+    /**
+     * Mark the server startup as failed and release all waiting threads.
+     *
+     * @param cause
+     */
+    public void failed(Throwable cause) {
+        if (completed.compareAndSet(false, true)) {
+            failure = cause;
+            latch.countDown();
+        }
+    }
+
+    /**
+     * @return true if either {@link #started()} or {@link #failed(Throwable)} has been called.
+     */
+    public boolean isComplete() {
+        return latch.getCount() == 0;
+    }
+
+    /**
+     * Block until the signal is complete.
+     *
+     * @param timeout
+     * @param unit
+     * @throws InterruptedException
+     * @throws IllegalStateException if the startup failed or the timeout was reached
+     */
+    public void await(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!latch.await(timeout, unit)) {
+            throw new IllegalStateException(String.format("Server did not start within %s %s", timeout, unit.name().toLowerCase()));
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Server failed to start: " + failure.getMessage(), failure);
+        }
+    }
+}
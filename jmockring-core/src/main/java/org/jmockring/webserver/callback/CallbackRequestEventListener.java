@@ -21,19 +21,39 @@
 
 package org.jmockring.webserver.callback;
 
-import java.util.concurrent.SynchronousQueue;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.ServletRequestEvent;
 import javax.servlet.ServletRequestListener;
 import javax.servlet.http.HttpServletRequest;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.jmockring.configuration.ConfigurationConstants;
 import org.jmockring.configuration.ServerConfiguration;
 
 /**
  * Provide thread synchronisation for HTTP requests handled by the bootstrapped server.
+ * <p/>
+ * The request start/end events are recorded in a {@link RequestJournal}: the server threads never block and no event is lost
+ * while the test is not waiting (as long as the journal does not overflow, see {@link ConfigurationConstants#REQUEST_JOURNAL_SIZE_KEY}).
+ * The <code>waitForXXX</code> methods consume the events in order, starting from the beginning of the test method.
+ * Alternatively, {@link #whenRequestStarts(RequestMatcher)} and {@link #whenRequestEnds(RequestMatcher)} return futures which
+ * don't block any thread, e.g. to wait for requests to several servers at once with <code>Futures.allAsList(...)</code>.
+ * <p/>
+ * Requests are only captured while there is at least one {@link Subscription}, otherwise the listener returns straight away.
+ * The request parameters and headers are only copied and the {@link EndpointStatistics} are only collected if a subscriber asked for them.
+ * Each subscription reads the journal with its own cursors through {@link Subscription#getListener()}, so test classes sharing
+ * a server don't consume each other's events.
  *
  * @author Pavel Lechev
  * @date 31/01/13
@@ -51,40 +71,233 @@ public final class CallbackRequestEventListener implements ServletRequestListene
      */
     private final static int ABSOLUTE_MAX_TIMEOUT = 300;
 
+    private static final int DEFAULT_JOURNAL_SIZE = 1024;
+
+    private final RequestJournal journal;
+
+    /**
+     * Position of the next request start event to be returned by {@link #waitForRequestStart(int)}
+     */
+    private final RequestJournal.Cursor startCursor;
+
     /**
-     * Sync blocking queue used to handoff the request when it is initiated (before any filters or servlets are called)
+     * Position of the next request end event to be returned by {@link #waitForRequestEnd(int)}
      */
-    private SynchronousQueue<Request> startRendezvous = new SynchronousQueue<Request>(true);
+    private final RequestJournal.Cursor endCursor;
 
     /**
-     * Sync blocking queue used to handoff the request when it has completed (after all filters and servlets have been invoked)
+     * Number of active subscriptions: nothing is captured while this is 0
      */
-    private SynchronousQueue<Request> endRendezvous = new SynchronousQueue<Request>(true);
+    private final AtomicInteger subscribers;
+
+    private final AtomicInteger parameterSubscribers;
+
+    private final AtomicInteger headerSubscribers;
+
+    private final AtomicInteger statisticsSubscribers;
+
+    private final EndpointStatistics statistics;
+
+    private final SubscriptionIndex pendingRequests;
 
     private final ServerConfiguration serverConfiguration;
 
     public CallbackRequestEventListener(ServerConfiguration serverConfiguration) {
         this.serverConfiguration = serverConfiguration;
+        this.journal = new RequestJournal(getJournalSize(serverConfiguration));
+        this.subscribers = new AtomicInteger();
+        this.parameterSubscribers = new AtomicInteger();
+        this.headerSubscribers = new AtomicInteger();
+        this.statisticsSubscribers = new AtomicInteger();
+        this.statistics = new EndpointStatistics();
+        this.pendingRequests = new SubscriptionIndex();
+        this.startCursor = journal.newCursor();
+        this.endCursor = journal.newCursor();
+    }
+
+    /**
+     * View of the shared listener with its own cursors: everything but the <code>waitForXXX</code> positions is shared.
+     */
+    private CallbackRequestEventListener(CallbackRequestEventListener shared) {
+        this.serverConfiguration = shared.serverConfiguration;
+        this.journal = shared.journal;
+        this.subscribers = shared.subscribers;
+        this.parameterSubscribers = shared.parameterSubscribers;
+        this.headerSubscribers = shared.headerSubscribers;
+        this.statisticsSubscribers = shared.statisticsSubscribers;
+        this.statistics = shared.statistics;
+        this.pendingRequests = shared.pendingRequests;
+        this.startCursor = journal.newCursor();
+        this.endCursor = journal.newCursor();
     }
 
+    /**
+     * @should not capture requests without subscribers
+     */
     @Override
     public void requestDestroyed(ServletRequestEvent sre) {
+        if (subscribers.get() == 0) {
+            return;
+        }
         HttpServletRequest request = (HttpServletRequest) sre.getServletRequest();
-        log.info("LOG00000: requestDestroyed: {}", request);
-        endRendezvous.offer(new Request(
-                Request.Method.valueOf(request.getMethod().toUpperCase()),
-                request.getRequestURI(),
-                request.getParameterMap()));
+        log.debug("LOG00000: requestDestroyed: {}", request);
+        statistics.finish(request);
+        Request captured = capture(request);
+        journal.publish(RequestJournal.Event.Type.END, captured);
+        pendingRequests.dispatch(RequestJournal.Event.Type.END, captured);
     }
 
+    /**
+     * @should not capture requests without subscribers
+     * @should capture parameters and headers only if requested
+     */
     @Override
     public void requestInitialized(ServletRequestEvent sre) {
+        if (subscribers.get() == 0) {
+            return;
+        }
         HttpServletRequest request = (HttpServletRequest) sre.getServletRequest();
-        log.info("LOG00010: requestInitialized: {}", request);
-        startRendezvous.offer(new Request(
+        log.debug("LOG00010: requestInitialized: {}", request);
+        if (statisticsSubscribers.get() > 0) {
+            statistics.start(request);
+        }
+        Request captured = capture(request);
+        journal.publish(RequestJournal.Event.Type.START, captured);
+        pendingRequests.dispatch(RequestJournal.Event.Type.START, captured);
+    }
+
+    /**
+     * Start capturing the requests.
+     * <p/>
+     * The capture stays active until all subscriptions are cancelled.
+     *
+     * @param captureParameters copy the request parameters into the captured requests
+     * @param captureHeaders    copy the request headers into the captured requests
+     *
+     * @return the subscription, must be cancelled when no longer needed
+     */
+    public Subscription subscribe(boolean captureParameters, boolean captureHeaders) {
+        return subscribe(captureParameters, captureHeaders, false);
+    }
+
+    /**
+     * Same as {@link #subscribe(boolean, boolean)}, optionally collecting the {@link #getStatistics() endpoint statistics}.
+     *
+     * @param captureParameters
+     * @param captureHeaders
+     * @param collectStatistics record latency, CPU time and allocated bytes per endpoint
+     *
+     * @return the subscription, must be cancelled when no longer needed
+     */
+    public Subscription subscribe(boolean captureParameters, boolean captureHeaders, boolean collectStatistics) {
+        return new Subscription(captureParameters, captureHeaders, collectStatistics);
+    }
+
+    /**
+     * Future of the next request starting after this call and matching the matcher.
+     * <p/>
+     * The requests are captured for as long as the future is pending. Cancel the future if the request is no longer expected.
+     *
+     * @param matcher
+     *
+     * @return
+     * @should complete with the first matching request
+     */
+    public ListenableFuture<Request> whenRequestStarts(RequestMatcher matcher) {
+        return whenRequest(RequestJournal.Event.Type.START, matcher);
+    }
+
+    /**
+     * Future of the next request completing after this call and matching the matcher.
+     *
+     * @param matcher
+     *
+     * @return
+     * @see #whenRequestStarts(RequestMatcher)
+     */
+    public ListenableFuture<Request> whenRequestEnds(RequestMatcher matcher) {
+        return whenRequest(RequestJournal.Event.Type.END, matcher);
+    }
+
+    private ListenableFuture<Request> whenRequest(RequestJournal.Event.Type type, RequestMatcher matcher) {
+        // keep capturing while the future is pending, even if no test subscribed to this listener
+        final Subscription subscription = subscribe(matcher.hasParameterConditions(), false);
+        return pendingRequests.add(type, matcher, new Runnable() {
+            @Override
+            public void run() {
+                subscription.cancel();
+            }
+        });
+    }
+
+    /**
+     * @return true if there is at least one active subscription
+     */
+    public boolean isCapturing() {
+        return subscribers.get() > 0;
+    }
+
+    private Request capture(HttpServletRequest request) {
+        return new Request(
                 Request.Method.valueOf(request.getMethod().toUpperCase()),
                 request.getRequestURI(),
-                request.getParameterMap()));
+                parameterSubscribers.get() > 0 ? copyParameters(request) : null,
+                headerSubscribers.get() > 0 ? copyHeaders(request) : null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String[]> copyParameters(HttpServletRequest request) {
+        return new HashMap<String, String[]>(request.getParameterMap());
+    }
+
+    private static Map<String, List<String>> copyHeaders(HttpServletRequest request) {
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        Enumeration<String> names = request.getHeaderNames();
+        while (names != null && names.hasMoreElements()) {
+            String name = names.nextElement();
+            headers.put(name, Collections.list(request.getHeaders(name)));
+        }
+        return headers;
+    }
+
+    /**
+     * @return the journal of all request events, for waiting with explicit cursors
+     */
+    public RequestJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return latency and resource usage per endpoint, since the start of the test method
+     * @see org.jmockring.annotation.RemoteRequestListener#collectStatistics()
+     */
+    public EndpointStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Ignore all events recorded so far: the <code>waitForXXX</code> methods of this listener will only return requests from now on
+     * and the {@link #getStatistics() statistics} are cleared.
+     * <p/>
+     * Only this listener's cursors move: the views of other subscriptions keep their positions.
+     *
+     * @see Subscription#skipToLatest()
+     */
+    public void skipToLatest() {
+        skipCursorsToLatest();
+        statistics.clear();
+    }
+
+    private void skipCursorsToLatest() {
+        startCursor.skipToLatest();
+        endCursor.skipToLatest();
+    }
+
+    /**
+     * @return number of request events overwritten in the journal before the <code>waitForXXX</code> methods of this listener read them
+     */
+    public long getOverflowCount() {
+        return startCursor.getOverflowCount() + endCursor.getOverflowCount();
     }
 
     /**
@@ -93,26 +306,18 @@ public final class CallbackRequestEventListener implements ServletRequestListene
      * @param timeout max time in seconds to wait for the request.
      *
      * @return Request details or null if the timeout was reached
+     * @throws IllegalStateException if there is no active subscription, i.e. no request would ever be captured
+     * @should fail if no request is being captured
      */
     public Request waitForRequestStart(int timeout) {
-        if (timeout <= 0) {
-            throw new IllegalArgumentException("Timeout must be more than 0.");
-        }
-        if (timeout > ABSOLUTE_MAX_TIMEOUT) {
-            throw new IllegalArgumentException("Maximum timeout " + timeout + " exceeds " + ABSOLUTE_MAX_TIMEOUT + " seconds.");
-        }
-        try {
-            log.info("LOG00020: waitForRequestStart()");
-            return startRendezvous.poll(timeout, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            throw new RuntimeException("Thread was interrupted", e);
-        }
+        log.info("LOG00020: waitForRequestStart()");
+        return await(startCursor, RequestJournal.Event.Type.START, null, timeout);
     }
 
     /**
      * Same as #waitForRequestStart but will only return the request if its URI contains the pattern.
      * <p/>
-     * May potentially block for longer than <code>timeout</code> as it will wait for specific request arriving and discard the non-matching ones.
+     * The non-matching requests are skipped, but remain in the journal.
      *
      * @param uriPattern
      * @param timeout
@@ -120,21 +325,14 @@ public final class CallbackRequestEventListener implements ServletRequestListene
      * @return
      */
     public Request waitForRequestStart(String uriPattern, int timeout) {
-        while (true) {
-            Request request = waitForRequestStart(timeout);
-            if (request == null) {
-                return null;
-            }
-            if (request.getRequestUri().contains(uriPattern)) {
-                return request;
-            }
-        }
+        log.info("LOG00020: waitForRequestStart({})", uriPattern);
+        return await(startCursor, RequestJournal.Event.Type.START, uriPattern, timeout);
     }
 
     /**
      * Same as #waitForRequestEnd but will only return the request if its URI contains the pattern.
      * <p/>
-     * May potentially block for longer than <code>timeout</code> as it will wait for specific request arriving and discard the non-matching ones.
+     * The non-matching requests are skipped, but remain in the journal.
      *
      * @param uriPattern
      * @param timeout
@@ -142,15 +340,8 @@ public final class CallbackRequestEventListener implements ServletRequestListene
      * @return
      */
     public Request waitForRequestEnd(String uriPattern, int timeout) {
-        while (true) {
-            Request request = waitForRequestEnd(timeout);
-            if (request == null) {
-                return null;
-            }
-            if (request.getRequestUri().contains(uriPattern)) {
-                return request;
-            }
-        }
+        log.info("LOG00020: waitForRequestEnd({})", uriPattern);
+        return await(endCursor, RequestJournal.Event.Type.END, uriPattern, timeout);
     }
 
 
@@ -160,20 +351,118 @@ public final class CallbackRequestEventListener implements ServletRequestListene
      * @param timeout max time in seconds to wait for the request.
      *
      * @return Request details or null if the timeout was reached
+     * @throws IllegalStateException if there is no active subscription, i.e. no request would ever be captured
      */
     public Request waitForRequestEnd(int timeout) {
+        log.info("LOG00020: waitForRequestEnd()");
+        return await(endCursor, RequestJournal.Event.Type.END, null, timeout);
+    }
+
+    /**
+     * Wait for the next matching event after the cursor and move the cursor past it.
+     */
+    private Request await(RequestJournal.Cursor cursor, RequestJournal.Event.Type type, String uriPattern, int timeout) {
         if (timeout <= 0) {
             throw new IllegalArgumentException("Timeout must be more than 0.");
         }
         if (timeout > ABSOLUTE_MAX_TIMEOUT) {
             throw new IllegalArgumentException("Maximum timeout " + timeout + " exceeds " + ABSOLUTE_MAX_TIMEOUT + " seconds.");
         }
+        if (!isCapturing()) {
+            throw new IllegalStateException("No request is being captured: subscribe(...) and wait on Subscription.getListener()");
+        }
         try {
-            log.info("LOG00020: waitForRequestEnd()");
-            return endRendezvous.poll(timeout, TimeUnit.SECONDS);
+            long overflowBefore = cursor.getOverflowCount();
+            RequestJournal.Event event = journal.next(cursor, type, uriPattern, timeout, TimeUnit.SECONDS);
+            long lost = cursor.getOverflowCount() - overflowBefore;
+            if (lost > 0) {
+                log.warn("LOG00800: {} request events were overwritten before they were read, consider increasing {}",
+                        lost, ConfigurationConstants.REQUEST_JOURNAL_SIZE_KEY);
+            }
+            return event != null ? event.getRequest() : null;
         } catch (InterruptedException e) {
             throw new RuntimeException("Thread was interrupted", e);
         }
     }
 
+    private static int getJournalSize(ServerConfiguration serverConfiguration) {
+        Properties properties = serverConfiguration != null ? serverConfiguration.getProperties() : null;
+        String size = properties != null ? properties.getProperty(ConfigurationConstants.REQUEST_JOURNAL_SIZE_KEY) : null;
+        return size != null ? Integer.parseInt(size.trim()) : DEFAULT_JOURNAL_SIZE;
+    }
+
+    /**
+     * Active request capture for a test.
+     */
+    public final class Subscription {
+
+        private final boolean parameters;
+
+        private final boolean headers;
+
+        private final boolean statistics;
+
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        private final CallbackRequestEventListener listener = new CallbackRequestEventListener(CallbackRequestEventListener.this);
+
+        private Subscription(boolean parameters, boolean headers, boolean statistics) {
+            this.parameters = parameters;
+            this.headers = headers;
+            this.statistics = statistics;
+            if (statistics) {
+                EndpointStatistics.enableThreadMeasurement();
+                statisticsSubscribers.incrementAndGet();
+            }
+            if (parameters) {
+                parameterSubscribers.incrementAndGet();
+            }
+            if (headers) {
+                headerSubscribers.incrementAndGet();
+            }
+            subscribers.incrementAndGet();
+        }
+
+        /**
+         * @return view of the listener reading the requests with this subscription's own cursors
+         */
+        public CallbackRequestEventListener getListener() {
+            return listener;
+        }
+
+        /**
+         * Ignore all events recorded so far: the <code>waitForXXX</code> methods of {@link #getListener()} will only return requests
+         * from now on. The shared {@link #getStatistics() statistics} are cleared only if this subscription collects them.
+         * <p/>
+         * Called before each test method.
+         *
+         * @should move only the cursors of this subscription
+         */
+        public void skipToLatest() {
+            listener.skipCursorsToLatest();
+            if (statistics) {
+                CallbackRequestEventListener.this.statistics.clear();
+            }
+        }
+
+        /**
+         * Stop capturing for this subscription. Subsequent calls have no effect.
+         */
+        public void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                subscribers.decrementAndGet();
+                if (parameters) {
+                    parameterSubscribers.decrementAndGet();
+                }
+                if (headers) {
+                    headerSubscribers.decrementAndGet();
+                }
+                if (statistics) {
+                    statisticsSubscribers.decrementAndGet();
+                    EndpointStatistics.releaseThreadMeasurement();
+                }
+            }
+        }
+    }
+
 }
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.webserver.callback;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jmockring.utils.LatencyHistogram;
+
+/**
+ * Latency, allocation and CPU statistics of the requests handled by the server, per endpoint.
+ * <p/>
+ * An endpoint is the HTTP method plus the Spring MVC mapping pattern of the handler (e.g. <code>GET /orders/{id}</code>)
+ * or, for requests not handled by Spring MVC, the request path within the context.
+ * <p/>
+ * The allocated bytes and the CPU time are measured on the request thread with {@link ThreadMXBean},
+ * so they are only recorded if the JVM supports it and the request completes on the same thread it started on.
+ * The JVM-wide measurement is switched on when the first statistics subscriber registers and restored to its previous
+ * state when the last one cancels (see {@link #enableThreadMeasurement()}).
+ *
+ * @date 17/10/26
+ * @see CallbackRequestEventListener#getStatistics()
+ */
+public final class EndpointStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(EndpointStatistics.class);
+
+    /**
+     * Set by Spring MVC's <code>HandlerMapping</code> on the request (spring-webmvc is not a dependency of this module)
+     */
+    static final String BEST_MATCHING_PATTERN_ATTRIBUTE = "org.springframework.web.servlet.HandlerMapping.bestMatchingPattern";
+
+    private static final String SAMPLE_ATTRIBUTE = EndpointStatistics.class.getName() + ".sample";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static final boolean CPU_TIME_SUPPORTED = isCpuTimeSupported();
+
+    private static final boolean ALLOCATION_SUPPORTED = isAllocationSupported();
+
+    /**
+     * Number of statistics subscribers using the thread measurement, guarded by the class lock
+     */
+    private static int measurementUsers;
+
+    private static boolean cpuTimeWasEnabled;
+
+    private static boolean allocationWasEnabled;
+
+    private static volatile boolean cpuTimeMeasured;
+
+    private static volatile boolean allocationMeasured;
+
+    private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+
+    /**
+     * Mark the start of the request.
+     *
+     * @param request
+     */
+    void start(HttpServletRequest request) {
+        request.setAttribute(SAMPLE_ATTRIBUTE, new Sample());
+    }
+
+    /**
+     * Record the request started with {@link #start(HttpServletRequest)}.
+     *
+     * @param request
+     *
+     * @should record latency per method and mapping pattern
+     * @should ignore requests which were not started
+     */
+    void finish(HttpServletRequest request) {
+        Object sample = request.getAttribute(SAMPLE_ATTRIBUTE);
+        if (!(sample instanceof Sample)) {
+            return;
+        }
+        request.removeAttribute(SAMPLE_ATTRIBUTE);
+        String key = key(Request.Method.valueOf(request.getMethod().toUpperCase()), getPath(request));
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint == null) {
+            Endpoint created = new Endpoint(key);
+            endpoint = endpoints.putIfAbsent(key, created);
+            if (endpoint == null) {
+                endpoint = created;
+            }
+        }
+        ((Sample) sample).recordTo(endpoint);
+    }
+
+    /**
+     * @param method
+     * @param path   the mapping pattern (e.g. <code>/orders/{id}</code>) or the path within the context
+     *
+     * @return the endpoint statistics or null if no such request was recorded
+     */
+    public Endpoint getEndpoint(Request.Method method, String path) {
+        return endpoints.get(key(method, path));
+    }
+
+    /**
+     * @return all recorded endpoints, keyed by <code>METHOD path</code>
+     */
+    public Map<String, Endpoint> getEndpoints() {
+        return Collections.unmodifiableMap(endpoints);
+    }
+
+    /**
+     * Discard all recorded statistics.
+     */
+    public void clear() {
+        endpoints.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Endpoint endpoint : endpoints.values()) {
+            sb.append(endpoint).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String key(Request.Method method, String path) {
+        return method + " " + path;
+    }
+
+    private static String getPath(HttpServletRequest request) {
+        Object pattern = request.getAttribute(BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern != null) {
+            return pattern.toString();
+        }
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        if (contextPath != null && uri.startsWith(contextPath)) {
+            uri = uri.substring(contextPath.length());
+        }
+        return uri.isEmpty() ? "/" : uri;
+    }
+
+    /**
+     * Switch on the JVM-wide thread CPU time and allocated memory measurement, if supported.
+     * <p/>
+     * Called for each statistics subscriber, the measurement stays on until all of them call {@link #releaseThreadMeasurement()}.
+     *
+     * @should enable the measurement for the first user only
+     */
+    static synchronized void enableThreadMeasurement() {
+        if (measurementUsers++ > 0) {
+            return;
+        }
+        if (CPU_TIME_SUPPORTED) {
+            try {
+                cpuTimeWasEnabled = THREADS.isThreadCpuTimeEnabled();
+                if (!cpuTimeWasEnabled) {
+                    THREADS.setThreadCpuTimeEnabled(true);
+                }
+                cpuTimeMeasured = true;
+            } catch (SecurityException e) {
+                log.debug("LOG00680: Thread CPU time can not be enabled: {}", e.getMessage());
+            }
+        }
+        if (ALLOCATION_SUPPORTED) {
+            try {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+                allocationWasEnabled = threads.isThreadAllocatedMemoryEnabled();
+                if (!allocationWasEnabled) {
+                    threads.setThreadAllocatedMemoryEnabled(true);
+                }
+                allocationMeasured = true;
+            } catch (SecurityException e) {
+                log.debug("LOG00690: Thread allocated memory can not be enabled: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Release the measurement enabled by {@link #enableThreadMeasurement()}: the last user restores the state it had before.
+     *
+     * @should restore the previous state when the last user releases the measurement
+     */
+    static synchronized void releaseThreadMeasurement() {
+        if (measurementUsers == 0 || --measurementUsers > 0) {
+            return;
+        }
+        if (cpuTimeMeasured) {
+            cpuTimeMeasured = false;
+            if (!cpuTimeWasEnabled) {
+                THREADS.setThreadCpuTimeEnabled(false);
+            }
+        }
+        if (allocationMeasured) {
+            allocationMeasured = false;
+            if (!allocationWasEnabled) {
+                ((com.sun.management.ThreadMXBean) THREADS).setThreadAllocatedMemoryEnabled(false);
+            }
+        }
+    }
+
+    private static boolean isCpuTimeSupported() {
+        try {
+            return THREADS.isCurrentThreadCpuTimeSupported();
+        } catch (UnsupportedOperationException e) {
+            log.debug("LOG00680: Thread CPU time is not supported: {}", e.getMessage());
+        } catch (SecurityException e) {
+            log.debug("LOG00680: Thread CPU time is not supported: {}", e.getMessage());
+        }
+        return false;
+    }
+
+    private static boolean isAllocationSupported() {
+        try {
+            return THREADS instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported();
+        } catch (UnsupportedOperationException e) {
+            log.debug("LOG00690: Thread allocated memory is not supported: {}", e.getMessage());
+        } catch (SecurityException e) {
+            log.debug("LOG00690: Thread allocated memory is not supported: {}", e.getMessage());
+        } catch (LinkageError e) {
+            log.debug("LOG00690: Thread allocated memory is not supported: {}", e.toString());
+        }
+        return false;
+    }
+
+    private static long allocatedBytes(long threadId) {
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * State of the request at its start.
+     */
+    private static final class Sample {
+
+        private final long startTime = System.nanoTime();
+
+        private final long threadId = Thread.currentThread().getId();
+
+        private final long cpuTime = cpuTimeMeasured ? THREADS.getCurrentThreadCpuTime() : -1;
+
+        private final long allocated = allocationMeasured ? allocatedBytes(threadId) : -1;
+
+        private void recordTo(Endpoint endpoint) {
+            endpoint.latency.record(System.nanoTime() - startTime);
+            if (Thread.currentThread().getId() != threadId) {
+                return; // completed asynchronously: the thread counters are not comparable
+            }
+            // the counters are -1 if the measurement was switched off during the request
+            long cpuTimeNow = cpuTime >= 0 && cpuTimeMeasured ? THREADS.getCurrentThreadCpuTime() : -1;
+            if (cpuTimeNow >= 0) {
+                endpoint.cpuTime.record(cpuTimeNow - cpuTime);
+            }
+            long allocatedNow = allocated >= 0 && allocationMeasured ? allocatedBytes(threadId) : -1;
+            if (allocatedNow >= 0) {
+                endpoint.allocatedBytes.record(allocatedNow - allocated);
+            }
+        }
+    }
+
+    /**
+     * Statistics of a single endpoint.
+     */
+    public static final class Endpoint {
+
+        private final String name;
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final LatencyHistogram cpuTime = new LatencyHistogram();
+
+        private final LatencyHistogram allocatedBytes = new LatencyHistogram();
+
+        private Endpoint(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return number of completed requests
+         */
+        public long getCount() {
+            return latency.getCount();
+        }
+
+        /**
+         * @param percentile between 0 and 100, e.g. 99
+         * @param unit
+         *
+         * @return request latency at the percentile
+         */
+        public long getLatency(double percentile, TimeUnit unit) {
+            return unit.convert(latency.getValueAtPercentile(percentile), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @param percentile between 0 and 100, e.g. 99
+         * @param unit
+         *
+         * @return CPU time of the request thread at the percentile, 0 if not supported
+         */
+        public long getCpuTime(double percentile, TimeUnit unit) {
+            return unit.convert(cpuTime.getValueAtPercentile(percentile), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @param percentile between 0 and 100, e.g. 99
+         *
+         * @return bytes allocated by the request thread at the percentile, 0 if not supported
+         */
+        public long getAllocatedBytes(double percentile) {
+            return allocatedBytes.getValueAtPercentile(percentile);
+        }
+
+        /**
+         * @return latency histogram in nanoseconds
+         */
+        public LatencyHistogram getLatencyHistogram() {
+            return latency;
+        }
+
+        /**
+         * @return CPU time histogram in nanoseconds
+         */
+        public LatencyHistogram getCpuTimeHistogram() {
+            return cpuTime;
+        }
+
+        /**
+         * @return allocated bytes histogram
+         */
+        public LatencyHistogram getAllocatedBytesHistogram() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: latency %s, p99 CPU %.3fms, p99 allocated %dB",
+                    name,
+                    latency,
+                    cpuTime.getValueAtPercentile(99) / 1e6,
+                    allocatedBytes.getValueAtPercentile(99));
+        }
+    }
+}
@@ -21,6 +21,8 @@
 
 package org.jmockring.webserver.callback;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -42,11 +44,24 @@ public final class Request {
 
     final private Map<String, String[]> parameters;
 
+    private final Map<String, List<String>> headers;
+
 
     public Request(Method method, String requestUri, Map<String, String[]> parameters) {
+        this(method, requestUri, parameters, null);
+    }
+
+    /**
+     * @param method
+     * @param requestUri
+     * @param parameters null if not captured
+     * @param headers    null if not captured
+     */
+    public Request(Method method, String requestUri, Map<String, String[]> parameters, Map<String, List<String>> headers) {
         this.method = method;
         this.requestUri = requestUri;
-        this.parameters = parameters;
+        this.parameters = parameters != null ? parameters : Collections.<String, String[]>emptyMap();
+        this.headers = headers != null ? headers : Collections.<String, List<String>>emptyMap();
     }
 
     public String getRequestUri() {
@@ -57,10 +72,22 @@ public final class Request {
         return method;
     }
 
+    /**
+     * @return the request parameters, empty unless capturing them is enabled
+     * @see org.jmockring.annotation.RemoteRequestListener#captureParameters()
+     */
     public Map<String, String[]> getParameters() {
         return parameters;
     }
 
+    /**
+     * @return the request headers, empty unless capturing them is enabled
+     * @see org.jmockring.annotation.RemoteRequestListener#captureHeaders()
+     */
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
     public enum Method {
         GET, POST, PUT, HEAD, DELETE, OPTIONS, TRACE
     }
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.webserver.callback;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded ring buffer of request start/end events.
+ * <p/>
+ * Every event gets a sequence number. The server threads publish without locking or blocking, the test threads read
+ * by cursor: "the next event with sequence &gt;= N matching X". When more events are published than the journal can
+ * hold, the oldest ones are overwritten. Each {@link Cursor} counts the overwritten events it missed in its own
+ * {@link Cursor#getOverflowCount() overflow count}, so the loss of one reader does not show up for the others.
+ *
+ * @date 17/10/26
+ */
+public final class RequestJournal {
+
+    private final AtomicReferenceArray<Event> slots;
+
+    private final int mask;
+
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+
+    /**
+     * @param capacity rounded up to the next power of 2
+     */
+    public RequestJournal(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Journal capacity must be at least 1");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<Event>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Append event and wake up the waiting readers. Never blocks.
+     *
+     * @param type
+     * @param request
+     *
+     * @return the sequence of the event
+     */
+    public long publish(Event.Type type, Request request) {
+        long sequence = nextSequence.getAndIncrement();
+        slots.set((int) (sequence & mask), new Event(sequence, type, request));
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+        return sequence;
+    }
+
+    /**
+     * @return the sequence the next published event will get: use it as cursor to wait for events from now on
+     */
+    public long getSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * @return new cursor at the end of the journal: it only sees the events published from now on
+     */
+    public Cursor newCursor() {
+        return new Cursor(getSequence());
+    }
+
+    /**
+     * Find the first event with sequence equal or greater than the cursor, matching the type and URI pattern,
+     * waiting for it to be published if necessary.
+     * <p/>
+     * Overwritten events are skipped without being counted, use {@link #next(Cursor, Event.Type, String, long, TimeUnit)} to track them.
+     *
+     * @param cursor     first sequence to consider
+     * @param type       null matches both types
+     * @param uriPattern null matches any URI, otherwise the request URI must contain it
+     * @param timeout
+     * @param unit
+     *
+     * @return the event or null if the timeout was reached
+     * @throws InterruptedException
+     * @should return events published before the call
+     * @should skip non matching events
+     * @should return null on timeout
+     */
+    public Event next(long cursor, Event.Type type, String uriPattern, long timeout, TimeUnit unit) throws InterruptedException {
+        return find(cursor, type, uriPattern, System.nanoTime() + unit.toNanos(timeout), new long[1]);
+    }
+
+    /**
+     * Same as {@link #next(long, Event.Type, String, long, TimeUnit)}, moving the cursor past the returned event.
+     * <p/>
+     * Several threads may read with the same cursor: each event is returned to one of them only.
+     *
+     * @param cursor
+     * @param type
+     * @param uriPattern
+     * @param timeout
+     * @param unit
+     *
+     * @return the event or null if the timeout was reached, in which case the cursor is not moved
+     * @throws InterruptedException
+     * @should move the cursor past the returned event
+     * @should count overwritten events per cursor
+     */
+    public Event next(Cursor cursor, Event.Type type, String uriPattern, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long[] lost = new long[1];
+        while (true) {
+            long from = cursor.position.get();
+            lost[0] = 0;
+            Event event = find(from, type, uriPattern, deadline, lost);
+            if (event == null) {
+                return null;
+            }
+            // another thread may have consumed the same event in the meantime: try again from the new position
+            if (cursor.position.compareAndSet(from, event.sequence + 1)) {
+                cursor.overflowCount.addAndGet(lost[0]);
+                return event;
+            }
+        }
+    }
+
+    /**
+     * @param lost incremented by the number of overwritten events skipped
+     */
+    private Event find(long from, Event.Type type, String uriPattern, long deadline, long[] lost) throws InterruptedException {
+        long sequence = from;
+        Thread current = Thread.currentThread();
+        boolean waiting = false;
+        try {
+            while (true) {
+                Event event = slots.get((int) (sequence & mask));
+                if (event != null && event.sequence >= sequence) {
+                    if (event.sequence > sequence) {
+                        // the slot was reused: everything up to the oldest event still held is lost for this reader
+                        long oldest = Math.max(sequence, nextSequence.get() - slots.length());
+                        lost[0] += oldest - sequence;
+                        sequence = oldest;
+                        continue;
+                    }
+                    if (event.matches(type, uriPattern)) {
+                        return event;
+                    }
+                    sequence++;
+                    continue;
+                }
+                // not published yet: wait for it
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                if (!waiting) {
+                    waiters.add(current);
+                    waiting = true;
+                    continue; // re-check after registering, so a concurrent publish can't be missed
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            if (waiting) {
+                waiters.remove(current);
+            }
+        }
+    }
+
+    /**
+     * Read position in the journal, with its own count of the events overwritten before it could read them.
+     */
+    public final class Cursor {
+
+        private final AtomicLong position;
+
+        private final AtomicLong overflowCount = new AtomicLong();
+
+        private Cursor(long position) {
+            this.position = new AtomicLong(position);
+        }
+
+        /**
+         * @return the sequence of the next event to be read
+         */
+        public long getPosition() {
+            return position.get();
+        }
+
+        /**
+         * @return number of events overwritten before this cursor could read them
+         */
+        public long getOverflowCount() {
+            return overflowCount.get();
+        }
+
+        /**
+         * Ignore the events published so far.
+         */
+        public void skipToLatest() {
+            position.set(getSequence());
+        }
+    }
+
+    /**
+     * Request event recorded in the journal.
+     */
+    public static final class Event {
+
+        public enum Type {
+            START, END
+        }
+
+        private final long sequence;
+
+        private final Type type;
+
+        private final Request request;
+
+        private Event(long sequence, Type type, Request request) {
+            this.sequence = sequence;
+            this.type = type;
+            this.request = request;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public Request getRequest() {
+            return request;
+        }
+
+        private boolean matches(Type expectedType, String uriPattern) {
+            return (expectedType == null || expectedType == type)
+                    && (uriPattern == null || request.getRequestUri().contains(uriPattern));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Event{sequence=%d, type=%s, request=%s}", sequence, type, request);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.webserver.callback;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Match captured requests by URI pattern, method and parameters.
+ * <p/>
+ * The URI pattern is matched against the full request URI (including the context path) and supports:
+ * <ul>
+ * <li><code>*</code> - any characters within a path segment</li>
+ * <li><code>**</code> - any characters, including <code>/</code></li>
+ * <li><code>{name}</code> - one non empty path segment</li>
+ * </ul>
+ * E.g. <code>RequestMatcher.forUri("/context3/orders/{id}").withMethod(Request.Method.GET)</code>.
+ *
+ * @date 17/10/26
+ * @see CallbackRequestEventListener#whenRequestStarts(RequestMatcher)
+ * @see CallbackRequestEventListener#whenRequestEnds(RequestMatcher)
+ */
+public final class RequestMatcher {
+
+    private final String uriPattern;
+
+    private final Pattern compiled;
+
+    private final String prefix;
+
+    private Request.Method method;
+
+    private final Map<String, String> parameters = new LinkedHashMap<String, String>();
+
+    private RequestMatcher(String uriPattern) {
+        this.uriPattern = uriPattern;
+        StringBuilder regex = new StringBuilder();
+        int literalEnd = -1;
+        int i = 0;
+        while (i < uriPattern.length()) {
+            char c = uriPattern.charAt(i);
+            if (c == '*' || c == '{') {
+                if (literalEnd < 0) {
+                    literalEnd = i;
+                }
+                if (c == '{') {
+                    int close = uriPattern.indexOf('}', i);
+                    if (close < 0) {
+                        throw new IllegalArgumentException("Unclosed '{' in URI pattern " + uriPattern);
+                    }
+                    regex.append("[^/]+");
+                    i = close + 1;
+                } else if (i + 1 < uriPattern.length() && uriPattern.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i += 2;
+                } else {
+                    regex.append("[^/]*");
+                    i++;
+                }
+            } else {
+                int next = i;
+                while (next < uriPattern.length() && uriPattern.charAt(next) != '*' && uriPattern.charAt(next) != '{') {
+                    next++;
+                }
+                regex.append(Pattern.quote(uriPattern.substring(i, next)));
+                i = next;
+            }
+        }
+        this.compiled = Pattern.compile(regex.toString());
+        this.prefix = literalEnd < 0 ? uriPattern : uriPattern.substring(0, literalEnd);
+    }
+
+    /**
+     * @param uriPattern
+     *
+     * @return matcher of all requests with URI matching the pattern
+     */
+    public static RequestMatcher forUri(String uriPattern) {
+        if (uriPattern == null) {
+            throw new IllegalArgumentException("URI pattern is required");
+        }
+        return new RequestMatcher(uriPattern);
+    }
+
+    /**
+     * @return matcher of all requests
+     */
+    public static RequestMatcher any() {
+        return new RequestMatcher("**");
+    }
+
+    public RequestMatcher withMethod(Request.Method method) {
+        this.method = method;
+        return this;
+    }
+
+    /**
+     * Only match requests having the parameter. Requires the request parameters to be captured.
+     *
+     * @param name
+     * @param value one of the parameter values must be equal to this, or null to only check the parameter is present
+     *
+     * @return
+     */
+    public RequestMatcher withParameter(String name, String value) {
+        this.parameters.put(name, value);
+        return this;
+    }
+
+    /**
+     * @return true if the request parameters must be captured for this matcher
+     */
+    public boolean hasParameterConditions() {
+        return !parameters.isEmpty();
+    }
+
+    /**
+     * @return the literal start of the URI pattern, i.e. every matching URI starts with it
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @param request
+     *
+     * @return
+     * @should match URI patterns with wildcards and path variables
+     * @should match method and parameters
+     */
+    public boolean matches(Request request) {
+        if (method != null && method != request.getMethod()) {
+            return false;
+        }
+        if (!request.getRequestUri().startsWith(prefix) || !compiled.matcher(request.getRequestUri()).matches()) {
+            return false;
+        }
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            if (!hasParameter(request, parameter.getKey(), parameter.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasParameter(Request request, String name, String value) {
+        String[] values = request.getParameters().get(name);
+        if (values == null) {
+            return false;
+        }
+        if (value == null) {
+            return true;
+        }
+        for (String candidate : values) {
+            if (value.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("RequestMatcher[")
+                .append("uriPattern='").append(uriPattern).append('\'')
+                .append(", method=").append(method)
+                .append(", parameters=").append(parameters)
+                .append(']')
+                .toString();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.webserver.callback;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Pending request futures, indexed by the literal prefix of their URI pattern up to the last <code>/</code>.
+ * <p/>
+ * Dispatching a request only looks at the futures registered under the prefixes of its URI (one lookup per path segment),
+ * so the cost does not grow with the number of futures waiting for other paths.
+ *
+ * @date 17/10/26
+ */
+final class SubscriptionIndex {
+
+    private final ConcurrentMap<String, Queue<Pending>> index = new ConcurrentHashMap<String, Queue<Pending>>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /**
+     * @param type
+     * @param matcher
+     * @param onCompletion run once the future is completed or cancelled
+     *
+     * @return future completed with the first request published after this call and matching the type and matcher
+     */
+    ListenableFuture<Request> add(RequestJournal.Event.Type type, RequestMatcher matcher, final Runnable onCompletion) {
+        String prefix = matcher.getPrefix();
+        String key = prefix.substring(0, prefix.lastIndexOf('/') + 1);
+        Queue<Pending> queue = index.get(key);
+        if (queue == null) {
+            Queue<Pending> created = new ConcurrentLinkedQueue<Pending>();
+            queue = index.putIfAbsent(key, created);
+            if (queue == null) {
+                queue = created;
+            }
+        }
+        final Pending pending = new Pending(type, matcher);
+        final Queue<Pending> registeredIn = queue;
+        pendingCount.incrementAndGet();
+        registeredIn.add(pending);
+        pending.future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (registeredIn.remove(pending)) {
+                    pendingCount.decrementAndGet();
+                }
+                onCompletion.run();
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return pending.future;
+    }
+
+    /**
+     * Complete all pending futures matching the event.
+     *
+     * @param type
+     * @param request
+     */
+    void dispatch(RequestJournal.Event.Type type, Request request) {
+        if (pendingCount.get() == 0) {
+            return;
+        }
+        String uri = request.getRequestUri();
+        dispatch(index.get(""), type, request);
+        for (int i = uri.indexOf('/'); i >= 0; i = uri.indexOf('/', i + 1)) {
+            dispatch(index.get(uri.substring(0, i + 1)), type, request);
+        }
+    }
+
+    /**
+     * @return number of futures not yet completed
+     */
+    int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    private static void dispatch(Queue<Pending> queue, RequestJournal.Event.Type type, Request request) {
+        if (queue == null) {
+            return;
+        }
+        for (Pending pending : queue) {
+            if (pending.type == type && !pending.future.isDone() && pending.matcher.matches(request)) {
+                pending.future.set(request);
+            }
+        }
+    }
+
+    private static final class Pending {
+
+        private final RequestJournal.Event.Type type;
+
+        private final RequestMatcher matcher;
+
+        private final SettableFuture<Request> future = SettableFuture.create();
+
+        private Pending(RequestJournal.Event.Type type, RequestMatcher matcher) {
+            this.type = type;
+            this.matcher = matcher;
+        }
+    }
+}
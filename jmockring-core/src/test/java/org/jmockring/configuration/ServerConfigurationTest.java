@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.configuration;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.Closeable;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @date 17/10/26
+ */
+public class ServerConfigurationTest {
+
+    private ServerConfiguration underTest;
+
+    private CountingResource resource;
+
+    @Before
+    public void setUp() throws Exception {
+        underTest = new ServerConfiguration(null, null);
+        resource = new CountingResource();
+        underTest.registerSharedResource(CountingResource.class, resource);
+    }
+
+    /**
+     * @verifies close the resources when the last user releases them
+     * @see ServerConfiguration#releaseSharedResources()
+     */
+    @Test
+    public void releaseSharedResources_shouldCloseTheResourcesWhenTheLastUserReleasesThem() throws Exception {
+        underTest.retainSharedResources();
+
+        assertThat(underTest.releaseSharedResources(), is(0));
+        assertThat(resource.closed, is(1));
+        assertThat(underTest.getSharedResource(CountingResource.class), nullValue());
+    }
+
+    /**
+     * @verifies keep the resources open while other users retain them
+     * @see ServerConfiguration#releaseSharedResources()
+     */
+    @Test
+    public void releaseSharedResources_shouldKeepTheResourcesOpenWhileOtherUsersRetainThem() throws Exception {
+        underTest.retainSharedResources();
+        underTest.retainSharedResources();
+
+        assertThat(underTest.releaseSharedResources(), is(1));
+        assertThat(resource.closed, is(0));
+        assertThat(underTest.getSharedResource(CountingResource.class), is(resource));
+
+        assertThat(underTest.releaseSharedResources(), is(0));
+        assertThat(resource.closed, is(1));
+    }
+
+    private static class CountingResource implements Closeable {
+
+        private int closed;
+
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+}
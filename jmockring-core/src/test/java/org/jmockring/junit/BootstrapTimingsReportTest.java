@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.junit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.matchers.JUnitMatchers.containsString;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import org.jmockring.annotation.BootstrapConfig;
+import org.jmockring.annotation.DynamicContext;
+import org.jmockring.annotation.Server;
+import org.jmockring.configuration.BootstrapTimings;
+import org.jmockring.configuration.ServerConfiguration;
+import org.jmockring.webserver.WebServer;
+
+/**
+ * @date 17/10/26
+ */
+public class BootstrapTimingsReportTest {
+
+    /**
+     * @verifies write one row per phase
+     * @see BootstrapTimingsReport#toCsv(String, java.util.Collection)
+     */
+    @Test
+    public void toCsv_shouldWriteOneRowPerPhase() throws Exception {
+        ServerConfiguration configuration = newConfiguration("default");
+        configuration.getTimings().record(BootstrapTimings.Phase.PORT_ALLOCATION, System.nanoTime());
+        configuration.getTimings().record(BootstrapTimings.Phase.INITIALISE, System.nanoTime());
+
+        String[] rows = BootstrapTimingsReport.toCsv("my.Test", Collections.singleton(configuration)).split("\n");
+
+        assertThat(rows.length, is(3));
+        assertThat(rows[0], is("testClass,server,executionName,port,context,phase,nanos"));
+        assertThat(rows[1], containsString("my.Test," + WebServer.class.getName() + ",default,8080,<server>,PORT_ALLOCATION,"));
+        assertThat(rows[2], containsString(",<server>,INITIALISE,"));
+    }
+
+    /**
+     * @verifies quote values containing separators
+     * @see BootstrapTimingsReport#toCsv(String, java.util.Collection)
+     */
+    @Test
+    public void toCsv_shouldQuoteValuesContainingSeparators() throws Exception {
+        ServerConfiguration configuration = newConfiguration("a,\"b\"");
+        configuration.getTimings().record(BootstrapTimings.Phase.INITIALISE, System.nanoTime());
+
+        String csv = BootstrapTimingsReport.toCsv("my.Test", Collections.singleton(configuration));
+
+        assertThat(csv, containsString(",\"a,\"\"b\"\"\",8080,"));
+    }
+
+    /**
+     * @verifies escape control characters
+     * @see BootstrapTimingsReport#toJson(String, java.util.Collection)
+     */
+    @Test
+    public void toJson_shouldEscapeControlCharacters() throws Exception {
+        ServerConfiguration configuration = newConfiguration("line1\nline2\t\"x\"\\\u0001");
+
+        String json = BootstrapTimingsReport.toJson("my.Test", Collections.singleton(configuration));
+
+        assertThat(json, containsString("\"executionName\":\"line1\\nline2\\t\\\"x\\\"\\\\\\u0001\""));
+    }
+
+    private ServerConfiguration newConfiguration(String executionName) {
+        ServerConfiguration configuration = new ServerConfiguration(ReportTestClass.class.getAnnotation(Server.class), BootstrapConfig.DEFAULT.getConfig());
+        configuration.setExecutionName(executionName);
+        configuration.setPort(8080);
+        return configuration;
+    }
+
+    @Server(dynamicContexts = @DynamicContext(springContextLocations = "classpath:/spring/application-context.xml", contextPath = "/context1"),
+            testClass = ReportTestClass.class)
+    static final class ReportTestClass {
+
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.junit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+
+import org.jmockring.annotation.BootstrapConfig;
+import org.jmockring.annotation.DynamicContext;
+import org.jmockring.annotation.Server;
+
+/**
+ * @date 17/10/26
+ */
+public class ServerBootstrapCacheTest {
+
+    /**
+     * @verifies create same fingerprint for identical configurations on different classes
+     * @see ServerBootstrapCache#fingerprint(org.jmockring.annotation.Server[], org.jmockring.annotation.BootstrapConfig, String)
+     */
+    @Test
+    public void fingerprint_shouldCreateSameFingerprintForIdenticalConfigurationsOnDifferentClasses() throws Exception {
+        assertThat(fingerprintOf(FirstTestClass.class), is(fingerprintOf(SecondTestClass.class)));
+    }
+
+    /**
+     * @verifies create different fingerprints for different configurations
+     * @see ServerBootstrapCache#fingerprint(org.jmockring.annotation.Server[], org.jmockring.annotation.BootstrapConfig, String)
+     */
+    @Test
+    public void fingerprint_shouldCreateDifferentFingerprintsForDifferentConfigurations() throws Exception {
+        assertThat(fingerprintOf(FirstTestClass.class), not(is(fingerprintOf(OtherContextTestClass.class))));
+    }
+
+    /**
+     * @verifies return null for unknown configuration
+     * @see ServerBootstrapCache#acquire(String)
+     */
+    @Test
+    public void acquire_shouldReturnNullForUnknownConfiguration() throws Exception {
+        ServerBootstrapCache cache = new ServerBootstrapCache(1);
+        cache.put("first", mock(ServerBootstrap.class));
+
+        assertThat(cache.acquire("second"), nullValue());
+    }
+
+    /**
+     * @verifies return cached bootstrap for known configuration
+     * @see ServerBootstrapCache#acquire(String)
+     */
+    @Test
+    public void acquire_shouldReturnCachedBootstrapForKnownConfiguration() throws Exception {
+        ServerBootstrapCache cache = new ServerBootstrapCache(1);
+        ServerBootstrap bootstrap = mock(ServerBootstrap.class);
+        cache.put("first", bootstrap);
+
+        assertThat(cache.acquire("first"), sameInstance(bootstrap));
+    }
+
+    /**
+     * @verifies shut down least recently used idle servers when full
+     * @see ServerBootstrapCache#put(String, ServerBootstrap)
+     */
+    @Test
+    public void put_shouldShutDownLeastRecentlyUsedIdleServersWhenFull() throws Exception {
+        ServerBootstrapCache cache = new ServerBootstrapCache(2);
+        ServerBootstrap first = mock(ServerBootstrap.class);
+        ServerBootstrap second = mock(ServerBootstrap.class);
+        cache.put("first", first);
+        cache.release("first");
+        cache.put("second", second);
+        cache.release("second");
+        cache.acquire("first"); // first is now the most recently used
+        cache.release("first");
+
+        cache.put("third", mock(ServerBootstrap.class));
+
+        verify(second).shutdown();
+        verify(first, never()).shutdown();
+        assertThat(cache.acquire("second"), nullValue());
+    }
+
+    /**
+     * @verifies not shut down servers in use
+     * @see ServerBootstrapCache#put(String, ServerBootstrap)
+     */
+    @Test
+    public void put_shouldNotShutDownServersInUse() throws Exception {
+        ServerBootstrapCache cache = new ServerBootstrapCache(1);
+        ServerBootstrap first = mock(ServerBootstrap.class);
+        cache.put("first", first);
+
+        cache.put("second", mock(ServerBootstrap.class));
+
+        verify(first, never()).shutdown();
+        assertThat(cache.acquire("first"), sameInstance(first));
+    }
+
+    /**
+     * @verifies shut down released servers if the cache is over its size
+     * @see ServerBootstrapCache#release(String)
+     */
+    @Test
+    public void release_shouldShutDownReleasedServersIfTheCacheIsOverItsSize() throws Exception {
+        ServerBootstrapCache cache = new ServerBootstrapCache(1);
+        ServerBootstrap first = mock(ServerBootstrap.class);
+        cache.put("first", first);
+        cache.acquire("first"); // a second test class runs against the same servers
+        cache.put("second", mock(ServerBootstrap.class));
+
+        cache.release("first");
+        verify(first, never()).shutdown();
+
+        cache.release("first");
+        verify(first).shutdown();
+    }
+
+    /**
+     * @verifies not replace running servers
+     * @see ServerBootstrapCache#put(String, ServerBootstrap)
+     */
+    @Test
+    public void put_shouldNotReplaceRunningServers() throws Exception {
+        ServerBootstrapCache cache = new ServerBootstrapCache(1);
+        ServerBootstrap first = mock(ServerBootstrap.class);
+        ServerBootstrap second = mock(ServerBootstrap.class);
+        assertThat(cache.put("same", first), is(true));
+
+        assertThat(cache.put("same", second), is(false)); // the second class keeps and shuts down its own servers
+        assertThat(cache.acquire("same"), sameInstance(first));
+
+        // the first class and the class which acquired the servers release them: the cache stays within its size
+        cache.put("other", mock(ServerBootstrap.class));
+        cache.release("same");
+        verify(first, never()).shutdown();
+        cache.release("same");
+        verify(first).shutdown();
+        cache.release("same"); // no more users: ignored
+        verify(second, never()).shutdown();
+    }
+
+    /**
+     * @verifies reserve unknown configuration only once
+     * @see ServerBootstrapCache#reserve(String)
+     */
+    @Test
+    public void reserve_shouldReserveUnknownConfigurationOnlyOnce() throws Exception {
+        ServerBootstrapCache cache = new ServerBootstrapCache(1);
+        ServerBootstrap bootstrap = mock(ServerBootstrap.class);
+
+        assertThat(cache.reserve("same"), is(true));
+        assertThat(cache.reserve("same"), is(false));
+        assertThat(cache.acquire("same"), nullValue()); // still starting
+
+        assertThat(cache.put("same", bootstrap), is(true));
+        assertThat(cache.reserve("same"), is(false));
+        assertThat(cache.acquire("same"), sameInstance(bootstrap));
+
+        cache.cancel("same"); // not a reservation any more: ignored
+        assertThat(cache.acquire("same"), sameInstance(bootstrap));
+        assertThat(cache.reserve("failed"), is(true));
+        cache.cancel("failed");
+        assertThat(cache.reserve("failed"), is(true));
+    }
+
+    private String fingerprintOf(Class<?> testClass) {
+        return ServerBootstrapCache.fingerprint(new Server[]{testClass.getAnnotation(Server.class)}, BootstrapConfig.DEFAULT.getConfig(), null);
+    }
+
+    @Server(dynamicContexts = @DynamicContext(springContextLocations = "classpath:/spring/application-context.xml", contextPath = "/context1"),
+            testClass = FirstTestClass.class)
+    static final class FirstTestClass {
+
+    }
+
+    @Server(dynamicContexts = @DynamicContext(springContextLocations = "classpath:/spring/application-context.xml", contextPath = "/context1"),
+            testClass = SecondTestClass.class)
+    static final class SecondTestClass {
+
+    }
+
+    @Server(dynamicContexts = @DynamicContext(springContextLocations = "classpath:/spring/application-context.xml", contextPath = "/context2"),
+            testClass = OtherContextTestClass.class)
+    static final class OtherContextTestClass {
+
+    }
+}
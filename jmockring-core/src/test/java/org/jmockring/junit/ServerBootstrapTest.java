@@ -2,11 +2,23 @@ package org.jmockring.junit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
 import org.jmockring.annotation.BootstrapConfig;
+import org.jmockring.annotation.DynamicContext;
 import org.jmockring.annotation.Param;
+import org.jmockring.annotation.PortAllocation;
+import org.jmockring.annotation.Server;
 import org.jmockring.annotation.Servers;
+import org.jmockring.configuration.ServerConfiguration;
+import org.jmockring.webserver.WebServer;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -46,8 +58,46 @@ public class ServerBootstrapTest {
     }
 
 
+    /**
+     * @verifies stop initialised servers if another server fails to initialise
+     * @see ServerBootstrap#runAll()
+     */
+    @Test
+    public void runAll_shouldStopInitialisedServersIfAnotherServerFailsToInitialise() throws Exception {
+        when(runnerMock.getConfiguredTestClass()).thenReturn(new TestClass(FailingSecondServerTestClass.class));
+        RecordingServer.EVENTS.clear();
+
+        try {
+            new ServerBootstrap(runnerMock).runAll();
+            fail("Expected the bootstrap to fail");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("Can not bind"));
+        }
+
+        assertThat(RecordingServer.EVENTS, is(Arrays.asList("initialise", "shutdown")));
+    }
+
+    /**
+     * @verifies fail and stop the server if it did not publish the ephemeral port
+     * @see ServerBootstrap#runAll()
+     */
+    @Test
+    public void runAll_shouldFailAndStopTheServerIfItDidNotPublishTheEphemeralPort() throws Exception {
+        when(runnerMock.getConfiguredTestClass()).thenReturn(new TestClass(EphemeralPortTestClass.class));
+        RecordingServer.EVENTS.clear();
+
+        try {
+            new ServerBootstrap(runnerMock).runAll();
+            fail("Expected the bootstrap to fail");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage().contains("did not publish the ephemeral port"), is(true));
+        }
+
+        assertThat(RecordingServer.EVENTS, is(Arrays.asList("initialise", "shutdown")));
+    }
+
     @RunWith(ExternalServerJUnitRunner.class)
-    @BootstrapConfig(numberOfAttempts = 10,
+    @BootstrapConfig(startupTimeout = 10,
             systemProperties = {@Param(name = "sProp1", value = "sValue1"), @Param(name = "sProp2", value = "sValue2")})
     @Servers({})
     static final class DummyTestClass {
@@ -55,5 +105,68 @@ public class ServerBootstrapTest {
 
     }
 
+    @Servers({
+            @Server(dynamicContexts = @DynamicContext(springContextLocations = "classpath:/spring/application-context.xml", contextPath = "/first"),
+                    bootstrap = RecordingServer.class,
+                    name = "first",
+                    testClass = FailingSecondServerTestClass.class),
+            @Server(dynamicContexts = @DynamicContext(springContextLocations = "classpath:/spring/application-context.xml", contextPath = "/second"),
+                    bootstrap = FailingServer.class,
+                    name = "second",
+                    testClass = FailingSecondServerTestClass.class)
+    })
+    static final class FailingSecondServerTestClass {
+
+    }
+
+    @Servers(@Server(dynamicContexts = @DynamicContext(springContextLocations = "classpath:/spring/application-context.xml", contextPath = "/ephemeral"),
+            bootstrap = RecordingServer.class,
+            name = "ephemeral",
+            portAllocation = PortAllocation.EPHEMERAL,
+            testClass = EphemeralPortTestClass.class))
+    static final class EphemeralPortTestClass {
+
+    }
+
+    public static class RecordingServer implements WebServer {
+
+        static final List<String> EVENTS = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void initialise(ServerConfiguration configuration) {
+            EVENTS.add("initialise");
+        }
+
+        @Override
+        public void start() {
+            EVENTS.add("start");
+        }
+
+        @Override
+        public void shutdown() {
+            EVENTS.add("shutdown");
+        }
+
+        @Override
+        public int getPort() {
+            return 0;
+        }
+
+        @Override
+        public String getName() {
+            return "Recording server";
+        }
+
+        @Override
+        public void waitForInitialisation() {
+        }
+    }
+
+    public static class FailingServer extends RecordingServer {
 
+        @Override
+        public void initialise(ServerConfiguration configuration) {
+            throw new IllegalStateException("Can not bind");
+        }
+    }
 }
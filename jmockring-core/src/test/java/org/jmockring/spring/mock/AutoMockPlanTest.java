@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.spring.mock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.FileSystemUtils;
+
+import org.jmockring.annotation.DynamicContext;
+import org.jmockring.annotation.Server;
+import org.jmockring.configuration.ConfigurationConstants;
+import org.jmockring.configuration.DynamicContextConfiguration;
+
+/**
+ * @date 17/10/26
+ */
+public class AutoMockPlanTest {
+
+    private final DynamicContextConfiguration configuration = new DynamicContextConfiguration(
+            Dummy.class.getAnnotation(Server.class).dynamicContexts()[0], Dummy.class.getAnnotation(Server.class));
+
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = File.createTempFile("automock-plans", "");
+        cacheDir.delete();
+        cacheDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(ConfigurationConstants.AUTOMOCK_CACHE_DIR_SYSTEM_KEY);
+        FileSystemUtils.deleteRecursively(cacheDir);
+    }
+
+    /**
+     * @verifies create same key for same definitions
+     * @see AutoMockPlan#key(org.springframework.beans.factory.support.DefaultListableBeanFactory, org.jmockring.configuration.BaseContextConfiguration)
+     */
+    @Test
+    public void key_shouldCreateSameKeyForSameDefinitions() throws Exception {
+        assertThat(AutoMockPlan.key(factoryReferencing("repository"), configuration),
+                is(AutoMockPlan.key(factoryReferencing("repository"), configuration)));
+    }
+
+    /**
+     * @verifies create different key when a bean reference changes
+     * @see AutoMockPlan#key(org.springframework.beans.factory.support.DefaultListableBeanFactory, org.jmockring.configuration.BaseContextConfiguration)
+     */
+    @Test
+    public void key_shouldCreateDifferentKeyWhenABeanReferenceChanges() throws Exception {
+        assertThat(AutoMockPlan.key(factoryReferencing("repository"), configuration),
+                not(is(AutoMockPlan.key(factoryReferencing("otherRepository"), configuration))));
+    }
+
+    /**
+     * @verifies load the stored operations
+     * @see AutoMockPlan#load(java.io.File, String, BeanClassScanner)
+     */
+    @Test
+    public void load_shouldLoadTheStoredOperations() throws Exception {
+        BeanClassScanner scanner = new BeanClassScanner(getClass().getClassLoader());
+        scanner.scan(Service.class.getName());
+        AutoMockPlan plan = new AutoMockPlan();
+        plan.recordRemoval("clockImpl");
+        plan.recordMock("repository", Repository.class);
+        plan.recordProperties("properties", java.util.Properties.class);
+
+        plan.store(cacheDir, "key", scanner);
+        AutoMockPlan loaded = AutoMockPlan.load(cacheDir, "key", new BeanClassScanner(getClass().getClassLoader()));
+
+        assertThat(loaded, notNullValue());
+        assertThat(describe(loaded), is(describe(plan)));
+        assertThat(describe(loaded), is("[REMOVE clockImpl null, MOCK repository " + Repository.class.getName() + ", PROPERTIES properties java.util.Properties]"));
+    }
+
+    /**
+     * @verifies not load plan if a recorded class file has changed
+     * @see AutoMockPlan#load(java.io.File, String, BeanClassScanner)
+     */
+    @Test
+    public void load_shouldNotLoadPlanIfARecordedClassFileHasChanged() throws Exception {
+        // a private copy of the class file, so its stamp can be changed
+        File classes = new File(cacheDir, "classes");
+        File classFile = copyClassFile(Repository.class, classes);
+        ClassLoader classLoader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, null);
+        BeanClassScanner scanner = new BeanClassScanner(classLoader);
+        scanner.scan(Repository.class.getName());
+        AutoMockPlan plan = new AutoMockPlan();
+        plan.recordMock("repository", Repository.class);
+        plan.store(cacheDir, "key", scanner);
+        assertThat(AutoMockPlan.load(cacheDir, "key", new BeanClassScanner(classLoader)), notNullValue());
+
+        assertThat(classFile.setLastModified(classFile.lastModified() + 10000), is(true));
+
+        assertThat(AutoMockPlan.load(cacheDir, "key", new BeanClassScanner(classLoader)), nullValue());
+    }
+
+    /**
+     * @verifies store plan which reproduces the full analysis
+     * @see AutoMockPlan#store(java.io.File, String, BeanClassScanner)
+     */
+    @Test
+    public void store_shouldStorePlanWhichReproducesTheFullAnalysis() throws Exception {
+        System.setProperty(ConfigurationConstants.AUTOMOCK_CACHE_DIR_SYSTEM_KEY, cacheDir.getAbsolutePath());
+        DynamicContextConfiguration forcingConfiguration = new DynamicContextConfiguration(
+                ForcedMocks.class.getAnnotation(Server.class).dynamicContexts()[0], ForcedMocks.class.getAnnotation(Server.class));
+
+        DefaultListableBeanFactory analysed = serviceFactory();
+        new BeanAutoMockPostProcessor(forcingConfiguration).postProcessBeanDefinitionRegistry(analysed);
+        File[] plans = cacheDir.listFiles();
+        assertThat(plans.length, is(1));
+        assertThat(plans[0].setLastModified(1000), is(true));
+
+        DefaultListableBeanFactory planned = serviceFactory();
+        new BeanAutoMockPostProcessor(forcingConfiguration).postProcessBeanDefinitionRegistry(planned);
+
+        assertThat(plans[0].lastModified(), is(1000L)); // applied, not analysed and stored again
+
+        assertThat(describe(planned), is(describe(analysed)));
+        assertThat(describe(analysed).get("repository"), is(SpringMockitoFactory.class.getName() + "[type=" + Repository.class.getName() + "]"));
+        assertThat(describe(analysed).get("clockImpl"), is(SpringMockitoFactory.class.getName() + "[type=" + ClockImpl.class.getName() + "]"));
+    }
+
+    private DefaultListableBeanFactory serviceFactory() {
+        DefaultListableBeanFactory factory = new DefaultListableBeanFactory();
+        factory.registerBeanDefinition("service", new RootBeanDefinition(Service.class));
+        factory.registerBeanDefinition("clockImpl", new RootBeanDefinition(ClockImpl.class));
+        return factory;
+    }
+
+    private static Map<String, String> describe(DefaultListableBeanFactory factory) {
+        Map<String, String> definitions = new TreeMap<String, String>();
+        for (String name : factory.getBeanDefinitionNames()) {
+            BeanDefinition definition = factory.getBeanDefinition(name);
+            StringBuilder description = new StringBuilder(definition.getBeanClassName()).append('[');
+            for (PropertyValue value : definition.getPropertyValues().getPropertyValueList()) {
+                Object type = value.getValue();
+                description.append(value.getName()).append('=').append(type instanceof Class ? ((Class) type).getName() : type);
+            }
+            definitions.put(name, description.append(']').toString());
+        }
+        return definitions;
+    }
+
+    private static String describe(AutoMockPlan plan) {
+        List<String> operations = new ArrayList<String>();
+        for (AutoMockPlan.Operation operation : plan.getOperations()) {
+            operations.add(operation.getKind() + " " + operation.getBeanName() + " " + operation.getTypeName());
+        }
+        return operations.toString();
+    }
+
+    private static File copyClassFile(Class<?> type, File classes) throws Exception {
+        String path = ClassUtils.convertClassNameToResourcePath(type.getName()) + ClassUtils.CLASS_FILE_SUFFIX;
+        File target = new File(classes, path);
+        target.getParentFile().mkdirs();
+        InputStream in = type.getClassLoader().getResourceAsStream(path);
+        OutputStream out = new FileOutputStream(target);
+        try {
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+        return target;
+    }
+
+    private DefaultListableBeanFactory factoryReferencing(String referencedBeanName) {
+        RootBeanDefinition definition = new RootBeanDefinition(Object.class);
+        definition.getPropertyValues().addPropertyValue("repository", new RuntimeBeanReference(referencedBeanName));
+        DefaultListableBeanFactory factory = mock(DefaultListableBeanFactory.class);
+        when(factory.getBeanDefinitionNames()).thenReturn(new String[]{"service"});
+        when(factory.getBeanDefinition("service")).thenReturn(definition);
+        when(factory.getAliases("service")).thenReturn(new String[0]);
+        when(factory.getSingletonNames()).thenReturn(new String[0]);
+        return factory;
+    }
+
+    @Server(testClass = Dummy.class, dynamicContexts = @DynamicContext(springContextLocations = "/spring/context.xml"))
+    private static class Dummy {
+
+    }
+
+    @Server(testClass = ForcedMocks.class, dynamicContexts = @DynamicContext(springContextLocations = "/spring/context.xml", forcedMockTypes = Clock.class))
+    private static class ForcedMocks {
+
+    }
+
+    public interface Repository {
+
+    }
+
+    public interface Clock {
+
+    }
+
+    public static class ClockImpl implements Clock {
+
+    }
+
+    public static class Service {
+
+        @Autowired
+        private Repository repository;
+
+        @Autowired
+        private Clock clock;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.spring.mock;
+
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.Serializable;
+import java.util.List;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.junit.Test;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+
+/**
+ * @date 17/10/26
+ */
+public class BeanClassScannerTest {
+
+    private final BeanClassScanner scanner = new BeanClassScanner(getClass().getClassLoader());
+
+    /**
+     * @verifies read wiring metadata from class file
+     * @see BeanClassScanner#scan(String)
+     */
+    @Test
+    public void scan_shouldReadWiringMetadataFromClassFile() throws Exception {
+        List<WiringMetadata.InjectionPoint> injectionPoints = scanner.scan(WiredBean.class.getName()).getWiringMetadata().getInjectionPoints();
+
+        assertThat(injectionPoints.size(), is(3));
+        WiringMetadata.InjectionPoint field = injectionPoints.get(0);
+        assertThat(field.getKind(), is(WiringMetadata.InjectionPoint.Kind.FIELD));
+        assertThat(field.getDependencyType(0), is(Runnable.class.getName()));
+        assertThat(field.getQualifier(0), is("task"));
+        WiringMetadata.InjectionPoint method = injectionPoints.get(1);
+        assertThat(method.getKind(), is(WiringMetadata.InjectionPoint.Kind.METHOD));
+        assertThat(method.getDependencyType(0), is(Serializable[].class.getCanonicalName()));
+        assertThat(method.getQualifier(0), is((String) null));
+        WiringMetadata.InjectionPoint constructor = injectionPoints.get(2);
+        assertThat(constructor.getKind(), is(WiringMetadata.InjectionPoint.Kind.CONSTRUCTOR));
+        assertThat(constructor.getDependencyCount(), is(2));
+        assertThat(constructor.getDependencyType(1), is(WiredBean.Nested.class.getName()));
+        assertThat(constructor.getQualifier(0), is("first"));
+        assertThat(constructor.getQualifier(1), is((String) null));
+    }
+
+    /**
+     * @verifies read factored type of parameterised factory bean
+     * @see BeanClassScanner#scan(String)
+     */
+    @Test
+    public void scan_shouldReadFactoredTypeOfParameterisedFactoryBean() throws Exception {
+        assertThat(scanner.scan(NestedFactoryBean.class.getName()).getFactoredTypeName(), is(WiredBean.Nested.class.getName()));
+        assertThat(scanner.scan(ListFactoryBean.class.getName()).getFactoredTypeName(), is((String) null));
+    }
+
+    /**
+     * @verifies resolve all super types
+     * @see BeanClassScanner#typeNamesOf(String)
+     */
+    @Test
+    public void typeNamesOf_shouldResolveAllSuperTypes() throws Exception {
+        assertThat(scanner.typeNamesOf(NestedFactoryBean.class.getName()), hasItems(
+                NestedFactoryBean.class.getName(), AbstractFactoryBean.class.getName(), FactoryBean.class.getName(), Object.class.getName()));
+        assertThat(scanner.isAssignable(FactoryBean.class.getName(), ListFactoryBean.class.getName()), is(true));
+    }
+
+    static class WiredBean {
+
+        @Autowired
+        @Qualifier("task")
+        private Runnable task;
+
+        private String notWired;
+
+        @Inject
+        WiredBean(@Named("first") String first, Nested second) {
+        }
+
+        @Autowired
+        public void setValues(Serializable[] values) {
+        }
+
+        static class Nested {
+
+        }
+    }
+
+    abstract static class AbstractFactoryBean {
+
+    }
+
+    static class NestedFactoryBean extends AbstractFactoryBean implements FactoryBean<WiredBean.Nested> {
+
+        @Override
+        public WiredBean.Nested getObject() {
+            return null;
+        }
+
+        @Override
+        public Class<?> getObjectType() {
+            return WiredBean.Nested.class;
+        }
+
+        @Override
+        public boolean isSingleton() {
+            return true;
+        }
+    }
+
+    static class ListFactoryBean implements FactoryBean<List<String>> {
+
+        @Override
+        public List<String> getObject() {
+            return null;
+        }
+
+        @Override
+        public Class<?> getObjectType() {
+            return List.class;
+        }
+
+        @Override
+        public boolean isSingleton() {
+            return true;
+        }
+    }
+}
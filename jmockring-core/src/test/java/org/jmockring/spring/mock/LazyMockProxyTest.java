@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.spring.mock;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.jmockring.spi.MockProviderSPI;
+
+/**
+ * @date 17/10/26
+ */
+public class LazyMockProxyTest {
+
+    private MockProviderSPI provider;
+
+    private Greeter greeterMock;
+
+    @Before
+    public void setUp() throws Exception {
+        provider = mock(MockProviderSPI.class);
+        greeterMock = mock(Greeter.class);
+        when(provider.createMock(Greeter.class)).thenReturn(greeterMock);
+        when(greeterMock.greet("world")).thenReturn("hello world");
+    }
+
+    /**
+     * @verifies not create the mock before first use
+     * @see LazyMockProxy#create(Class, org.jmockring.spi.MockProviderSPI)
+     */
+    @Test
+    public void create_shouldNotCreateTheMockBeforeFirstUse() throws Exception {
+        Object proxy = LazyMockProxy.create(Greeter.class, provider);
+
+        assertThat(proxy, instanceOf(Greeter.class));
+        assertThat(LazyMockProxy.getMaterialisedMock(proxy), nullValue());
+        verifyZeroInteractions(provider);
+    }
+
+    /**
+     * @verifies create the mock once on first use
+     * @see LazyMockProxy#create(Class, org.jmockring.spi.MockProviderSPI)
+     */
+    @Test
+    public void create_shouldCreateTheMockOnceOnFirstUse() throws Exception {
+        Greeter proxy = (Greeter) LazyMockProxy.create(Greeter.class, provider);
+
+        assertThat(proxy.greet("world"), is("hello world"));
+        assertThat(proxy.greet("world"), is("hello world"));
+
+        verify(provider, times(1)).createMock(Greeter.class);
+        verify(greeterMock, times(2)).greet("world");
+    }
+
+    /**
+     * @verifies answer equals, hashCode and toString without creating the mock
+     * @see LazyMockProxy#create(Class, org.jmockring.spi.MockProviderSPI)
+     */
+    @Test
+    public void create_shouldAnswerEqualsHashCodeAndToStringWithoutCreatingTheMock() throws Exception {
+        Object proxy = LazyMockProxy.create(Greeter.class, provider);
+        Object other = LazyMockProxy.create(Greeter.class, provider);
+
+        assertThat(proxy.equals(proxy), is(true));
+        assertThat(proxy.equals(other), is(false));
+        assertThat(proxy.hashCode(), is(System.identityHashCode(proxy)));
+        assertThat(proxy.toString(), is("Lazy mock for " + Greeter.class.getName() + " (not yet created)"));
+
+        verifyZeroInteractions(provider);
+    }
+
+    /**
+     * @verifies return the same instance as getMock once created
+     * @see LazyMockProxy#getMaterialisedMock(Object)
+     */
+    @Test
+    public void getMaterialisedMock_shouldReturnTheSameInstanceAsGetMockOnceCreated() throws Exception {
+        Object proxy = LazyMockProxy.create(Greeter.class, provider);
+
+        Object created = LazyMockProxy.getMock(proxy);
+
+        assertThat(created, sameInstance((Object) greeterMock));
+        assertThat(LazyMockProxy.getMaterialisedMock(proxy), sameInstance(created));
+        assertThat(LazyMockProxy.getMock(proxy), sameInstance(created));
+    }
+
+    /**
+     * @verifies return the bean itself if it is not a lazy mock
+     * @see LazyMockProxy#getMaterialisedMock(Object)
+     */
+    @Test
+    public void getMaterialisedMock_shouldReturnTheBeanItselfIfItIsNotALazyMock() throws Exception {
+        assertThat(LazyMockProxy.getMaterialisedMock(greeterMock), sameInstance((Object) greeterMock));
+        assertThat(LazyMockProxy.getMock(greeterMock), sameInstance((Object) greeterMock));
+        assertThat(LazyMockProxy.getMaterialisedMock(null), nullValue());
+    }
+
+    public interface Greeter {
+
+        String greet(String name);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.spring.mock;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Proxy;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.jmockring.spi.MockProviderSPI;
+
+/**
+ * @date 17/10/26
+ */
+public class SpringMockitoFactoryTest {
+
+    private MockProviderSPI provider;
+
+    private LazyMockProxyTest.Greeter greeterMock;
+
+    @Before
+    public void setUp() throws Exception {
+        provider = mock(MockProviderSPI.class);
+        greeterMock = mock(LazyMockProxyTest.Greeter.class);
+        when(provider.createMock(LazyMockProxyTest.Greeter.class)).thenReturn(greeterMock);
+    }
+
+    /**
+     * @verifies create lazy proxy for interface types
+     * @see SpringMockitoFactory#setLazy(boolean)
+     */
+    @Test
+    public void setLazy_shouldCreateLazyProxyForInterfaceTypes() throws Exception {
+        SpringMockitoFactory factory = new SpringMockitoFactory(provider);
+        factory.setType(LazyMockProxyTest.Greeter.class);
+        factory.setLazy(true);
+
+        Object bean = factory.getObject();
+
+        assertThat(Proxy.isProxyClass(bean.getClass()), is(true));
+        assertThat(bean, not(sameInstance((Object) greeterMock)));
+        verifyZeroInteractions(provider);
+    }
+
+    /**
+     * @verifies create mock straight away for class types
+     * @see SpringMockitoFactory#setLazy(boolean)
+     */
+    @Test
+    public void setLazy_shouldCreateMockStraightAwayForClassTypes() throws Exception {
+        StringBuilder instance = new StringBuilder();
+        when(provider.createMock(StringBuilder.class)).thenReturn(instance);
+        SpringMockitoFactory factory = new SpringMockitoFactory(provider);
+        factory.setType(StringBuilder.class);
+        factory.setLazy(true);
+
+        assertThat(factory.getObject(), sameInstance((Object) instance));
+    }
+}
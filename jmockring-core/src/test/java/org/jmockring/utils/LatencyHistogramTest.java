@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @date 17/10/26
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * @verifies return 0 if nothing is recorded
+     * @see LatencyHistogram#getValueAtPercentile(double)
+     */
+    @Test
+    public void getValueAtPercentile_shouldReturn0IfNothingIsRecorded() throws Exception {
+        assertThat(new LatencyHistogram().getValueAtPercentile(99), is(0L));
+    }
+
+    /**
+     * @verifies return percentiles within the bucket precision
+     * @see LatencyHistogram#getValueAtPercentile(double)
+     */
+    @Test
+    public void getValueAtPercentile_shouldReturnPercentilesWithinTheBucketPrecision() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertWithinPrecision(histogram.getValueAtPercentile(50), 50000000L);
+        assertWithinPrecision(histogram.getValueAtPercentile(99), 99000000L);
+        assertWithinPrecision(histogram.getValueAtPercentile(99.9), 99900000L);
+        assertThat(histogram.getCount(), is(100000L));
+    }
+
+    /**
+     * @verifies return max for 100th percentile
+     * @see LatencyHistogram#getValueAtPercentile(double)
+     */
+    @Test
+    public void getValueAtPercentile_shouldReturnMaxFor100thPercentile() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5);
+        histogram.record(123456789);
+
+        assertThat(histogram.getValueAtPercentile(100), is(123456789L));
+        assertThat(histogram.getValueAtPercentile(50), is(5L));
+    }
+
+    private static void assertWithinPrecision(long actual, long expected) {
+        assertTrue(String.format("%d is not within 2%% of %d", actual, expected), Math.abs(actual - expected) <= expected / 50);
+    }
+
+}
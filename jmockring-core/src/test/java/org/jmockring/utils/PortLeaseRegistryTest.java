@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Each registry instance plays the role of a separate JVM sharing the same lease file.
+ *
+ * @date 17/10/26
+ */
+public class PortLeaseRegistryTest {
+
+    private static final int START_PORT = 41000;
+
+    private File leaseFile;
+
+    private final List<PortLeaseRegistry> registries = new ArrayList<PortLeaseRegistry>();
+
+    @Before
+    public void setUp() throws Exception {
+        leaseFile = File.createTempFile("port-leases", ".bin");
+        leaseFile.deleteOnExit();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (PortLeaseRegistry registry : registries) {
+            registry.close();
+        }
+        leaseFile.delete();
+    }
+
+    /**
+     * @verifies not lease port held by another registry
+     * @see PortLeaseRegistry#lease(int)
+     */
+    @Test
+    public void lease_shouldNotLeasePortHeldByAnotherRegistry() throws Exception {
+        int first = newRegistry(60).lease(START_PORT);
+        int second = newRegistry(60).lease(START_PORT);
+
+        assertThat(second, not(is(first)));
+    }
+
+    /**
+     * @verifies make released port available to other registries
+     * @see PortLeaseRegistry#release(int)
+     */
+    @Test
+    public void release_shouldMakeReleasedPortAvailableToOtherRegistries() throws Exception {
+        PortLeaseRegistry owner = newRegistry(60);
+        int leased = owner.lease(START_PORT);
+        owner.release(leased);
+
+        assertThat(newRegistry(60).lease(START_PORT), is(leased));
+    }
+
+    /**
+     * @verifies lease port with expired heartbeat
+     * @see PortLeaseRegistry#lease(int)
+     */
+    @Test
+    public void lease_shouldLeasePortWithExpiredHeartbeat() throws Exception {
+        // the last port of the range: the lookup of the next registry wraps around to it
+        int leased = newRegistry(60).lease(PortChecker.MAX_PORT_NUMBER);
+
+        // negative TTL: every existing lease is considered stale
+        assertThat(newRegistry(-1).lease(PortChecker.MAX_PORT_NUMBER), is(leased));
+    }
+
+    /**
+     * @verifies resume lookup after the last leased port
+     * @see PortLeaseRegistry#lease(int, java.util.Set)
+     */
+    @Test
+    public void lease_shouldResumeLookupAfterTheLastLeasedPort() throws Exception {
+        int first = newRegistry(60).lease(START_PORT);
+
+        // all leases are stale for this registry, so only the cursor keeps it off the first port
+        assertThat(newRegistry(-1).lease(START_PORT) > first, is(true));
+    }
+
+    /**
+     * @verifies not lease excluded ports
+     * @see PortLeaseRegistry#lease(int, java.util.Set)
+     */
+    @Test
+    public void lease_shouldNotLeaseExcludedPorts() throws Exception {
+        PortLeaseRegistry owner = newRegistry(60);
+        int leased = owner.lease(START_PORT);
+        owner.release(leased);
+
+        assertThat(newRegistry(60).lease(START_PORT, Collections.singleton(leased)), not(is(leased)));
+    }
+
+    /**
+     * @verifies release all leases and stop the heartbeat
+     * @see PortLeaseRegistry#close()
+     */
+    @Test
+    public void close_shouldReleaseAllLeasesAndStopTheHeartbeat() throws Exception {
+        PortLeaseRegistry owner = newRegistry(60);
+        int leased = owner.lease(START_PORT);
+        assertThat(owner.isHeartbeatRunning(), is(true));
+
+        owner.close();
+
+        assertThat(owner.isHeartbeatRunning(), is(false));
+        assertThat(newRegistry(60).lease(START_PORT), is(leased));
+    }
+
+    private PortLeaseRegistry newRegistry(long ttlSeconds) {
+        PortLeaseRegistry registry = new PortLeaseRegistry(leaseFile, ttlSeconds);
+        registries.add(registry);
+        return registry;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.utils;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+
+import org.jmockring.configuration.ConfigurationConstants;
+
+/**
+ * @date 17/10/26
+ */
+public class VirtualThreadsTest {
+
+    /**
+     * @verifies return null if not enabled
+     * @see VirtualThreads#forServer(java.util.Properties, String)
+     */
+    @Test
+    public void forServer_shouldReturnNullIfNotEnabled() throws Exception {
+        assertThat(VirtualThreads.forServer(new Properties(), "test"), is(nullValue()));
+    }
+
+    /**
+     * @verifies return executor only if supported by the JVM
+     * @see VirtualThreads#forServer(java.util.Properties, String)
+     */
+    @Test
+    public void forServer_shouldReturnExecutorOnlyIfSupportedByTheJVM() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(ConfigurationConstants.VIRTUAL_THREADS_KEY, "true");
+
+        ExecutorService executor = VirtualThreads.forServer(properties, "test");
+
+        if (!VirtualThreads.isSupported()) {
+            assertThat(executor, is(nullValue()));
+            return;
+        }
+        try {
+            String threadName = executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return Thread.currentThread().getName();
+                }
+            }).get();
+            assertThat(threadName, is("test-0"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.webserver.callback;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+/**
+ * @date 17/10/26
+ */
+public class CallbackRequestEventListenerTest {
+
+    private final ServletContext context = mock(ServletContext.class);
+
+    /**
+     * @verifies not capture requests without subscribers
+     * @see CallbackRequestEventListener#requestInitialized(javax.servlet.ServletRequestEvent)
+     */
+    @Test
+    public void requestInitialized_shouldNotCaptureRequestsWithoutSubscribers() throws Exception {
+        CallbackRequestEventListener listener = new CallbackRequestEventListener(null);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+
+        listener.requestInitialized(new ServletRequestEvent(context, request));
+
+        assertThat(listener.getJournal().getSequence(), is(0L));
+        verify(request, never()).getMethod();
+    }
+
+    /**
+     * @verifies not capture requests without subscribers
+     * @see CallbackRequestEventListener#requestDestroyed(javax.servlet.ServletRequestEvent)
+     */
+    @Test
+    public void requestDestroyed_shouldNotCaptureRequestsWithoutSubscribers() throws Exception {
+        CallbackRequestEventListener listener = new CallbackRequestEventListener(null);
+        listener.subscribe(false, false).cancel();
+
+        listener.requestDestroyed(new ServletRequestEvent(context, request("/cancelled")));
+
+        assertThat(listener.getJournal().getSequence(), is(0L));
+    }
+
+    /**
+     * @verifies capture parameters and headers only if requested
+     * @see CallbackRequestEventListener#requestInitialized(javax.servlet.ServletRequestEvent)
+     */
+    @Test
+    public void requestInitialized_shouldCaptureParametersAndHeadersOnlyIfRequested() throws Exception {
+        CallbackRequestEventListener listener = new CallbackRequestEventListener(null);
+        CallbackRequestEventListener.Subscription subscription = listener.subscribe(false, false);
+        HttpServletRequest plain = request("/plain");
+        listener.requestInitialized(new ServletRequestEvent(context, plain));
+        subscription.cancel();
+
+        listener.subscribe(true, true);
+        listener.requestInitialized(new ServletRequestEvent(context, request("/full")));
+
+        Request first = listener.getJournal().next(0, RequestJournal.Event.Type.START, null, 1, TimeUnit.SECONDS).getRequest();
+        Request second = listener.getJournal().next(1, RequestJournal.Event.Type.START, null, 1, TimeUnit.SECONDS).getRequest();
+        verify(plain, never()).getParameterMap();
+        verify(plain, never()).getHeaderNames();
+        assertThat(first.getParameters().isEmpty(), is(true));
+        assertThat(first.getHeaders().isEmpty(), is(true));
+        assertThat(second.getParameters().get("id")[0], is("1"));
+        assertThat(second.getHeaders().get("Accept").get(0), is("text/plain"));
+    }
+
+    /**
+     * @verifies complete with the first matching request
+     * @see CallbackRequestEventListener#whenRequestStarts(RequestMatcher)
+     */
+    @Test
+    public void whenRequestStarts_shouldCompleteWithTheFirstMatchingRequest() throws Exception {
+        CallbackRequestEventListener listener = new CallbackRequestEventListener(null);
+        Future<Request> future = listener.whenRequestStarts(RequestMatcher.forUri("/ctx/orders/{id}"));
+
+        listener.requestInitialized(new ServletRequestEvent(context, request("/ctx/customers/1")));
+        assertThat(future.isDone(), is(false));
+        listener.requestInitialized(new ServletRequestEvent(context, request("/ctx/orders/7")));
+
+        assertThat(future.get(1, TimeUnit.SECONDS).getRequestUri(), is("/ctx/orders/7"));
+        assertThat(listener.isCapturing(), is(false));
+    }
+
+    /**
+     * @verifies move only the cursors of this subscription
+     * @see CallbackRequestEventListener.Subscription#skipToLatest()
+     */
+    @Test
+    public void skipToLatest_shouldMoveOnlyTheCursorsOfThisSubscription() throws Exception {
+        CallbackRequestEventListener listener = new CallbackRequestEventListener(null);
+        CallbackRequestEventListener.Subscription first = listener.subscribe(false, false);
+        CallbackRequestEventListener.Subscription second = listener.subscribe(false, false);
+        listener.requestInitialized(new ServletRequestEvent(context, request("/earlier")));
+
+        first.skipToLatest();
+        listener.requestInitialized(new ServletRequestEvent(context, request("/later")));
+
+        assertThat(first.getListener().waitForRequestStart(1).getRequestUri(), is("/later"));
+        assertThat(second.getListener().waitForRequestStart(1).getRequestUri(), is("/earlier"));
+        assertThat(second.getListener().waitForRequestStart(1).getRequestUri(), is("/later"));
+    }
+
+    /**
+     * @verifies fail if no request is being captured
+     * @see CallbackRequestEventListener#waitForRequestStart(int)
+     */
+    @Test
+    public void waitForRequestStart_shouldFailIfNoRequestIsBeingCaptured() throws Exception {
+        CallbackRequestEventListener listener = new CallbackRequestEventListener(null);
+        CallbackRequestEventListener.Subscription subscription = listener.subscribe(false, false);
+        subscription.cancel();
+
+        try {
+            listener.waitForRequestStart(1);
+            fail("The shared listener should not wait without a subscription");
+        } catch (IllegalStateException expected) {
+            // nothing would ever be recorded
+        }
+        try {
+            subscription.getListener().waitForRequestEnd("/orders", 1);
+            fail("A cancelled subscription should not wait");
+        } catch (IllegalStateException expected) {
+            // nothing would ever be recorded
+        }
+    }
+
+    private static HttpServletRequest request(String uri) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn(uri);
+        when(request.getParameterMap()).thenReturn(Collections.singletonMap("id", new String[]{"1"}));
+        when(request.getHeaderNames()).thenReturn(Collections.enumeration(Collections.singleton("Accept")));
+        when(request.getHeaders("Accept")).thenReturn(Collections.enumeration(Collections.singleton("text/plain")));
+        return request;
+    }
+}
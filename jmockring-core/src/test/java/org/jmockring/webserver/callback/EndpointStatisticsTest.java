@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.webserver.callback;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * @date 17/10/26
+ */
+public class EndpointStatisticsTest {
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final boolean cpuTimeEnabled = threads.isThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+
+    @After
+    public void tearDown() throws Exception {
+        if (threads.isThreadCpuTimeSupported()) {
+            threads.setThreadCpuTimeEnabled(cpuTimeEnabled);
+        }
+    }
+
+    /**
+     * @verifies enable the measurement for the first user only
+     * @see EndpointStatistics#enableThreadMeasurement()
+     */
+    @Test
+    public void enableThreadMeasurement_shouldEnableTheMeasurementForTheFirstUserOnly() throws Exception {
+        Assume.assumeTrue(threads.isCurrentThreadCpuTimeSupported());
+        threads.setThreadCpuTimeEnabled(false);
+
+        EndpointStatistics.enableThreadMeasurement();
+        try {
+            assertThat(threads.isThreadCpuTimeEnabled(), is(true));
+            threads.setThreadCpuTimeEnabled(false);
+            EndpointStatistics.enableThreadMeasurement(); // already measuring: the state is left alone
+            assertThat(threads.isThreadCpuTimeEnabled(), is(false));
+            EndpointStatistics.releaseThreadMeasurement();
+        } finally {
+            EndpointStatistics.releaseThreadMeasurement();
+        }
+    }
+
+    /**
+     * @verifies restore the previous state when the last user releases the measurement
+     * @see EndpointStatistics#releaseThreadMeasurement()
+     */
+    @Test
+    public void releaseThreadMeasurement_shouldRestoreThePreviousStateWhenTheLastUserReleasesTheMeasurement() throws Exception {
+        Assume.assumeTrue(threads.isCurrentThreadCpuTimeSupported());
+        threads.setThreadCpuTimeEnabled(false);
+        EndpointStatistics.enableThreadMeasurement();
+        EndpointStatistics.enableThreadMeasurement();
+
+        EndpointStatistics.releaseThreadMeasurement();
+        assertThat(threads.isThreadCpuTimeEnabled(), is(true));
+        EndpointStatistics.releaseThreadMeasurement();
+        assertThat(threads.isThreadCpuTimeEnabled(), is(false));
+
+        threads.setThreadCpuTimeEnabled(true);
+        EndpointStatistics.enableThreadMeasurement();
+        EndpointStatistics.releaseThreadMeasurement();
+        assertThat(threads.isThreadCpuTimeEnabled(), is(true)); // enabled before: left on
+    }
+
+    /**
+     * @verifies record latency per method and mapping pattern
+     * @see EndpointStatistics#finish(javax.servlet.http.HttpServletRequest)
+     */
+    @Test
+    public void finish_shouldRecordLatencyPerMethodAndMappingPattern() throws Exception {
+        EndpointStatistics statistics = new EndpointStatistics();
+        HttpServletRequest first = request("GET", "/ctx/orders/1", "/orders/{id}");
+        HttpServletRequest second = request("GET", "/ctx/orders/2", "/orders/{id}");
+        HttpServletRequest plain = request("POST", "/ctx/orders", null);
+
+        for (HttpServletRequest request : new HttpServletRequest[]{first, second, plain}) {
+            statistics.start(request);
+            statistics.finish(request);
+        }
+
+        assertThat(statistics.getEndpoint(Request.Method.GET, "/orders/{id}").getCount(), is(2L));
+        assertThat(statistics.getEndpoint(Request.Method.POST, "/orders").getCount(), is(1L));
+        assertThat(statistics.getEndpoints().size(), is(2));
+    }
+
+    /**
+     * @verifies ignore requests which were not started
+     * @see EndpointStatistics#finish(javax.servlet.http.HttpServletRequest)
+     */
+    @Test
+    public void finish_shouldIgnoreRequestsWhichWereNotStarted() throws Exception {
+        EndpointStatistics statistics = new EndpointStatistics();
+
+        statistics.finish(request("GET", "/ctx/orders", null));
+
+        assertThat(statistics.getEndpoint(Request.Method.GET, "/orders"), is(nullValue()));
+    }
+
+    private static HttpServletRequest request(String method, String uri, String pattern) {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put(EndpointStatistics.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getRequestURI()).thenReturn(uri);
+        when(request.getContextPath()).thenReturn("/ctx");
+        when(request.getAttribute(anyString())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return attributes.get(invocation.getArguments()[0]);
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                attributes.put((String) invocation.getArguments()[0], invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(request).setAttribute(anyString(), any());
+        return request;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.webserver.callback;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @date 17/10/26
+ */
+public class RequestJournalTest {
+
+    /**
+     * @verifies return events published before the call
+     * @see RequestJournal#next(long, RequestJournal.Event.Type, String, long, java.util.concurrent.TimeUnit)
+     */
+    @Test
+    public void next_shouldReturnEventsPublishedBeforeTheCall() throws Exception {
+        RequestJournal journal = new RequestJournal(8);
+        journal.publish(RequestJournal.Event.Type.START, request("/first"));
+        journal.publish(RequestJournal.Event.Type.END, request("/first"));
+
+        RequestJournal.Event event = journal.next(0, RequestJournal.Event.Type.END, null, 1, TimeUnit.SECONDS);
+
+        assertThat(event.getSequence(), is(1L));
+        assertThat(event.getRequest().getRequestUri(), is("/first"));
+    }
+
+    /**
+     * @verifies skip non matching events
+     * @see RequestJournal#next(long, RequestJournal.Event.Type, String, long, java.util.concurrent.TimeUnit)
+     */
+    @Test
+    public void next_shouldSkipNonMatchingEvents() throws Exception {
+        RequestJournal journal = new RequestJournal(8);
+        journal.publish(RequestJournal.Event.Type.START, request("/other"));
+        journal.publish(RequestJournal.Event.Type.START, request("/wanted/1"));
+        journal.publish(RequestJournal.Event.Type.START, request("/wanted/2"));
+
+        RequestJournal.Event first = journal.next(0, RequestJournal.Event.Type.START, "/wanted", 1, TimeUnit.SECONDS);
+        RequestJournal.Event second = journal.next(first.getSequence() + 1, RequestJournal.Event.Type.START, "/wanted", 1, TimeUnit.SECONDS);
+
+        assertThat(first.getRequest().getRequestUri(), is("/wanted/1"));
+        assertThat(second.getRequest().getRequestUri(), is("/wanted/2"));
+    }
+
+    /**
+     * @verifies move the cursor past the returned event
+     * @see RequestJournal#next(RequestJournal.Cursor, RequestJournal.Event.Type, String, long, java.util.concurrent.TimeUnit)
+     */
+    @Test
+    public void next_shouldMoveTheCursorPastTheReturnedEvent() throws Exception {
+        RequestJournal journal = new RequestJournal(8);
+        journal.publish(RequestJournal.Event.Type.START, request("/before"));
+        RequestJournal.Cursor cursor = journal.newCursor();
+        journal.publish(RequestJournal.Event.Type.START, request("/first"));
+        journal.publish(RequestJournal.Event.Type.END, request("/first"));
+        journal.publish(RequestJournal.Event.Type.START, request("/second"));
+
+        assertThat(journal.next(cursor, RequestJournal.Event.Type.START, null, 1, TimeUnit.SECONDS).getRequest().getRequestUri(), is("/first"));
+        assertThat(journal.next(cursor, RequestJournal.Event.Type.START, null, 1, TimeUnit.SECONDS).getRequest().getRequestUri(), is("/second"));
+        assertThat(cursor.getPosition(), is(4L));
+        assertThat(journal.next(cursor, null, null, 50, TimeUnit.MILLISECONDS), nullValue());
+        assertThat(cursor.getPosition(), is(4L));
+    }
+
+    /**
+     * @verifies count overwritten events per cursor
+     * @see RequestJournal#next(RequestJournal.Cursor, RequestJournal.Event.Type, String, long, java.util.concurrent.TimeUnit)
+     */
+    @Test
+    public void next_shouldCountOverwrittenEventsPerCursor() throws Exception {
+        RequestJournal journal = new RequestJournal(4);
+        RequestJournal.Cursor slow = journal.newCursor();
+        RequestJournal.Cursor fast = journal.newCursor();
+        journal.publish(RequestJournal.Event.Type.START, request("/0"));
+        assertThat(journal.next(fast, null, null, 1, TimeUnit.SECONDS).getRequest().getRequestUri(), is("/0"));
+        for (int i = 1; i < 6; i++) {
+            journal.publish(RequestJournal.Event.Type.START, request("/" + i));
+        }
+
+        assertThat(journal.next(slow, null, null, 1, TimeUnit.SECONDS).getRequest().getRequestUri(), is("/2"));
+        assertThat(journal.next(fast, null, null, 1, TimeUnit.SECONDS).getRequest().getRequestUri(), is("/2"));
+        assertThat(journal.next(journal.newCursor(), null, null, 50, TimeUnit.MILLISECONDS), nullValue());
+
+        assertThat(slow.getOverflowCount(), is(2L));
+        assertThat(fast.getOverflowCount(), is(1L));
+    }
+
+    /**
+     * @verifies return null on timeout
+     * @see RequestJournal#next(long, RequestJournal.Event.Type, String, long, java.util.concurrent.TimeUnit)
+     */
+    @Test
+    public void next_shouldReturnNullOnTimeout() throws Exception {
+        final RequestJournal journal = new RequestJournal(4);
+        journal.publish(RequestJournal.Event.Type.START, request("/first"));
+
+        assertThat(journal.next(journal.getSequence(), null, null, 50, TimeUnit.MILLISECONDS), nullValue());
+    }
+
+    private static Request request(String uri) {
+        return new Request(Request.Method.GET, uri, Collections.<String, String[]>emptyMap());
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.webserver.callback;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @date 17/10/26
+ */
+public class RequestMatcherTest {
+
+    /**
+     * @verifies match URI patterns with wildcards and path variables
+     * @see RequestMatcher#matches(Request)
+     */
+    @Test
+    public void matches_shouldMatchURIPatternsWithWildcardsAndPathVariables() throws Exception {
+        RequestMatcher variable = RequestMatcher.forUri("/ctx/orders/{id}");
+        RequestMatcher wildcard = RequestMatcher.forUri("/ctx/*.json");
+        RequestMatcher deep = RequestMatcher.forUri("/ctx/**/items");
+
+        assertThat(variable.getPrefix(), is("/ctx/orders/"));
+        assertThat(variable.matches(request(Request.Method.GET, "/ctx/orders/12", null)), is(true));
+        assertThat(variable.matches(request(Request.Method.GET, "/ctx/orders/12/items", null)), is(false));
+        assertThat(wildcard.matches(request(Request.Method.GET, "/ctx/orders.json", null)), is(true));
+        assertThat(wildcard.matches(request(Request.Method.GET, "/ctx/a/orders.json", null)), is(false));
+        assertThat(deep.matches(request(Request.Method.GET, "/ctx/orders/12/items", null)), is(true));
+        assertThat(RequestMatcher.forUri("/ctx/orders.json").matches(request(Request.Method.GET, "/ctx/ordersXjson", null)), is(false));
+    }
+
+    /**
+     * @verifies match method and parameters
+     * @see RequestMatcher#matches(Request)
+     */
+    @Test
+    public void matches_shouldMatchMethodAndParameters() throws Exception {
+        RequestMatcher matcher = RequestMatcher.forUri("/ctx/orders")
+                .withMethod(Request.Method.POST)
+                .withParameter("status", "open");
+        Map<String, String[]> open = Collections.singletonMap("status", new String[]{"closed", "open"});
+        Map<String, String[]> closed = Collections.singletonMap("status", new String[]{"closed"});
+
+        assertThat(matcher.matches(request(Request.Method.POST, "/ctx/orders", open)), is(true));
+        assertThat(matcher.matches(request(Request.Method.GET, "/ctx/orders", open)), is(false));
+        assertThat(matcher.matches(request(Request.Method.POST, "/ctx/orders", closed)), is(false));
+        assertThat(matcher.matches(request(Request.Method.POST, "/ctx/orders", null)), is(false));
+    }
+
+    private static Request request(Request.Method method, String uri, Map<String, String[]> parameters) {
+        return new Request(method, uri, parameters);
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.webserver.jetty;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connector, thread pool and context settings of the Jetty server, read from the server properties.
+ * <p/>
+ * The properties can be set per server with {@link org.jmockring.annotation.Server#properties()} or in the server's properties file.
+ * Settings which are not present keep the Jetty defaults. The values are validated when the server is initialised,
+ * an invalid value fails the bootstrap with {@link IllegalArgumentException}.
+ * <p/>
+ * Note: in Jetty 8 the number of selectors of the connector is the same as the number of acceptors. The acceptors, the selectors
+ * and the acceptor of the local connector all run in the request thread pool, so {@link #THREADS_MAX} must leave at least one
+ * thread for the requests on top of them.
+ *
+ * @date 17/10/26
+ */
+public final class JettySettings {
+
+    private static final Logger log = LoggerFactory.getLogger(JettySettings.class);
+
+    /** Minimum number of request threads */
+    public static final String THREADS_MIN = "jetty.threads.min";
+
+    /** Maximum number of request threads. Default is 250. */
+    public static final String THREADS_MAX = "jetty.threads.max";
+
+    /** Time in ms after which idle threads above the minimum are stopped */
+    public static final String THREADS_IDLE_TIMEOUT = "jetty.threads.idleTimeout";
+
+    /** Maximum number of requests waiting for a thread. Unbounded by default. */
+    public static final String THREADS_MAX_QUEUED = "jetty.threads.maxQueued";
+
+    /** Number of acceptor (and selector) threads of the connector */
+    public static final String CONNECTOR_ACCEPTORS = "jetty.connector.acceptors";
+
+    /** Backlog of the listening socket */
+    public static final String CONNECTOR_ACCEPT_QUEUE_SIZE = "jetty.connector.acceptQueueSize";
+
+    /** Time in ms after which idle connections are closed. Default is 30000. */
+    public static final String CONNECTOR_IDLE_TIMEOUT = "jetty.connector.idleTimeout";
+
+    public static final String CONNECTOR_REQUEST_HEADER_SIZE = "jetty.connector.requestHeaderSize";
+
+    public static final String CONNECTOR_REQUEST_BUFFER_SIZE = "jetty.connector.requestBufferSize";
+
+    public static final String CONNECTOR_RESPONSE_HEADER_SIZE = "jetty.connector.responseHeaderSize";
+
+    public static final String CONNECTOR_RESPONSE_BUFFER_SIZE = "jetty.connector.responseBufferSize";
+
+    /** Add a LocalConnector serving the in-process request clients. Default is false. */
+    public static final String LOCAL_CONNECTOR = "jetty.connector.local";
+
+    /** Create the dynamic contexts with HTTP sessions. Default is true, set to false for stateless contexts. */
+    public static final String SESSIONS = "jetty.sessions";
+
+    /** Secret of the shutdown handler */
+    public static final String SECRET = "jetty.secret";
+
+    private static final Set<String> KNOWN_KEYS = new HashSet<String>(Arrays.asList(
+            THREADS_MIN, THREADS_MAX, THREADS_IDLE_TIMEOUT, THREADS_MAX_QUEUED,
+            CONNECTOR_ACCEPTORS, CONNECTOR_ACCEPT_QUEUE_SIZE, CONNECTOR_IDLE_TIMEOUT,
+            CONNECTOR_REQUEST_HEADER_SIZE, CONNECTOR_REQUEST_BUFFER_SIZE, CONNECTOR_RESPONSE_HEADER_SIZE, CONNECTOR_RESPONSE_BUFFER_SIZE,
+            LOCAL_CONNECTOR, SESSIONS, SECRET
+    ));
+
+    private final Integer minThreads;
+
+    private final int maxThreads;
+
+    private final Integer threadIdleTimeout;
+
+    private final Integer maxQueued;
+
+    private final Integer acceptors;
+
+    private final Integer acceptQueueSize;
+
+    private final int idleTimeout;
+
+    private final Integer requestHeaderSize;
+
+    private final Integer requestBufferSize;
+
+    private final Integer responseHeaderSize;
+
+    private final Integer responseBufferSize;
+
+    private final boolean localConnector;
+
+    private final boolean sessions;
+
+    private JettySettings(Properties properties) {
+        minThreads = getInt(properties, THREADS_MIN, null, 1);
+        maxThreads = getInt(properties, THREADS_MAX, 250, 1);
+        threadIdleTimeout = getInt(properties, THREADS_IDLE_TIMEOUT, null, 0);
+        maxQueued = getInt(properties, THREADS_MAX_QUEUED, null, 1);
+        acceptors = getInt(properties, CONNECTOR_ACCEPTORS, null, 1);
+        acceptQueueSize = getInt(properties, CONNECTOR_ACCEPT_QUEUE_SIZE, null, 0);
+        idleTimeout = getInt(properties, CONNECTOR_IDLE_TIMEOUT, 30000, 0);
+        requestHeaderSize = getInt(properties, CONNECTOR_REQUEST_HEADER_SIZE, null, 1);
+        requestBufferSize = getInt(properties, CONNECTOR_REQUEST_BUFFER_SIZE, null, 1);
+        responseHeaderSize = getInt(properties, CONNECTOR_RESPONSE_HEADER_SIZE, null, 1);
+        responseBufferSize = getInt(properties, CONNECTOR_RESPONSE_BUFFER_SIZE, null, 1);
+        localConnector = getBoolean(properties, LOCAL_CONNECTOR, false);
+        sessions = getBoolean(properties, SESSIONS, true);
+
+        if (minThreads != null && minThreads > maxThreads) {
+            throw new IllegalArgumentException(String.format("%s (%s) can not be more than %s (%s)", THREADS_MIN, minThreads, THREADS_MAX, maxThreads));
+        }
+        int connectorThreads = getConnectorThreads();
+        if (connectorThreads >= maxThreads) {
+            // the connector threads run in the request thread pool and would leave no thread for the requests
+            throw new IllegalArgumentException(String.format(
+                    "%s (%s) must be more than the %s threads used by the connectors: %s acceptors, as many selectors%s",
+                    THREADS_MAX, maxThreads, connectorThreads, getAcceptors(), localConnector ? " and the local connector acceptor" : ""));
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("jetty.") && !KNOWN_KEYS.contains(key)) {
+                log.warn("LOG00700: Ignoring unknown Jetty setting '{}'", key);
+            }
+        }
+    }
+
+    /**
+     * @param properties
+     *
+     * @return validated settings
+     * @throws IllegalArgumentException if any of the settings is invalid
+     * @should keep the defaults for missing settings
+     * @should parse the configured settings
+     * @should reject invalid values
+     * @should reject more min threads than max threads
+     * @should reserve a thread per acceptor and per selector
+     * @should reserve a thread for the local connector acceptor
+     */
+    public static JettySettings from(Properties properties) {
+        return new JettySettings(properties);
+    }
+
+    void configure(AbstractConnector connector) {
+        connector.setMaxIdleTime(idleTimeout);
+        if (acceptors != null) {
+            connector.setAcceptors(acceptors);
+        }
+        if (acceptQueueSize != null) {
+            connector.setAcceptQueueSize(acceptQueueSize);
+        }
+        if (requestHeaderSize != null) {
+            connector.setRequestHeaderSize(requestHeaderSize);
+        }
+        if (requestBufferSize != null) {
+            connector.setRequestBufferSize(requestBufferSize);
+        }
+        if (responseHeaderSize != null) {
+            connector.setResponseHeaderSize(responseHeaderSize);
+        }
+        if (responseBufferSize != null) {
+            connector.setResponseBufferSize(responseBufferSize);
+        }
+    }
+
+    void configure(QueuedThreadPool threadPool) {
+        threadPool.setMaxThreads(maxThreads);
+        if (minThreads != null) {
+            threadPool.setMinThreads(minThreads);
+        }
+        if (threadIdleTimeout != null) {
+            threadPool.setMaxIdleTimeMs(threadIdleTimeout);
+        }
+        if (maxQueued != null) {
+            threadPool.setMaxQueued(maxQueued);
+        }
+    }
+
+    /**
+     * @return the configured acceptors, or the Jetty 8 default of the select channel connector: one per 4 CPUs
+     */
+    int getAcceptors() {
+        return acceptors != null ? acceptors : Math.max(1, (Runtime.getRuntime().availableProcessors() + 3) / 4);
+    }
+
+    /**
+     * @return number of pool threads taken by the connectors: the acceptors, one selector per acceptor and the local connector acceptor
+     */
+    int getConnectorThreads() {
+        return 2 * getAcceptors() + (localConnector ? 1 : 0);
+    }
+
+    /**
+     * @return true if the server should serve in-process requests through a LocalConnector
+     */
+    boolean isLocalConnector() {
+        return localConnector;
+    }
+
+    /**
+     * @return the {@link ServletContextHandler} options for the dynamic contexts
+     */
+    int getContextOptions() {
+        return sessions ? ServletContextHandler.SESSIONS : ServletContextHandler.NO_SESSIONS;
+    }
+
+    private static Integer getInt(Properties properties, String key, Integer defaultValue, int min) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value '%s' for %s: not a number", value, key));
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException(String.format("Invalid value '%s' for %s: must be at least %s", value, key, min));
+        }
+        return parsed;
+    }
+
+    private static boolean getBoolean(Properties properties, String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        if (!"true".equalsIgnoreCase(value.trim()) && !"false".equalsIgnoreCase(value.trim())) {
+            throw new IllegalArgumentException(String.format("Invalid value '%s' for %s: must be true or false", value, key));
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder()
+                .append("JettySettings[")
+                .append("threads=").append(minThreads).append("..").append(maxThreads)
+                .append(", maxQueued=").append(maxQueued)
+                .append(", acceptors=").append(acceptors)
+                .append(", acceptQueueSize=").append(acceptQueueSize)
+                .append(", idleTimeout=").append(idleTimeout)
+                .append(", localConnector=").append(localConnector)
+                .append(", sessions=").append(sessions)
+                .append(']')
+                .toString();
+    }
+}
@@ -34,11 +34,13 @@ import java.util.EnumSet;
 import java.util.EventListener;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import javax.servlet.DispatcherType;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpExchange;
 import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.LocalConnector;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.HandlerCollection;
 import org.eclipse.jetty.server.handler.HandlerList;
@@ -46,7 +48,10 @@ import org.eclipse.jetty.server.nio.SelectChannelConnector;
 import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.resource.FileResource;
+import org.eclipse.jetty.util.thread.ExecutorThreadPool;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.webapp.WebAppContext;
 import org.slf4j.Logger;
@@ -58,11 +63,14 @@ import org.jmockring.annotation.DynamicContext;
 import org.jmockring.annotation.Param;
 import org.jmockring.annotation.Servlet;
 import org.jmockring.configuration.BaseContextConfiguration;
+import org.jmockring.configuration.BootstrapTimings;
 import org.jmockring.configuration.DynamicContextConfiguration;
 import org.jmockring.configuration.ServerConfiguration;
 import org.jmockring.configuration.WebAppContextConfiguration;
 import org.jmockring.spring.ServerConfigurationAwareContextLoaderListener;
-import org.jmockring.webserver.WebServer;
+import org.jmockring.utils.VirtualThreads;
+import org.jmockring.webserver.SignallingWebServer;
+import org.jmockring.webserver.StartupSignal;
 import org.jmockring.webserver.callback.CallbackRequestEventListener;
 
 /**
@@ -71,7 +79,7 @@ import org.jmockring.webserver.callback.CallbackRequestEventListener;
  * @author Pavel Lechev
  * @date 20/07/12
  */
-public class JettyWebServer implements WebServer {
+public class JettyWebServer implements SignallingWebServer {
 
     private Logger log = LoggerFactory.getLogger(JettyWebServer.class);
 
@@ -81,6 +89,17 @@ public class JettyWebServer implements WebServer {
 
     protected ServerConfiguration configuration;
 
+    private Connector connector;
+
+    private JettySettings settings;
+
+    /**
+     * Set once {@link #start()} is called: until then the server can only be stopped by closing the connector
+     */
+    private volatile boolean started;
+
+    private final StartupSignal startupSignal = new StartupSignal();
+
     /**
      * @return
      */
@@ -169,7 +188,7 @@ public class JettyWebServer implements WebServer {
         List<ServletContextHandler> dynamicContexts = new ArrayList<ServletContextHandler>();
         for (DynamicContextConfiguration contextConfiguration : configuration.getDynamicContexts()) {
             DynamicContext dc = contextConfiguration.getConfig();
-            ServletContextHandler context = new ServletContextHandler(null, contextConfiguration.getContextPath(), ServletContextHandler.SESSIONS);
+            ServletContextHandler context = new ServletContextHandler(null, contextConfiguration.getContextPath(), settings.getContextOptions());
             context.setInitParameter(CONTEXT_CONFIG_LOCATION, contextConfiguration.getAllContextLocationsAsString());
 
             // add filters
@@ -274,11 +293,62 @@ public class JettyWebServer implements WebServer {
         // Do not wait ...
     }
 
+    /**
+     * @return
+     * @should be completed once the server is started
+     * @should fail if the port can not be bound
+     */
+    @Override
+    public StartupSignal getStartupSignal() {
+        return startupSignal;
+    }
+
+    /**
+     * @param configuration
+     * @should publish the bound ephemeral port
+     * @should time the connector bind done by jetty on start
+     */
     @Override
     public void initialise(ServerConfiguration configuration) {
         this.configuration = configuration;
+        this.settings = JettySettings.from(configuration.getProperties()); // fail early on invalid settings
+        log.info("LOG00710: Jetty settings: {}", settings);
+        // Jetty opens the connector in Server#start(), after the contexts are started: the bind is timed where it happens,
+        // so that measuring it does not make the port accept connections before the applications are deployed.
+        SelectChannelConnector selectChannelConnector = new SelectChannelConnector() {
+            @Override
+            public void open() throws IOException {
+                if (getConnection() != null) {
+                    return; // already bound (ephemeral port)
+                }
+                long started = System.nanoTime();
+                super.open();
+                JettyWebServer.this.configuration.getTimings().record(BootstrapTimings.Phase.CONNECTOR_BIND, started);
+            }
+        };
+        settings.configure(selectChannelConnector);
+        this.connector = selectChannelConnector;
+        if (configuration.isEphemeralPort()) {
+            bindEphemeralPort();
+        }
         this.port = configuration.getPort(PORT_CONFIG_KEY);
-        this.secret = configuration.getProperties().getProperty("jetty.secret", "6ee03119e0b4b0db921b609c18d4d4f1");
+        this.secret = configuration.getProperties().getProperty(JettySettings.SECRET, "6ee03119e0b4b0db921b609c18d4d4f1");
+    }
+
+    /**
+     * Open the connector on port 0 and publish the port assigned by the OS.
+     * <p/>
+     * The open channel stays with the connector and is used as-is when the server starts, so nothing can take the port in between.
+     */
+    private void bindEphemeralPort() {
+        connector.setPort(0);
+        try {
+            connector.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not bind ephemeral port", e);
+        }
+        configuration.setPort(connector.getLocalPort());
+        log.info("LOG00440: Bound ephemeral port {}", connector.getLocalPort());
     }
 
     /**
@@ -310,7 +380,7 @@ public class JettyWebServer implements WebServer {
      */
     public HandlerList getHandlerList(Server server, List<ServletContextHandler> contexts) {
         HandlerList handlers = new HandlerList();
-        handlers.addHandler(new ShutdownHandler(server, configuration.getProperties().getProperty("jetty.secret", "6ee03119e0b4b0db921b609c18d4d4f1")));
+        handlers.addHandler(new ShutdownHandler(server, secret));
         // add the dynamicContexts
         for (ServletContextHandler context : contexts) {
             handlers.addHandler(context);
@@ -340,16 +410,41 @@ public class JettyWebServer implements WebServer {
      * Start Up the server
      */
     private void startServer() {
+        started = true;
         Server srv = new Server();
         srv.setStopAtShutdown(true);
         srv.setGracefulShutdown(5000);
-        QueuedThreadPool threadPool = new QueuedThreadPool();
-        threadPool.setMaxThreads(Integer.valueOf(configuration.getProperties().getProperty("jetty.threads.max", "250")));
-        srv.setThreadPool(threadPool);
-        Connector connector = new SelectChannelConnector();
+        ExecutorService virtualThreads = VirtualThreads.forServer(configuration.getProperties(), "jetty-" + configuration.getExecutionName());
+        if (virtualThreads != null) {
+            // Jetty shuts the executor down when the server stops
+            srv.setThreadPool(new ExecutorThreadPool(virtualThreads));
+            log.info("LOG00740: Serving requests on virtual threads, the jetty.threads.* settings are not used");
+        } else {
+            QueuedThreadPool threadPool = new QueuedThreadPool();
+            settings.configure(threadPool);
+            srv.setThreadPool(threadPool);
+        }
         connector.setPort(port);
-        connector.setMaxIdleTime(30000);
-        srv.setConnectors(new Connector[]{connector});
+        if (settings.isLocalConnector()) {
+            // the local connector serves the in-process request clients, next to the network connector
+            LocalConnector localConnector = new LocalConnector();
+            srv.setConnectors(new Connector[]{connector, localConnector});
+            configuration.setLocalTransport(new JettyLocalTransport(localConnector));
+        } else {
+            srv.setConnectors(new Connector[]{connector});
+        }
+        // Jetty starts the handlers (and the Spring contexts) before the connectors, so `started` means fully available.
+        srv.addLifeCycleListener(new AbstractLifeCycle.AbstractLifeCycleListener() {
+            @Override
+            public void lifeCycleStarted(LifeCycle event) {
+                startupSignal.started();
+            }
+
+            @Override
+            public void lifeCycleFailure(LifeCycle event, Throwable cause) {
+                startupSignal.failed(cause);
+            }
+        });
 
         try {
             List<ServletContextHandler> contexts = initialiseAndCreateContexts();
@@ -360,6 +455,7 @@ public class JettyWebServer implements WebServer {
         } catch (Exception e) {
             log.error("Exception: ", e);
             e.printStackTrace();
+            startupSignal.failed(e);
         }
     }
 
@@ -392,6 +488,10 @@ public class JettyWebServer implements WebServer {
         return port;
     }
 
+    /**
+     * @should publish the local transport if the local connector is requested
+     * @should not add the local connector unless requested
+     */
     @Override
     public void start() {
         startServer();
@@ -399,6 +499,16 @@ public class JettyWebServer implements WebServer {
 
     @Override
     public void shutdown() {
+        configuration.setLocalTransport(null);
+        if (!started) {
+            // initialised only: the connector may already be bound (ephemeral port)
+            try {
+                connector.close();
+            } catch (IOException e) {
+                log.warn("LOG00780: Failed to close the connector of a server which was not started", e);
+            }
+            return;
+        }
         stopServer();
     }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.webserver.jetty;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.StringContains.containsString;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @date 17/10/26
+ */
+public class JettyLocalTransportTest {
+
+    private Server server;
+
+    private JettyLocalTransport underTest;
+
+    @Before
+    public void setUp() throws Exception {
+        LocalConnector connector = new LocalConnector();
+        server = new Server();
+        server.setConnectors(new Connector[]{connector});
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+                    throws IOException, ServletException {
+                response.setContentType("text/plain");
+                response.getWriter().print(request.getMethod() + " " + target + "?" + request.getQueryString());
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+        underTest = new JettyLocalTransport(connector);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    /**
+     * @verifies return the response of the server handlers
+     * @see JettyLocalTransport#process(byte[], int, int)
+     */
+    @Test
+    public void process_shouldReturnTheResponseOfTheServerHandlers() throws Exception {
+        byte[] request = "GET /path?q=1 HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes("ISO-8859-1");
+
+        String response = new String(underTest.process(request, 0, request.length), "ISO-8859-1");
+
+        assertThat(response.startsWith("HTTP/1.1 200"), is(true));
+        assertThat(response, containsString("GET /path?q=1"));
+    }
+
+    /**
+     * @verifies process only the given part of the buffer
+     * @see JettyLocalTransport#process(byte[], int, int)
+     */
+    @Test
+    public void process_shouldProcessOnlyTheGivenPartOfTheBuffer() throws Exception {
+        String framed = "garbage" + "DELETE /item?id=7 HTTP/1.1\r\nHost: localhost\r\n\r\n" + "trailing garbage";
+        byte[] request = framed.getBytes("ISO-8859-1");
+        int length = framed.length() - "garbage".length() - "trailing garbage".length();
+
+        String response = new String(underTest.process(request, "garbage".length(), length), "ISO-8859-1");
+
+        assertThat(response.startsWith("HTTP/1.1 200"), is(true));
+        assertThat(response, containsString("DELETE /item?id=7"));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.webserver.jetty;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+
+import java.util.Properties;
+
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.Test;
+
+/**
+ * @date 17/10/26
+ */
+public class JettySettingsTest {
+
+    /**
+     * @verifies keep the defaults for missing settings
+     * @see JettySettings#from(java.util.Properties)
+     */
+    @Test
+    public void from_shouldKeepTheDefaultsForMissingSettings() throws Exception {
+        JettySettings settings = JettySettings.from(new Properties());
+        SelectChannelConnector connector = new SelectChannelConnector();
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        int defaultAcceptors = connector.getAcceptors();
+        int defaultMinThreads = threadPool.getMinThreads();
+
+        settings.configure(connector);
+        settings.configure(threadPool);
+
+        assertThat(connector.getAcceptors(), is(defaultAcceptors));
+        assertThat(settings.getAcceptors(), is(defaultAcceptors));
+        assertThat(connector.getMaxIdleTime(), is(30000));
+        assertThat(threadPool.getMaxThreads(), is(250));
+        assertThat(threadPool.getMinThreads(), is(defaultMinThreads));
+        assertThat(settings.isLocalConnector(), is(false));
+        assertThat(settings.getContextOptions(), is(ServletContextHandler.SESSIONS));
+    }
+
+    /**
+     * @verifies parse the configured settings
+     * @see JettySettings#from(java.util.Properties)
+     */
+    @Test
+    public void from_shouldParseTheConfiguredSettings() throws Exception {
+        JettySettings settings = JettySettings.from(properties(
+                JettySettings.THREADS_MIN, "2",
+                JettySettings.THREADS_MAX, " 16 ",
+                JettySettings.THREADS_MAX_QUEUED, "100",
+                JettySettings.CONNECTOR_ACCEPTORS, "3",
+                JettySettings.CONNECTOR_ACCEPT_QUEUE_SIZE, "64",
+                JettySettings.CONNECTOR_IDLE_TIMEOUT, "500",
+                JettySettings.CONNECTOR_REQUEST_HEADER_SIZE, "8192",
+                JettySettings.LOCAL_CONNECTOR, "TRUE",
+                JettySettings.SESSIONS, "false",
+                "jetty.unknown", "ignored"));
+        SelectChannelConnector connector = new SelectChannelConnector();
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+
+        settings.configure(connector);
+        settings.configure(threadPool);
+
+        assertThat(threadPool.getMinThreads(), is(2));
+        assertThat(threadPool.getMaxThreads(), is(16));
+        assertThat(connector.getAcceptors(), is(3));
+        assertThat(connector.getAcceptQueueSize(), is(64));
+        assertThat(connector.getMaxIdleTime(), is(500));
+        assertThat(connector.getRequestHeaderSize(), is(8192));
+        assertThat(settings.isLocalConnector(), is(true));
+        assertThat(settings.getContextOptions(), is(ServletContextHandler.NO_SESSIONS));
+    }
+
+    /**
+     * @verifies reject invalid values
+     * @see JettySettings#from(java.util.Properties)
+     */
+    @Test
+    public void from_shouldRejectInvalidValues() throws Exception {
+        assertInvalid(properties(JettySettings.THREADS_MAX, "many"), "not a number");
+        assertInvalid(properties(JettySettings.CONNECTOR_ACCEPTORS, "0"), "must be at least 1");
+        assertInvalid(properties(JettySettings.CONNECTOR_IDLE_TIMEOUT, "-1"), "must be at least 0");
+        assertInvalid(properties(JettySettings.SESSIONS, "yes"), "must be true or false");
+        assertInvalid(properties(JettySettings.LOCAL_CONNECTOR, "1"), "must be true or false");
+    }
+
+    /**
+     * @verifies reject more min threads than max threads
+     * @see JettySettings#from(java.util.Properties)
+     */
+    @Test
+    public void from_shouldRejectMoreMinThreadsThanMaxThreads() throws Exception {
+        assertInvalid(properties(JettySettings.THREADS_MIN, "20", JettySettings.THREADS_MAX, "10"), "can not be more than");
+    }
+
+    /**
+     * @verifies reserve a thread per acceptor and per selector
+     * @see JettySettings#from(java.util.Properties)
+     */
+    @Test
+    public void from_shouldReserveAThreadPerAcceptorAndPerSelector() throws Exception {
+        JettySettings settings = JettySettings.from(properties(JettySettings.CONNECTOR_ACCEPTORS, "2", JettySettings.THREADS_MAX, "5"));
+        assertThat(settings.getConnectorThreads(), is(4));
+
+        // 2 acceptors and 2 selectors leave no thread for the requests
+        assertInvalid(properties(JettySettings.CONNECTOR_ACCEPTORS, "2", JettySettings.THREADS_MAX, "4"), "4 threads used by the connectors");
+        assertInvalid(properties(JettySettings.CONNECTOR_ACCEPTORS, "2", JettySettings.THREADS_MAX, "3"), "4 threads used by the connectors");
+    }
+
+    /**
+     * @verifies reserve a thread for the local connector acceptor
+     * @see JettySettings#from(java.util.Properties)
+     */
+    @Test
+    public void from_shouldReserveAThreadForTheLocalConnectorAcceptor() throws Exception {
+        JettySettings settings = JettySettings.from(properties(
+                JettySettings.CONNECTOR_ACCEPTORS, "1", JettySettings.LOCAL_CONNECTOR, "true", JettySettings.THREADS_MAX, "4"));
+        assertThat(settings.getConnectorThreads(), is(3));
+
+        assertInvalid(properties(JettySettings.CONNECTOR_ACCEPTORS, "1", JettySettings.LOCAL_CONNECTOR, "true", JettySettings.THREADS_MAX, "3"),
+                "local connector acceptor");
+    }
+
+    private static void assertInvalid(Properties properties, String expectedMessage) {
+        try {
+            JettySettings.from(properties);
+            fail("Settings should be rejected: " + properties);
+        } catch (IllegalArgumentException expected) {
+            assertThat(expected.getMessage(), expected.getMessage().contains(expectedMessage), is(true));
+        }
+    }
+
+    private static Properties properties(String... keysAndValues) {
+        Properties properties = new Properties();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            properties.setProperty(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.jmockring.webserver.jetty;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.fail;
+
+import java.net.BindException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.jmockring.configuration.BootstrapTimings;
+import org.jmockring.configuration.ServerConfiguration;
+import org.jmockring.utils.PortChecker;
+
+/**
+ * @date 17/10/26
+ */
+public class JettyWebServerTest {
+
+    private static final byte[] REQUEST = "GET /missing HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes();
+
+    private JettyWebServer underTest = new JettyWebServer();
+
+    private Thread serverThread;
+
+    @After
+    public void tearDown() throws Exception {
+        if (serverThread != null) {
+            // the shutdown request is asynchronous, the daemon server thread does not need to be joined
+            underTest.shutdown();
+        }
+    }
+
+    /**
+     * @verifies publish the bound ephemeral port
+     * @see JettyWebServer#initialise(ServerConfiguration)
+     */
+    @Test
+    public void initialise_shouldPublishTheBoundEphemeralPort() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration(null, null);
+        configuration.setEphemeralPort(true);
+
+        underTest.initialise(configuration);
+
+        assertThat(configuration.isPortAssigned(), is(true));
+        assertThat(underTest.getPort(), is(configuration.getPort()));
+        assertThat(canBind(underTest.getPort()), is(false));
+
+        underTest.shutdown(); // not started: only releases the port
+        assertThat(canBind(underTest.getPort()), is(true));
+    }
+
+    /**
+     * @verifies time the connector bind done by jetty on start
+     * @see JettyWebServer#initialise(ServerConfiguration)
+     */
+    @Test
+    public void initialise_shouldTimeTheConnectorBindDoneByJettyOnStart() throws Exception {
+        ServerSocket probe = new ServerSocket(0);
+        int port = probe.getLocalPort();
+        probe.close();
+        ServerConfiguration configuration = new ServerConfiguration(null, null);
+        configuration.setPort(port);
+
+        underTest.initialise(configuration);
+        assertThat(canBind(port), is(true)); // not bound before the server starts
+        startInBackground();
+        underTest.getStartupSignal().await(10, TimeUnit.SECONDS);
+
+        assertThat(configuration.getTimings().getNanos(BootstrapTimings.Phase.CONNECTOR_BIND) >= 0, is(true));
+    }
+
+    /**
+     * @verifies be completed once the server is started
+     * @see JettyWebServer#getStartupSignal()
+     */
+    @Test
+    public void getStartupSignal_shouldBeCompletedOnceTheServerIsStarted() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration(null, null);
+        configuration.setEphemeralPort(true);
+        underTest.initialise(configuration);
+
+        assertThat(underTest.getStartupSignal().isComplete(), is(false));
+        startInBackground();
+
+        underTest.getStartupSignal().await(10, TimeUnit.SECONDS);
+        assertThat(PortChecker.available(underTest.getPort()), is(false));
+    }
+
+    /**
+     * @verifies fail if the port can not be bound
+     * @see JettyWebServer#getStartupSignal()
+     */
+    @Test
+    public void getStartupSignal_shouldFailIfThePortCanNotBeBound() throws Exception {
+        ServerSocket occupied = new ServerSocket(0);
+        try {
+            ServerConfiguration configuration = new ServerConfiguration(null, null);
+            configuration.setPort(occupied.getLocalPort());
+            underTest.initialise(configuration);
+            startInBackground();
+
+            try {
+                underTest.getStartupSignal().await(10, TimeUnit.SECONDS);
+                fail("Startup signal must fail when the port is taken");
+            } catch (IllegalStateException expected) {
+                assertThat(expected.getMessage().startsWith("Server failed to start"), is(true));
+            }
+        } finally {
+            occupied.close();
+        }
+        serverThread.join(TimeUnit.SECONDS.toMillis(10));
+        assertThat(serverThread.isAlive(), is(false));
+        serverThread = null;
+    }
+
+    /**
+     * @verifies publish the local transport if the local connector is requested
+     * @see JettyWebServer#start()
+     */
+    @Test
+    public void start_shouldPublishTheLocalTransportIfTheLocalConnectorIsRequested() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration(null, null);
+        configuration.setEphemeralPort(true);
+        configuration.getProperties().setProperty(JettySettings.LOCAL_CONNECTOR, "true");
+        underTest.initialise(configuration);
+        startInBackground();
+        underTest.getStartupSignal().await(10, TimeUnit.SECONDS);
+
+        assertThat(configuration.getLocalTransport(), notNullValue());
+        String response = new String(configuration.getLocalTransport().process(REQUEST, 0, REQUEST.length), "ISO-8859-1");
+        assertThat(response.startsWith("HTTP/1.1 404"), is(true)); // no contexts
+    }
+
+    /**
+     * @verifies not add the local connector unless requested
+     * @see JettyWebServer#start()
+     */
+    @Test
+    public void start_shouldNotAddTheLocalConnectorUnlessRequested() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration(null, null);
+        configuration.setEphemeralPort(true);
+        underTest.initialise(configuration);
+        startInBackground();
+        underTest.getStartupSignal().await(10, TimeUnit.SECONDS);
+
+        assertThat(configuration.getLocalTransport(), nullValue());
+    }
+
+    private static boolean canBind(int port) throws Exception {
+        try {
+            new ServerSocket(port).close();
+            return true;
+        } catch (BindException e) {
+            return false;
+        }
+    }
+
+    private void startInBackground() {
+        serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                underTest.start();
+            }
+        }, "jetty-test-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+}
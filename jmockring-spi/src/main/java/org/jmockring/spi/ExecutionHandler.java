@@ -28,6 +28,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Reflective call bound once to a target instance and method.
+ * <p/>
+ * The method shape (whether the arguments must be passed as a single array) and the accessibility check are
+ * resolved at construction time, so {@link #execute(Object...)} only performs the actual invocation.
+ *
  * @author Pavel Lechev
  * @version 0.0.1
  * @date 03/03/13
@@ -40,14 +45,27 @@ public class ExecutionHandler {
 
     private final Method method;
 
+    /**
+     * True if the method takes a single array (or varargs) parameter: the caller's arguments are passed as that array.
+     */
+    private final boolean arrayArgument;
+
     public ExecutionHandler(Object instance, Method method) {
         this.instance = instance;
         this.method = method;
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        this.arrayArgument = parameterTypes.length == 1 && parameterTypes[0].isArray();
+        try {
+            // suppress the access check on every invocation
+            method.setAccessible(true);
+        } catch (SecurityException e) {
+            log.debug("LOG00610: Access check can not be suppressed for {}", method);
+        }
     }
 
     public Object execute(Object... args) {
         try {
-            if (method.getParameterTypes().length == 1 && method.getParameterTypes()[0].isArray()) {
+            if (arrayArgument) {
                 return method.invoke(instance, new Object[]{args});
             }
             return method.invoke(instance, args);
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import java.io.Closeable;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jmockring.configuration.ServerConfiguration;
+
+/**
+ * Bounded pool of keep-alive HTTP connections shared by all request clients targeting the same server.
+ * <p/>
+ * There is one pool per {@link ServerConfiguration}, registered as its shared resource and closed when the last test class using the server completes
+ * (servers reused by several test classes keep their pool until the last of them is done).
+ * The pool is sized from the server properties:
+ * <ul>
+ * <li>{@link #POOL_ENABLED_KEY} - set to false to open a new connection for every request (default true)</li>
+ * <li>{@link #POOL_MAX_PER_ROUTE_KEY} - max connections per host/port (default 20)</li>
+ * <li>{@link #POOL_MAX_TOTAL_KEY} - max connections in total (default 50)</li>
+ * <li>{@link #POOL_IDLE_TIMEOUT_KEY} - milliseconds after which an idle connection is evicted (default 30000)</li>
+ * </ul>
+ *
+ * @date 17/10/26
+ */
+public final class ConnectionPool implements Closeable {
+
+    public static final String POOL_ENABLED_KEY = "jmockring.client.pool.enabled";
+
+    public static final String POOL_MAX_PER_ROUTE_KEY = "jmockring.client.pool.maxPerRoute";
+
+    public static final String POOL_MAX_TOTAL_KEY = "jmockring.client.pool.maxTotal";
+
+    public static final String POOL_IDLE_TIMEOUT_KEY = "jmockring.client.pool.idleTimeout";
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final CountingConnectionManager connectionManager;
+
+    private final long idleTimeout;
+
+    private final AtomicLong created = new AtomicLong();
+
+    private volatile long lastEviction = System.currentTimeMillis();
+
+    private ConnectionPool(int maxPerRoute, int maxTotal, long idleTimeout) {
+        this.connectionManager = new CountingConnectionManager(SchemeRegistryFactory.createDefault());
+        this.connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        this.connectionManager.setMaxTotal(maxTotal);
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Get the pool shared by the clients of this server, creating it on first use.
+     *
+     * @param serverConfiguration
+     *
+     * @return the pool, or null if pooling is disabled in the server properties
+     */
+    public static ConnectionPool forServer(ServerConfiguration serverConfiguration) {
+        ConnectionPool pool = serverConfiguration.getSharedResource(ConnectionPool.class);
+        if (pool != null) {
+            return pool;
+        }
+        Properties properties = serverConfiguration.getProperties();
+        if (!Boolean.parseBoolean(properties.getProperty(POOL_ENABLED_KEY, "true"))) {
+            return null;
+        }
+        ConnectionPool created = new ConnectionPool(
+                getInt(properties, POOL_MAX_PER_ROUTE_KEY, 20),
+                getInt(properties, POOL_MAX_TOTAL_KEY, 50),
+                getInt(properties, POOL_IDLE_TIMEOUT_KEY, 30000));
+        pool = serverConfiguration.registerSharedResource(ConnectionPool.class, created);
+        if (pool != created) {
+            created.close(); // another client got there first
+        } else {
+            log.info("LOG00630: Created connection pool for {}: {}", serverConfiguration, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Create new HTTP client backed by this pool.
+     * <p/>
+     * Clients are cheap: each request gets its own one (so cookies and parameters are not shared), while the connections are reused.
+     *
+     * @return
+     */
+    public DefaultHttpClient newHttpClient() {
+        evictIdleConnections();
+        return new DefaultHttpClient(connectionManager);
+    }
+
+    /**
+     * @return snapshot of the pool usage
+     */
+    public Statistics getStatistics() {
+        PoolStats stats = connectionManager.getTotalStats();
+        return new Statistics(stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax(), created.get());
+    }
+
+    @Override
+    public void close() {
+        log.info("LOG00640: Closing connection pool: {}", this);
+        connectionManager.shutdown();
+    }
+
+    /**
+     * Evict expired and idle connections, at most twice per idle timeout period.
+     */
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        if (now - lastEviction < idleTimeout / 2) {
+            return;
+        }
+        lastEviction = now;
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    static int getInt(Properties properties, String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value '%s' for connection pool property [%s]", value, key), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool{maxPerRoute=%d, maxTotal=%d, idleTimeout=%dms, %s}",
+                connectionManager.getDefaultMaxPerRoute(), connectionManager.getMaxTotal(), idleTimeout, getStatistics());
+    }
+
+    /**
+     * Connection manager counting the physical connections it opens.
+     */
+    private final class CountingConnectionManager extends PoolingClientConnectionManager {
+
+        private CountingConnectionManager(SchemeRegistry schemeRegistry) {
+            super(schemeRegistry);
+        }
+
+        @Override
+        protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemeRegistry) {
+            return new DefaultClientConnectionOperator(schemeRegistry) {
+                @Override
+                public OperatedClientConnection createConnection() {
+                    created.incrementAndGet();
+                    return super.createConnection();
+                }
+            };
+        }
+    }
+
+    /**
+     * Pool usage snapshot.
+     */
+    public static final class Statistics {
+
+        private final int leased;
+
+        private final int idle;
+
+        private final int pending;
+
+        private final int max;
+
+        private final long created;
+
+        private Statistics(int leased, int idle, int pending, int max, long created) {
+            this.leased = leased;
+            this.idle = idle;
+            this.pending = pending;
+            this.max = max;
+            this.created = created;
+        }
+
+        /**
+         * @return connections currently used by requests
+         */
+        public int getLeased() {
+            return leased;
+        }
+
+        /**
+         * @return open connections waiting to be reused
+         */
+        public int getIdle() {
+            return idle;
+        }
+
+        /**
+         * @return requests waiting for a connection
+         */
+        public int getPending() {
+            return pending;
+        }
+
+        /**
+         * @return the max total connections
+         */
+        public int getMax() {
+            return max;
+        }
+
+        /**
+         * @return connections opened since the pool was created
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("leased=%d, idle=%d, pending=%d, max=%d, created=%d", leased, idle, pending, max, created);
+        }
+    }
+}
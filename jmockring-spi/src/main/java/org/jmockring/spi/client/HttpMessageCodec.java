@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * HTTP/1.1 request writer and response parser used by the raw clients.
+ * <p/>
+ * Keeps reusable buffers, so it is not thread safe: each connection has its own instance.
+ *
+ * @date 17/10/26
+ */
+final class HttpMessageCodec {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final ByteArrayOutputStream head = new ByteArrayOutputStream(256);
+
+    private final StringBuilder line = new StringBuilder(128);
+
+    private boolean responseStarted;
+
+    private boolean keepAlive;
+
+    /**
+     * @param out
+     * @param method
+     * @param target     the request URI: absolute path and query
+     * @param hostHeader
+     * @param headers    additional headers, may be null
+     * @param body       may be null
+     * @param offset
+     * @param length
+     *
+     * @throws IOException
+     * @should write the content length of the body
+     * @should reject non ASCII characters in the request head
+     */
+    void writeRequest(OutputStream out, String method, String target, String hostHeader, Map<String, String> headers,
+                      byte[] body, int offset, int length) throws IOException {
+        responseStarted = false;
+        keepAlive = false;
+        head.reset();
+        ascii(method).ascii(" ").ascii(target).ascii(" HTTP/1.1\r\n");
+        ascii("Host: ").ascii(hostHeader).ascii("\r\n");
+        if (body != null) {
+            ascii("Content-Length: ").ascii(Integer.toString(length)).ascii("\r\n");
+        }
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                ascii(header.getKey()).ascii(": ").ascii(header.getValue()).ascii("\r\n");
+            }
+        }
+        head.write(CRLF, 0, CRLF.length);
+        head.writeTo(out);
+        if (body != null) {
+            out.write(body, offset, length);
+        }
+        out.flush();
+    }
+
+    /**
+     * Read the next complete response.
+     *
+     * @param in
+     * @param method the request method: responses to HEAD have no body
+     *
+     * @return
+     * @throws IOException
+     * @should read a body delimited by the content length
+     * @should read a chunked body
+     * @should skip the interim responses
+     * @should keep the connection alive unless the response closes it
+     * @should read to the end of the stream if the body length is not known
+     */
+    RawHttpResponse readResponse(InputStream in, String method) throws IOException {
+        String statusLine = readStatusLine(in);
+        while (statusLine.startsWith("HTTP/1.1 1")) {
+            readHeaders(in); // skip the interim responses
+            statusLine = readStatusLine(in);
+        }
+
+        int firstSpace = statusLine.indexOf(' ');
+        int secondSpace = statusLine.indexOf(' ', firstSpace + 1);
+        if (firstSpace < 0) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+        int status = Integer.parseInt(secondSpace > 0 ? statusLine.substring(firstSpace + 1, secondSpace) : statusLine.substring(firstSpace + 1));
+        String reason = secondSpace > 0 ? statusLine.substring(secondSpace + 1) : "";
+        Map<String, List<String>> headers = readHeaders(in);
+
+        String connectionHeader = first(headers, "connection");
+        keepAlive = statusLine.startsWith("HTTP/1.1") ? !"close".equalsIgnoreCase(connectionHeader) : "keep-alive".equalsIgnoreCase(connectionHeader);
+
+        byte[] body;
+        String contentLength = first(headers, "content-length");
+        if ("HEAD".equalsIgnoreCase(method) || status == 204 || status == 304) {
+            body = null;
+        } else if ("chunked".equalsIgnoreCase(first(headers, "transfer-encoding"))) {
+            body = readChunked(in);
+        } else if (contentLength != null) {
+            body = readFully(in, Integer.parseInt(contentLength.trim()));
+        } else {
+            body = readToEnd(in);
+            keepAlive = false;
+        }
+        return new RawHttpResponse(status, reason, headers, body);
+    }
+
+    /**
+     * Decide if a request may be sent again after its connection failed.
+     * <p/>
+     * Only the idempotent methods of RFC 7231 (GET, HEAD, OPTIONS, TRACE, PUT and DELETE) are retried: the server may
+     * have processed a failed request before the connection broke, and sending a POST or PATCH again could apply it twice.
+     *
+     * @param method
+     *
+     * @return
+     * @should allow retrying idempotent methods
+     * @should not allow retrying non idempotent methods
+     */
+    static boolean isIdempotent(String method) {
+        String upperCase = method.toUpperCase(Locale.ENGLISH);
+        return "GET".equals(upperCase) || "HEAD".equals(upperCase) || "OPTIONS".equals(upperCase)
+                || "TRACE".equals(upperCase) || "PUT".equals(upperCase) || "DELETE".equals(upperCase);
+    }
+
+    /**
+     * @return true if any part of the last response has been received
+     */
+    boolean isResponseStarted() {
+        return responseStarted;
+    }
+
+    /**
+     * @return true if the connection can be reused after the last response
+     */
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    private HttpMessageCodec ascii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c > 0x7F) {
+                throw new IllegalArgumentException(String.format("Non ASCII character '%s' in request head: %s", c, value));
+            }
+            head.write(c);
+        }
+        return this;
+    }
+
+    private String readStatusLine(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        if (statusLine == null) {
+            throw new EOFException("Connection closed before the response status");
+        }
+        responseStarted = true;
+        return statusLine;
+    }
+
+    private Map<String, List<String>> readHeaders(InputStream in) throws IOException {
+        Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+        String header;
+        while ((header = readLine(in)) != null && header.length() > 0) {
+            int colon = header.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = header.substring(0, colon).trim().toLowerCase(Locale.ENGLISH);
+            List<String> values = headers.get(name);
+            if (values == null) {
+                values = new ArrayList<String>(1);
+                headers.put(name, values);
+            }
+            values.add(header.substring(colon + 1).trim());
+        }
+        return headers;
+    }
+
+    private byte[] readChunked(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (true) {
+            String sizeLine = readLine(in);
+            if (sizeLine == null) {
+                throw new EOFException("Connection closed in chunked body");
+            }
+            int extension = sizeLine.indexOf(';');
+            int size = Integer.parseInt((extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim(), 16);
+            if (size == 0) {
+                readHeaders(in); // trailers
+                return body.toByteArray();
+            }
+            while (size > 0) {
+                int read = in.read(buffer, 0, Math.min(size, buffer.length));
+                if (read < 0) {
+                    throw new EOFException("Connection closed in chunked body");
+                }
+                body.write(buffer, 0, read);
+                size -= read;
+            }
+            readLine(in); // CRLF after the chunk data
+        }
+    }
+
+    private byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] body = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(body, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException(String.format("Connection closed after %d of %d body bytes", offset, length));
+            }
+            offset += read;
+        }
+        return body;
+    }
+
+    private byte[] readToEnd(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * @return the next line without the line terminator, or null if the stream is exhausted
+     */
+    private String readLine(InputStream in) throws IOException {
+        line.setLength(0);
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') {
+                int last = line.length() - 1;
+                if (last >= 0 && line.charAt(last) == '\r') {
+                    line.setLength(last);
+                }
+                return line.toString();
+            }
+            line.append((char) b);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+
+    private static String first(Map<String, List<String>> headers, String name) {
+        List<String> values = headers.get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+}
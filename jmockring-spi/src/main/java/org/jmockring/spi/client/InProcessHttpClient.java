@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import org.jmockring.annotation.RequestClient;
+import org.jmockring.configuration.BaseContextConfiguration;
+import org.jmockring.configuration.ServerConfiguration;
+import org.jmockring.webserver.LocalTransport;
+
+/**
+ * {@link RawHttpClient} which hands the requests straight to the server's {@link LocalTransport}, without sockets.
+ * <p/>
+ * The requests still run through the real filter and servlet chain of the contexts, only the network is skipped.
+ * Injectable in the test class with {@link RequestClient}; the server must provide a local transport
+ * (e.g. Jetty with the <code>jetty.connector.local=true</code> server property).
+ *
+ * @date 17/10/26
+ */
+public class InProcessHttpClient extends RawHttpClient {
+
+    private final String hostHeader;
+
+    public InProcessHttpClient(ServerConfiguration serverConfiguration, BaseContextConfiguration contextConfiguration) {
+        super(serverConfiguration, contextConfiguration);
+        this.hostHeader = serverConfiguration.getHost() + ":" + serverConfiguration.getPort();
+    }
+
+    /**
+     * @should hand the serialised request to the local transport and parse its response
+     * @should fail if the server has no local transport
+     */
+    @Override
+    protected RawHttpResponse send(String method, String target, Map<String, String> headers,
+                                   byte[] body, int offset, int length) throws IOException {
+        LocalTransport transport = getServerConfiguration().getLocalTransport();
+        if (transport == null) {
+            throw new IllegalStateException("Server " + getServerConfiguration() + " does not serve in-process requests: it has no local transport");
+        }
+        HttpMessageCodec codec = new HttpMessageCodec();
+        ByteArrayOutputStream request = new ByteArrayOutputStream(256 + length);
+        codec.writeRequest(request, method, target, hostHeader, headers, body, offset, length);
+        byte[] response = transport.process(request.toByteArray(), 0, request.size());
+        return codec.readResponse(new ByteArrayInputStream(response), method);
+    }
+
+}
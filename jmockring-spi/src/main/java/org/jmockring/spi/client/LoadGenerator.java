@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jmockring.annotation.RequestClient;
+import org.jmockring.configuration.BaseContextConfiguration;
+import org.jmockring.configuration.ServerConfiguration;
+import org.jmockring.configuration.ServerExecutionConfiguration;
+import org.jmockring.configuration.ServerExecutionRegistry;
+import org.jmockring.configuration.ServerSpec;
+import org.jmockring.utils.LatencyHistogram;
+
+/**
+ * Concurrent load driver for the bootstrapped servers, injectable in the test class with {@link RequestClient}.
+ * <p/>
+ * <b>Usage:</b>
+ * <pre>
+ * LoadReport report = loadGenerator.newLoad()
+ *         .request("GET", "/items/1")
+ *         .concurrency(8)
+ *         .duration(5, TimeUnit.SECONDS)
+ *         .run();
+ * assertThat(report.getLatency(99, TimeUnit.MILLISECONDS), lessThan(50L));
+ * </pre>
+ * In the default closed-loop mode each worker sends the next request as soon as the previous one completes.
+ * In open-loop mode ({@link Load#rate(int)}) the requests are sent on a fixed schedule and the latency is measured from
+ * the scheduled time, so a slow server is not hidden by the workers backing off.
+ *
+ * @date 17/10/26
+ */
+public class LoadGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final ServerConfiguration serverConfiguration;
+
+    private final BaseContextConfiguration contextConfiguration;
+
+    public LoadGenerator(ServerConfiguration serverConfiguration, BaseContextConfiguration contextConfiguration) {
+        this.serverConfiguration = serverConfiguration;
+        this.contextConfiguration = contextConfiguration;
+    }
+
+    /**
+     * Create generator targeting any running server and context.
+     *
+     * @param serverSpec
+     *
+     * @return
+     * @throws IllegalStateException if the server is not registered in the {@link ServerExecutionRegistry}
+     */
+    public static LoadGenerator forServer(ServerSpec serverSpec) {
+        ServerExecutionConfiguration execution = ServerExecutionRegistry.getConfiguration(serverSpec);
+        if (execution == null) {
+            throw new IllegalStateException("Can't find configuration for specification " + serverSpec);
+        }
+        return new LoadGenerator(execution.getConfiguration(), execution.getContextConfiguration());
+    }
+
+    /**
+     * @return new load definition
+     */
+    public Load newLoad() {
+        return new Load();
+    }
+
+    /**
+     * @return
+     */
+    public ServerConfiguration getServerConfiguration() {
+        return serverConfiguration;
+    }
+
+    /**
+     * Load definition: what to send, how many workers and for how long.
+     */
+    public final class Load {
+
+        private final List<RequestTemplate> templates = new ArrayList<RequestTemplate>();
+
+        private int concurrency = 1;
+
+        private long durationNanos;
+
+        private long requests;
+
+        private boolean requestLimit;
+
+        private int rate;
+
+        private boolean inProcess;
+
+        private Load() {
+        }
+
+        /**
+         * Add request template. The templates are sent in turn.
+         *
+         * @param method
+         * @param path   relative to the context path
+         *
+         * @return
+         */
+        public Load request(String method, String path) {
+            return request(method, path, null, null);
+        }
+
+        /**
+         * @param method
+         * @param path
+         * @param headers may be null
+         * @param body    may be null
+         *
+         * @return
+         */
+        public Load request(String method, String path, Map<String, String> headers, byte[] body) {
+            templates.add(new RequestTemplate(method, path, headers, body));
+            return this;
+        }
+
+        /**
+         * @param workers number of threads sending requests
+         *
+         * @return
+         */
+        public Load concurrency(int workers) {
+            if (workers < 1) {
+                throw new IllegalArgumentException("Concurrency must be at least 1");
+            }
+            this.concurrency = workers;
+            return this;
+        }
+
+        /**
+         * Stop after this time. Can be combined with {@link #requests(long)}: whichever comes first.
+         *
+         * @param duration must be positive
+         * @param unit
+         *
+         * @return
+         * @should reject a duration that is not positive
+         */
+        public Load duration(long duration, TimeUnit unit) {
+            if (duration < 1) {
+                throw new IllegalArgumentException("Duration must be positive");
+            }
+            this.durationNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Stop after sending this many requests.
+         *
+         * @param count must be at least 1
+         *
+         * @return
+         * @should reject a number of requests less than one
+         */
+        public Load requests(long count) {
+            if (count < 1) {
+                throw new IllegalArgumentException("Number of requests must be at least 1");
+            }
+            this.requests = count;
+            this.requestLimit = true;
+            return this;
+        }
+
+        /**
+         * Switch to open-loop mode: send requests at a fixed rate, regardless of the response times.
+         *
+         * @param requestsPerSecond
+         *
+         * @return
+         */
+        public Load rate(int requestsPerSecond) {
+            if (requestsPerSecond < 1) {
+                throw new IllegalArgumentException("Rate must be at least 1 request per second");
+            }
+            this.rate = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * Send the requests through the server's local transport instead of the network.
+         *
+         * @return
+         * @see InProcessHttpClient
+         */
+        public Load inProcess() {
+            this.inProcess = true;
+            return this;
+        }
+
+        /**
+         * Run the load and block until it completes.
+         *
+         * @return
+         * @throws InterruptedException
+         * @should stop a duration only run on time
+         * @should send the rate limited requests on schedule
+         * @should stop at the request limit if it comes before the duration
+         * @should stop at the duration if it comes before the request limit
+         */
+        public LoadReport run() throws InterruptedException {
+            if (templates.isEmpty()) {
+                throw new IllegalStateException("No request templates defined");
+            }
+            if (durationNanos <= 0 && !requestLimit) {
+                throw new IllegalStateException("Either duration or number of requests is required");
+            }
+            RawHttpClient client = inProcess
+                    ? new InProcessHttpClient(serverConfiguration, contextConfiguration)
+                    : new RawHttpClient(serverConfiguration, contextConfiguration);
+            Run run = new Run(this, client);
+            log.info("LOG00660: Starting load against {}: {} workers, {}", new Object[]{serverConfiguration, concurrency, rate > 0 ? rate + " req/s" : "closed loop"});
+            LoadReport report = run.execute();
+            log.info("LOG00670: Load complete: {}", report);
+            return report;
+        }
+    }
+
+    /**
+     * One execution of the load.
+     */
+    private static final class Run {
+
+        private final Load load;
+
+        private final RawHttpClient client;
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final AtomicLong tickets = new AtomicLong();
+
+        private final AtomicLong completed = new AtomicLong();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private final AtomicReference<Throwable> lastFailure = new AtomicReference<Throwable>();
+
+        private final long intervalNanos;
+
+        private final boolean hasDeadline;
+
+        private long start;
+
+        private long deadline;
+
+        private Run(Load load, RawHttpClient client) {
+            this.load = load;
+            this.client = client;
+            this.intervalNanos = load.rate > 0 ? TimeUnit.SECONDS.toNanos(1) / load.rate : 0;
+            this.hasDeadline = load.durationNanos > 0;
+        }
+
+        private LoadReport execute() throws InterruptedException {
+            ExecutorService workers = Executors.newFixedThreadPool(load.concurrency, new WorkerThreadFactory());
+            final CountDownLatch done = new CountDownLatch(load.concurrency);
+            start = System.nanoTime();
+            // nanoTime values are only comparable by difference: there is no sentinel deadline meaning "never"
+            deadline = start + load.durationNanos;
+            try {
+                for (int i = 0; i < load.concurrency; i++) {
+                    workers.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                work();
+                            } finally {
+                                done.countDown();
+                            }
+                        }
+                    });
+                }
+                done.await();
+            } finally {
+                workers.shutdownNow();
+            }
+            return new LoadReport(completed.get(), errors.get(), System.nanoTime() - start, latency, lastFailure.get());
+        }
+
+        private void work() {
+            long ticket;
+            while (!Thread.currentThread().isInterrupted()) {
+                ticket = tickets.getAndIncrement();
+                if (load.requestLimit && ticket >= load.requests) {
+                    return;
+                }
+                long scheduled = intervalNanos > 0 ? start + ticket * intervalNanos : System.nanoTime();
+                if (hasDeadline && scheduled - deadline >= 0) {
+                    return;
+                }
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                RequestTemplate template = load.templates.get((int) (ticket % load.templates.size()));
+                try {
+                    RawHttpResponse response = client.execute(template.method, template.path, template.headers, template.body);
+                    if (response.getStatus() >= 400) {
+                        errors.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    errors.incrementAndGet();
+                    lastFailure.set(e);
+                } catch (RuntimeException e) {
+                    errors.incrementAndGet();
+                    lastFailure.set(e);
+                }
+                latency.record(System.nanoTime() - scheduled);
+                completed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * A request to send repeatedly.
+     */
+    private static final class RequestTemplate {
+
+        private final String method;
+
+        private final String path;
+
+        private final Map<String, String> headers;
+
+        private final byte[] body;
+
+        private RequestTemplate(String method, String path, Map<String, String> headers, byte[] body) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+    /**
+     * The workers must not keep the JVM alive.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "load-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
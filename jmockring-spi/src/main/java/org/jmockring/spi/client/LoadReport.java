@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jmockring.utils.LatencyHistogram;
+
+/**
+ * Outcome of a {@link LoadGenerator} run.
+ *
+ * @date 17/10/26
+ */
+public final class LoadReport {
+
+    private final long requests;
+
+    private final long errors;
+
+    private final long elapsedNanos;
+
+    private final LatencyHistogram latency;
+
+    private final Throwable lastFailure;
+
+    LoadReport(long requests, long errors, long elapsedNanos, LatencyHistogram latency, Throwable lastFailure) {
+        this.requests = requests;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+        this.lastFailure = lastFailure;
+    }
+
+    /**
+     * @return number of completed requests, including the failed ones
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return number of requests which failed with I/O error or HTTP status 400 and above
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the last I/O or runtime error, if any
+     */
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return completed requests per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @param percentile e.g. 50, 99 or 99.9
+     * @param unit
+     *
+     * @return
+     */
+    public long getLatency(double percentile, TimeUnit unit) {
+        return unit.convert(latency.getValueAtPercentile(percentile), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the latency distribution in nanoseconds
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LoadReport{requests=%d, errors=%d, throughput=%.1f req/s, latency: %s}",
+                requests, errors, getThroughput(), latency);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import org.jmockring.annotation.RequestClient;
+import org.jmockring.configuration.BaseContextConfiguration;
+import org.jmockring.configuration.ServerConfiguration;
+
+/**
+ * Minimal HTTP/1.1 client for high request rates, pre-configured with the host/port and context path of the server and
+ * injectable in the test class with {@link RequestClient}.
+ * <p/>
+ * Requests and responses carry raw bytes, there is no content processing. The connections are kept alive and shared
+ * by all clients of the same server (see {@link RawHttpTransport}). The client is thread safe.
+ *
+ * @date 17/10/26
+ */
+public class RawHttpClient {
+
+    private final ServerConfiguration serverConfiguration;
+
+    private final String basePath;
+
+    public RawHttpClient(ServerConfiguration serverConfiguration, BaseContextConfiguration contextConfiguration) {
+        this.serverConfiguration = serverConfiguration;
+        String contextPath = contextConfiguration != null ? contextConfiguration.getContextPath() : null;
+        this.basePath = contextPath == null || "/".equals(contextPath) ? "" : stripTrailingSlash(contextPath);
+    }
+
+    /**
+     * @param path relative to the context path, may include the query string
+     *
+     * @return
+     * @throws IOException
+     */
+    public RawHttpResponse get(String path) throws IOException {
+        return execute("GET", path, null, (byte[]) null);
+    }
+
+    /**
+     * @param path
+     * @param contentType
+     * @param body
+     *
+     * @return
+     * @throws IOException
+     */
+    public RawHttpResponse post(String path, String contentType, byte[] body) throws IOException {
+        return execute("POST", path, Collections.singletonMap("Content-Type", contentType), body);
+    }
+
+    /**
+     * @param path
+     * @param contentType
+     * @param body
+     *
+     * @return
+     * @throws IOException
+     */
+    public RawHttpResponse put(String path, String contentType, byte[] body) throws IOException {
+        return execute("PUT", path, Collections.singletonMap("Content-Type", contentType), body);
+    }
+
+    /**
+     * @param path
+     *
+     * @return
+     * @throws IOException
+     */
+    public RawHttpResponse delete(String path) throws IOException {
+        return execute("DELETE", path, null, (byte[]) null);
+    }
+
+    /**
+     * @param method
+     * @param path    relative to the context path, may include the query string
+     * @param headers additional request headers, may be null
+     * @param body    may be null
+     *
+     * @return
+     * @throws IOException
+     */
+    public RawHttpResponse execute(String method, String path, Map<String, String> headers, byte[] body) throws IOException {
+        return send(method, target(path), headers, body, 0, body != null ? body.length : 0);
+    }
+
+    /**
+     * Send the remaining bytes of the buffer as body. The buffer position is not changed.
+     *
+     * @param method
+     * @param path
+     * @param headers
+     * @param body
+     *
+     * @return
+     * @throws IOException
+     */
+    public RawHttpResponse execute(String method, String path, Map<String, String> headers, ByteBuffer body) throws IOException {
+        if (body.hasArray()) {
+            return send(method, target(path), headers, body.array(), body.arrayOffset() + body.position(), body.remaining());
+        }
+        byte[] copy = new byte[body.remaining()];
+        body.duplicate().get(copy);
+        return execute(method, path, headers, copy);
+    }
+
+    /**
+     * Send the request asynchronously.
+     *
+     * @param method
+     * @param path
+     * @param headers
+     * @param body
+     *
+     * @return
+     */
+    public Future<RawHttpResponse> submit(final String method, final String path, final Map<String, String> headers, final byte[] body) {
+        return RawHttpTransport.forServer(serverConfiguration).submit(new Callable<RawHttpResponse>() {
+            @Override
+            public RawHttpResponse call() throws Exception {
+                return execute(method, path, headers, body);
+            }
+        });
+    }
+
+    /**
+     * Deliver the request to the server.
+     *
+     * @param method
+     * @param target  the request URI, including the context path
+     * @param headers
+     * @param body
+     * @param offset
+     * @param length
+     *
+     * @return
+     * @throws IOException
+     */
+    protected RawHttpResponse send(String method, String target, Map<String, String> headers,
+                                   byte[] body, int offset, int length) throws IOException {
+        return RawHttpTransport.forServer(serverConfiguration).execute(method, target, headers, body, offset, length);
+    }
+
+    /**
+     * @return
+     */
+    public ServerConfiguration getServerConfiguration() {
+        return serverConfiguration;
+    }
+
+    private String target(String path) {
+        if (path == null || path.isEmpty()) {
+            return basePath.isEmpty() ? "/" : basePath;
+        }
+        return path.charAt(0) == '/' ? basePath + path : basePath + "/" + path;
+    }
+
+    private static String stripTrailingSlash(String path) {
+        String normalised = path.startsWith("/") ? path : "/" + path;
+        return normalised.endsWith("/") ? normalised.substring(0, normalised.length() - 1) : normalised;
+    }
+
+}
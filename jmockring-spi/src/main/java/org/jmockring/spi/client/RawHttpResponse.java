@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response received by the {@link RawHttpClient}.
+ * <p/>
+ * The body is held as received, it is only decoded on request.
+ *
+ * @date 17/10/26
+ */
+public final class RawHttpResponse {
+
+    private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final int status;
+
+    private final String reason;
+
+    private final Map<String, List<String>> headers;
+
+    private final byte[] body;
+
+    RawHttpResponse(int status, String reason, Map<String, List<String>> headers, byte[] body) {
+        this.status = status;
+        this.reason = reason;
+        this.headers = headers;
+        this.body = body != null ? body : NO_BODY;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * @return all headers, keyed by lower case name
+     */
+    public Map<String, List<String>> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * @param name case insensitive header name
+     *
+     * @return the first value of the header or null if it is not present
+     */
+    public String getHeader(String name) {
+        List<String> values = headers.get(name.toLowerCase());
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    /**
+     * @return the body bytes; the array is not copied and must not be modified
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return read-only view of the body
+     */
+    public ByteBuffer getBodyBuffer() {
+        return ByteBuffer.wrap(body).asReadOnlyBuffer();
+    }
+
+    /**
+     * Decode the body using the charset from the <code>Content-Type</code> header, or UTF-8 if none is set.
+     *
+     * @return
+     */
+    public String getBodyAsString() {
+        return new String(body, getCharset());
+    }
+
+    private Charset getCharset() {
+        String contentType = getHeader("content-type");
+        if (contentType != null) {
+            int index = contentType.toLowerCase().indexOf("charset=");
+            if (index >= 0) {
+                String name = contentType.substring(index + "charset=".length()).replace("\"", "").trim();
+                int end = name.indexOf(';');
+                try {
+                    return Charset.forName(end >= 0 ? name.substring(0, end).trim() : name);
+                } catch (IllegalArgumentException e) {
+                    // unknown charset: fall back to the default
+                }
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RawHttpResponse{status=%d %s, body=%d bytes}", status, reason, body.length);
+    }
+}
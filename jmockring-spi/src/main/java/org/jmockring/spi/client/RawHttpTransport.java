@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.jmockring.annotation.BootstrapConfig;
+import org.jmockring.configuration.ServerConfiguration;
+
+/**
+ * HTTP/1.1 connections to one server, shared by all {@link RawHttpClient}s targeting it.
+ * <p/>
+ * Connections are kept alive and reused by subsequent requests. Each connection serves one request at a time,
+ * concurrent requests open more connections. Up to {@link #MAX_IDLE_KEY} idle connections are kept (default 32),
+ * {@link #TIMEOUT_KEY} sets the connect and read timeout in milliseconds (default 30000).
+ * <p/>
+ * Like the {@link ConnectionPool}, the transport is registered as a shared resource of the {@link ServerConfiguration}
+ * and closed when the last test class using the server completes.
+ *
+ * @date 17/10/26
+ */
+public final class RawHttpTransport implements Closeable {
+
+    public static final String MAX_IDLE_KEY = "jmockring.client.raw.maxIdle";
+
+    public static final String TIMEOUT_KEY = "jmockring.client.raw.timeout";
+
+    private static final Logger log = LoggerFactory.getLogger(RawHttpTransport.class);
+
+    private final String host;
+
+    private final int port;
+
+    private final boolean secure;
+
+    private final String hostHeader;
+
+    private final int maxIdle;
+
+    private final int timeout;
+
+    private final Queue<Connection> idleConnections = new ConcurrentLinkedQueue<Connection>();
+
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    private volatile ExecutorService asyncExecutor;
+
+    private volatile boolean closed;
+
+    private RawHttpTransport(String scheme, String host, int port, int maxIdle, int timeout) {
+        this.host = host;
+        this.port = port;
+        this.secure = BootstrapConfig.SCHEME_HTTPS.equalsIgnoreCase(scheme);
+        this.hostHeader = host + ":" + port;
+        this.maxIdle = maxIdle;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Get the transport for this server, creating it on first use.
+     *
+     * @param serverConfiguration
+     *
+     * @return
+     */
+    public static RawHttpTransport forServer(ServerConfiguration serverConfiguration) {
+        RawHttpTransport transport = serverConfiguration.getSharedResource(RawHttpTransport.class);
+        if (transport != null) {
+            return transport;
+        }
+        Properties properties = serverConfiguration.getProperties();
+        RawHttpTransport created = new RawHttpTransport(
+                serverConfiguration.getScheme(),
+                serverConfiguration.getHost(),
+                serverConfiguration.getPort(),
+                ConnectionPool.getInt(properties, MAX_IDLE_KEY, 32),
+                ConnectionPool.getInt(properties, TIMEOUT_KEY, 30000));
+        transport = serverConfiguration.registerSharedResource(RawHttpTransport.class, created);
+        if (transport != created) {
+            created.close();
+        }
+        return transport;
+    }
+
+    /**
+     * Send the request and read the whole response.
+     * <p/>
+     * An idempotent request (see {@link HttpMessageCodec#isIdempotent(String)}) failing on a reused connection, before any part
+     * of the response is received, is retried once on a new connection: the server may have closed the idle connection in the meantime.
+     * Other requests are never retried, the server may have processed them already.
+     *
+     * @param method
+     * @param target  the request URI: absolute path and query
+     * @param headers additional headers, may be null
+     * @param body    may be null
+     * @param offset
+     * @param length
+     *
+     * @return
+     * @throws IOException
+     */
+    public RawHttpResponse execute(String method, String target, Map<String, String> headers,
+                                   byte[] body, int offset, int length) throws IOException {
+        Connection connection = acquire();
+        try {
+            RawHttpResponse response;
+            try {
+                response = connection.exchange(method, target, headers, body, offset, length);
+            } catch (IOException e) {
+                if (!connection.reused || connection.codec.isResponseStarted() || !HttpMessageCodec.isIdempotent(method)) {
+                    throw e;
+                }
+                connection.close();
+                connection = open();
+                response = connection.exchange(method, target, headers, body, offset, length);
+            }
+            if (connection.codec.isKeepAlive()) {
+                release(connection);
+                connection = null;
+            }
+            return response;
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Run the request on a daemon thread.
+     * <p/>
+     * There are as many threads as idle connections kept ({@link #MAX_IDLE_KEY}), with as many requests waiting for them.
+     * When all are busy the caller runs the request itself, which slows the submitting down to the rate the server sustains.
+     *
+     * @param request
+     *
+     * @return
+     */
+    <T> Future<T> submit(Callable<T> request) {
+        if (closed) {
+            throw new IllegalStateException("Transport to " + hostHeader + " is closed");
+        }
+        ExecutorService executor = asyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = asyncExecutor;
+                if (executor == null) {
+                    int threads = Math.max(1, maxIdle);
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<Runnable>(threads), new DaemonThreadFactory(hostHeader), new ThreadPoolExecutor.CallerRunsPolicy());
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = asyncExecutor = pool;
+                }
+            }
+        }
+        return executor.submit(request);
+    }
+
+    /**
+     * Close the idle connections and refuse new requests. The requests in flight complete and close their connections.
+     *
+     * @should close the connection of a request completing while the transport is closed
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeIdleConnections();
+        synchronized (this) {
+            if (asyncExecutor != null) {
+                asyncExecutor.shutdownNow();
+            }
+        }
+    }
+
+    private Connection acquire() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Transport to " + hostHeader + " is closed");
+        }
+        Connection connection = idleConnections.poll();
+        if (connection != null) {
+            idleCount.decrementAndGet();
+            connection.reused = true;
+            return connection;
+        }
+        return open();
+    }
+
+    private void release(Connection connection) {
+        if (closed) {
+            connection.close();
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            connection.close();
+            return;
+        }
+        idleConnections.offer(connection);
+        if (closed) {
+            // close() may have emptied the queue between the check above and the offer
+            closeIdleConnections();
+        }
+    }
+
+    private void closeIdleConnections() {
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            idleCount.decrementAndGet();
+            connection.close();
+        }
+    }
+
+    private Connection open() throws IOException {
+        Socket socket = secure ? SSLSocketFactory.getDefault().createSocket() : new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(timeout);
+            socket.connect(new InetSocketAddress(host, port), timeout);
+            return new Connection(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RawHttpTransport{%s, idle=%d}", hostHeader, idleCount.get());
+    }
+
+    /**
+     * Single HTTP/1.1 connection. Not thread safe: used by one request at a time.
+     */
+    private final class Connection {
+
+        private final Socket socket;
+
+        private final InputStream in;
+
+        private final OutputStream out;
+
+        private final HttpMessageCodec codec = new HttpMessageCodec();
+
+        private boolean reused;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+        }
+
+        private RawHttpResponse exchange(String method, String target, Map<String, String> headers,
+                                         byte[] body, int offset, int length) throws IOException {
+            codec.writeRequest(out, method, target, hostHeader, headers, body, offset, length);
+            return codec.readResponse(in, method);
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("LOG00650: Failed to close connection to {}", hostHeader, e);
+            }
+        }
+    }
+
+    /**
+     * The async requests must not keep the JVM alive.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private final String name;
+
+        private DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "raw-http-" + name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -21,10 +21,13 @@
 
 package org.jmockring.spi.client;
 
+import org.apache.http.client.HttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.builder.RequestSpecBuilder;
+import com.jayway.restassured.config.HttpClientConfig;
 import com.jayway.restassured.config.RestAssuredConfig;
 import com.jayway.restassured.parsing.Parser;
 import com.jayway.restassured.specification.RequestSpecification;
@@ -36,6 +39,11 @@ import org.jmockring.configuration.ServerConfiguration;
 /**
  * A wrapper around {@link RestAssured} REST testing client which is automatically pre-configured
  * with the correct host/port and context path and can be injected in the test class with {@link RequestClient}.
+ * <p/>
+ * The target server settings are captured once in an immutable request specification and copied into every new request,
+ * the static {@link RestAssured} defaults are never modified. The client can be shared by concurrently running tests.
+ * <p/>
+ * The connections are kept alive and reused through the {@link ConnectionPool} of the server, unless pooling is disabled.
  *
  * @author Pavel Lechev
  * @date 17/02/13
@@ -48,38 +56,61 @@ public class RestAssuredClient {
 
     private final BaseContextConfiguration contextConfiguration;
 
-    private RestAssuredConfig restAssuredConfig;
+    private final RestAssuredConfig restAssuredConfig;
+
+    private final RequestSpecification baseSpecification;
 
     public RestAssuredClient(ServerConfiguration serverConfiguration, BaseContextConfiguration contextConfiguration) {
         this.serverConfiguration = serverConfiguration;
         this.contextConfiguration = contextConfiguration;
-        this.restAssuredConfig = new RestAssuredConfig();
+        this.restAssuredConfig = createConfig();
+        this.baseSpecification = createBaseSpecification();
     }
 
     /**
+     * Create new request specification targeting the configured server and context.
+     *
      * @return
+     * @should target its own server without changing the RestAssured defaults
      */
     public RequestSpecification newRequest() {
+        RequestSpecification specification = RestAssured.given(baseSpecification);
+        specification.response().defaultParser(Parser.JSON);
+        return specification;
+    }
 
-        String hostname = serverConfiguration.getHost();
-        String scheme = serverConfiguration.getScheme();
+    /**
+     * @return usage of the connection pool shared by the clients of this server, or null if pooling is disabled
+     * @see ConnectionPool
+     */
+    public ConnectionPool.Statistics getPoolStatistics() {
+        ConnectionPool pool = ConnectionPool.forServer(serverConfiguration);
+        return pool != null ? pool.getStatistics() : null;
+    }
 
-        // setup
-        RestAssured.baseURI = String.format("%s://%s", scheme, hostname);
-        RestAssured.port = serverConfiguration.getPort();
-        if (contextConfiguration != null) {
-            RestAssured.basePath = contextConfiguration.getContextPath();
-        } else {
-            RestAssured.basePath = "";
+    private RestAssuredConfig createConfig() {
+        if (ConnectionPool.forServer(serverConfiguration) == null) {
+            return new RestAssuredConfig();
         }
-        RestAssured.defaultParser = Parser.JSON;
-        RestAssured.config = this.restAssuredConfig;
+        // the pool is looked up for every request: it is closed after each test class and a new one is created on demand
+        return new RestAssuredConfig().httpClient(HttpClientConfig.httpClientConfig().httpClientFactory(new HttpClientConfig.HttpClientFactory() {
+            @Override
+            public HttpClient createHttpClient() {
+                return ConnectionPool.forServer(serverConfiguration).newHttpClient();
+            }
+        }));
+    }
 
-        // create request spec:
-        RequestSpecification specification = RestAssured.with();
-        log.info(String.format("LOG00300: Initialising RestEasy::RequestSpecification for %s:%d%s", RestAssured.baseURI, RestAssured.port, RestAssured.basePath));
-        RestAssured.reset(); // clear the parameters after the specification is created;
-        return specification;
+    private RequestSpecification createBaseSpecification() {
+        String baseUri = serverConfiguration.getScheme() + "://" + serverConfiguration.getHost();
+        String basePath = contextConfiguration != null ? contextConfiguration.getContextPath() : "";
+        log.info("LOG00300: Initialising RestEasy::RequestSpecification for {}:{}{}", new Object[]{baseUri, serverConfiguration.getPort(), basePath});
+        return new RequestSpecBuilder()
+                .setBaseUri(baseUri)
+                .setPort(serverConfiguration.getPort())
+                .setBasePath(basePath)
+                .setConfig(restAssuredConfig)
+                .build();
     }
 
 
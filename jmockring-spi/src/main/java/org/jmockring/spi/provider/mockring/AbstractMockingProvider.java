@@ -75,8 +75,8 @@ public abstract class AbstractMockingProvider implements MockProviderSPI {
 
     @Override
     public void resetMocks(Collection<Object> usedMocks) {
-        Object[] arr = new Object[usedMocks.size()];
-        resetMocksExecution.execute(usedMocks.toArray(arr));
+        // always call through, even with no mocks: the framework also resets its own stubbing/verification progress
+        resetMocksExecution.execute(usedMocks.toArray());
     }
 
     @Override
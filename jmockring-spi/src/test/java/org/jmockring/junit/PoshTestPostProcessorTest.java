@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.junit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+
+import org.jmockring.annotation.BootstrapConfig;
+import org.jmockring.annotation.RemoteBean;
+import org.jmockring.annotation.RemoteRequestListener;
+import org.jmockring.annotation.RequestClient;
+import org.jmockring.annotation.Server;
+import org.jmockring.configuration.BaseContextConfiguration;
+import org.jmockring.configuration.ServerConfiguration;
+import org.jmockring.configuration.ServerExecutionConfiguration;
+import org.jmockring.configuration.ServerExecutionRegistry;
+import org.jmockring.spi.client.RawHttpClient;
+import org.jmockring.webserver.callback.CallbackRequestEventListener;
+
+/**
+ * @date 17/10/26
+ */
+public class PoshTestPostProcessorTest {
+
+    private final ExternalServerJUnitRunner runner = mock(ExternalServerJUnitRunner.class);
+
+    private final ApplicationContext springContext = mock(ApplicationContext.class);
+
+    private final BaseContextConfiguration contextConfiguration = mock(BaseContextConfiguration.class);
+
+    private final CallbackRequestEventListener sharedListener = new CallbackRequestEventListener(null);
+
+    private ServerConfiguration configuration;
+
+    private PoshTestPostProcessor postProcessor;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = new ServerConfiguration(DummyTest.class.getAnnotation(Server.class), DummyTest.class.getAnnotation(BootstrapConfig.class));
+        configuration.setExecutionName(Server.DEFAULT_EXECUTION_NAME);
+        configuration.setPort(8181);
+        when(contextConfiguration.getContextPath()).thenReturn("");
+        when(contextConfiguration.getRequestEventListener()).thenReturn(sharedListener);
+        when(springContext.getBean(String.class)).thenReturn("remote bean");
+        ServerExecutionRegistry.register(new ServerExecutionConfiguration(configuration, contextConfiguration, springContext));
+        postProcessor = new PoshTestPostProcessor(runner);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        postProcessor.releaseRequestListeners();
+        ServerExecutionRegistry.cleanup();
+        configuration.closeSharedResources();
+    }
+
+    /**
+     * @verifies resolve the remote beans only once per test class
+     * @see PoshTestPostProcessor#postProcessTestClass()
+     */
+    @Test
+    public void postProcessTestClass_shouldResolveTheRemoteBeansOnlyOncePerTestClass() throws Exception {
+        InjectedTest first = runTestMethod(new InjectedTest());
+        InjectedTest second = runTestMethod(new InjectedTest());
+
+        verify(springContext, times(1)).getBean(String.class);
+        verify(contextConfiguration, times(1)).getRequestEventListener();
+        assertThat(first.bean, is("remote bean"));
+        assertThat(second.bean, sameInstance(first.bean));
+        assertThat(second.listener, sameInstance(first.listener));
+    }
+
+    /**
+     * @verifies create a new request client for each test method
+     * @see PoshTestPostProcessor#postProcessTestClass()
+     */
+    @Test
+    public void postProcessTestClass_shouldCreateANewRequestClientForEachTestMethod() throws Exception {
+        InjectedTest first = runTestMethod(new InjectedTest());
+        InjectedTest second = runTestMethod(new InjectedTest());
+
+        assertThat(first.client, notNullValue());
+        assertThat(second.client, notNullValue());
+        assertThat(second.client, not(sameInstance(first.client)));
+    }
+
+    /**
+     * @verifies skip the requests of the previous test methods
+     * @see PoshTestPostProcessor#postProcessTestClass()
+     */
+    @Test
+    public void postProcessTestClass_shouldSkipTheRequestsOfThePreviousTestMethods() throws Exception {
+        runTestMethod(new InjectedTest());
+        receive("/previous-method");
+
+        InjectedTest second = runTestMethod(new InjectedTest());
+        receive("/this-method");
+
+        assertThat(second.listener.waitForRequestStart(1).getRequestUri(), is("/this-method"));
+    }
+
+    /**
+     * @verifies cancel the request capture subscriptions
+     * @see PoshTestPostProcessor#releaseRequestListeners()
+     */
+    @Test
+    public void releaseRequestListeners_shouldCancelTheRequestCaptureSubscriptions() throws Exception {
+        runTestMethod(new InjectedTest());
+        assertThat(sharedListener.isCapturing(), is(true));
+
+        postProcessor.releaseRequestListeners();
+
+        assertThat(sharedListener.isCapturing(), is(false));
+    }
+
+    private InjectedTest runTestMethod(InjectedTest testInstance) {
+        when(runner.getTestInstance()).thenReturn(testInstance);
+        postProcessor.postProcessTestClass();
+        return testInstance;
+    }
+
+    private void receive(String uri) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn(uri);
+        sharedListener.requestInitialized(new ServletRequestEvent(mock(ServletContext.class), request));
+    }
+
+    public static class InjectedTest {
+
+        @RemoteBean
+        private String bean;
+
+        @RequestClient
+        private RawHttpClient client;
+
+        @RemoteRequestListener
+        private CallbackRequestEventListener listener;
+
+    }
+
+    @Server(testClass = DummyTest.class)
+    @BootstrapConfig
+    public static class DummyTest {
+
+    }
+
+}
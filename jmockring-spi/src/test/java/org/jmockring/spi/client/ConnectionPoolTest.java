@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.jmockring.configuration.ServerConfiguration;
+
+/**
+ * @date 17/10/26
+ */
+public class ConnectionPoolTest {
+
+    private HttpServer server;
+
+    private ServerConfiguration configuration;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = "OK".getBytes("US-ASCII");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        configuration = new ServerConfiguration(null, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        configuration.closeSharedResources();
+        server.stop(0);
+    }
+
+    /**
+     * @verifies reuse the pooled connections and report them in the statistics
+     * @see ConnectionPool#getStatistics()
+     */
+    @Test
+    public void getStatistics_shouldReuseThePooledConnectionsAndReportThemInTheStatistics() throws Exception {
+        ConnectionPool pool = ConnectionPool.forServer(configuration);
+
+        get(pool);
+        ConnectionPool.Statistics statistics = pool.getStatistics();
+        assertThat(statistics.getCreated(), is(1L));
+        assertThat(statistics.getIdle(), is(1));
+        assertThat(statistics.getLeased(), is(0));
+        assertThat(statistics.getMax(), is(50));
+
+        get(pool);
+        assertThat(pool.getStatistics().getCreated(), is(1L));
+        assertThat(pool.getStatistics().getIdle(), is(1));
+    }
+
+    /**
+     * @verifies share one pool per server configuration
+     * @see ConnectionPool#forServer(ServerConfiguration)
+     */
+    @Test
+    public void forServer_shouldShareOnePoolPerServerConfiguration() throws Exception {
+        ConnectionPool pool = ConnectionPool.forServer(configuration);
+
+        assertThat(ConnectionPool.forServer(configuration), sameInstance(pool));
+        assertThat(ConnectionPool.forServer(new ServerConfiguration(null, null)), not(sameInstance(pool)));
+    }
+
+    /**
+     * @verifies return null if pooling is disabled
+     * @see ConnectionPool#forServer(ServerConfiguration)
+     */
+    @Test
+    public void forServer_shouldReturnNullIfPoolingIsDisabled() throws Exception {
+        configuration.getProperties().setProperty(ConnectionPool.POOL_ENABLED_KEY, "false");
+
+        assertThat(ConnectionPool.forServer(configuration), nullValue());
+    }
+
+    /**
+     * @verifies evict the connections idle for longer than the idle timeout
+     * @see ConnectionPool#newHttpClient()
+     */
+    @Test
+    public void newHttpClient_shouldEvictTheConnectionsIdleForLongerThanTheIdleTimeout() throws Exception {
+        configuration.getProperties().setProperty(ConnectionPool.POOL_IDLE_TIMEOUT_KEY, "50");
+        ConnectionPool pool = ConnectionPool.forServer(configuration);
+        get(pool);
+        assertThat(pool.getStatistics().getIdle(), is(1));
+
+        Thread.sleep(200);
+        pool.newHttpClient();
+
+        assertThat(pool.getStatistics().getIdle(), is(0));
+        get(pool);
+        assertThat(pool.getStatistics().getCreated(), is(2L));
+    }
+
+    /**
+     * @verifies release the connections and refuse new requests
+     * @see ConnectionPool#close()
+     */
+    @Test
+    public void close_shouldReleaseTheConnectionsAndRefuseNewRequests() throws Exception {
+        ConnectionPool pool = ConnectionPool.forServer(configuration);
+        get(pool);
+
+        pool.close();
+
+        assertThat(pool.getStatistics().getIdle(), is(0));
+        try {
+            get(pool);
+            fail("Closed pool should not serve requests");
+        } catch (IllegalStateException expected) {
+            // the connection manager is shut down
+        }
+    }
+
+    /**
+     * @verifies keep the pool open until the last test class using the server releases it
+     * @see ServerConfiguration#releaseSharedResources()
+     */
+    @Test
+    public void releaseSharedResources_shouldKeepThePoolOpenUntilTheLastTestClassUsingTheServerReleasesIt() throws Exception {
+        configuration.retainSharedResources();
+        configuration.retainSharedResources();
+        ConnectionPool pool = ConnectionPool.forServer(configuration);
+
+        configuration.releaseSharedResources();
+        get(pool);
+        assertThat(ConnectionPool.forServer(configuration), sameInstance(pool));
+
+        configuration.releaseSharedResources();
+        assertThat(ConnectionPool.forServer(configuration), not(sameInstance(pool)));
+    }
+
+    private void get(ConnectionPool pool) throws IOException {
+        HttpResponse response = pool.newHttpClient().execute(new HttpGet("http://localhost:" + server.getAddress().getPort() + "/"));
+        assertThat(EntityUtils.toString(response.getEntity()), is("OK"));
+    }
+
+}
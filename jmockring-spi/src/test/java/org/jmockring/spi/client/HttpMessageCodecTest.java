@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @date 17/10/26
+ */
+public class HttpMessageCodecTest {
+
+    private HttpMessageCodec underTest;
+
+    @Before
+    public void setUp() throws Exception {
+        underTest = new HttpMessageCodec();
+    }
+
+    /**
+     * @verifies write the content length of the body
+     * @see HttpMessageCodec#writeRequest(java.io.OutputStream, String, String, String, java.util.Map, byte[], int, int)
+     */
+    @Test
+    public void writeRequest_shouldWriteTheContentLengthOfTheBody() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        underTest.writeRequest(out, "POST", "/context/path?q=1", "localhost:8080",
+                Collections.singletonMap("Content-Type", "text/plain"), "[body]".getBytes("US-ASCII"), 1, 4);
+
+        assertThat(out.toString("US-ASCII"), is("POST /context/path?q=1 HTTP/1.1\r\n"
+                + "Host: localhost:8080\r\n"
+                + "Content-Length: 4\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "\r\n"
+                + "body"));
+    }
+
+    /**
+     * @verifies reject non ASCII characters in the request head
+     * @see HttpMessageCodec#writeRequest(java.io.OutputStream, String, String, String, java.util.Map, byte[], int, int)
+     */
+    @Test
+    public void writeRequest_shouldRejectNonASCIICharactersInTheRequestHead() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            underTest.writeRequest(out, "GET", "/caf\u00e9", "localhost:8080", null, null, 0, 0);
+            fail("Non ASCII request target should be rejected");
+        } catch (IllegalArgumentException expected) {
+            // the character must not be truncated to its low byte
+        }
+        assertThat(out.size(), is(0));
+    }
+
+    /**
+     * @verifies read a body delimited by the content length
+     * @see HttpMessageCodec#readResponse(java.io.InputStream, String)
+     */
+    @Test
+    public void readResponse_shouldReadABodyDelimitedByTheContentLength() throws Exception {
+        InputStream in = stream("HTTP/1.1 200 OK\r\nContent-Length: 5\r\nX-Test: a\r\nX-Test: b\r\n\r\nHelloHTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n");
+
+        RawHttpResponse first = underTest.readResponse(in, "GET");
+        assertThat(first.getStatus(), is(200));
+        assertThat(first.getReason(), is("OK"));
+        assertThat(first.getBodyAsString(), is("Hello"));
+        assertThat(first.getHeaders().get("x-test").size(), is(2));
+        assertThat(underTest.isResponseStarted(), is(true));
+
+        RawHttpResponse second = underTest.readResponse(in, "GET");
+        assertThat(second.getStatus(), is(404));
+        assertThat(second.getReason(), is("Not Found"));
+        assertThat(second.getBody().length, is(0));
+    }
+
+    /**
+     * @verifies read a chunked body
+     * @see HttpMessageCodec#readResponse(java.io.InputStream, String)
+     */
+    @Test
+    public void readResponse_shouldReadAChunkedBody() throws Exception {
+        InputStream in = stream("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "5;ext=1\r\nHello\r\n7\r\n, world\r\n0\r\nTrailer: value\r\n\r\n"
+                + "HTTP/1.1 204 No Content\r\n\r\n");
+
+        assertThat(underTest.readResponse(in, "GET").getBodyAsString(), is("Hello, world"));
+        assertThat(underTest.isKeepAlive(), is(true));
+        assertThat(underTest.readResponse(in, "GET").getStatus(), is(204));
+    }
+
+    /**
+     * @verifies skip the interim responses
+     * @see HttpMessageCodec#readResponse(java.io.InputStream, String)
+     */
+    @Test
+    public void readResponse_shouldSkipTheInterimResponses() throws Exception {
+        InputStream in = stream("HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 102 Processing\r\nX-Interim: true\r\n\r\n"
+                + "HTTP/1.1 201 Created\r\nContent-Length: 2\r\n\r\nOK");
+
+        RawHttpResponse response = underTest.readResponse(in, "POST");
+
+        assertThat(response.getStatus(), is(201));
+        assertThat(response.getHeader("x-interim"), nullValue());
+        assertThat(response.getBodyAsString(), is("OK"));
+    }
+
+    /**
+     * @verifies keep the connection alive unless the response closes it
+     * @see HttpMessageCodec#readResponse(java.io.InputStream, String)
+     */
+    @Test
+    public void readResponse_shouldKeepTheConnectionAliveUnlessTheResponseClosesIt() throws Exception {
+        underTest.readResponse(stream("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n"), "GET");
+        assertThat(underTest.isKeepAlive(), is(true));
+
+        underTest.readResponse(stream("HTTP/1.1 200 OK\r\nConnection: Close\r\nContent-Length: 0\r\n\r\n"), "GET");
+        assertThat(underTest.isKeepAlive(), is(false));
+
+        underTest.readResponse(stream("HTTP/1.0 200 OK\r\nContent-Length: 0\r\n\r\n"), "GET");
+        assertThat(underTest.isKeepAlive(), is(false));
+
+        underTest.readResponse(stream("HTTP/1.0 200 OK\r\nConnection: keep-alive\r\nContent-Length: 0\r\n\r\n"), "GET");
+        assertThat(underTest.isKeepAlive(), is(true));
+    }
+
+    /**
+     * @verifies read to the end of the stream if the body length is not known
+     * @see HttpMessageCodec#readResponse(java.io.InputStream, String)
+     */
+    @Test
+    public void readResponse_shouldReadToTheEndOfTheStreamIfTheBodyLengthIsNotKnown() throws Exception {
+        RawHttpResponse response = underTest.readResponse(stream("HTTP/1.1 200 OK\r\n\r\nuntil the end"), "GET");
+
+        assertThat(response.getBodyAsString(), is("until the end"));
+        assertThat(underTest.isKeepAlive(), is(false));
+    }
+
+    /**
+     * @verifies allow retrying idempotent methods
+     * @see HttpMessageCodec#isIdempotent(String)
+     */
+    @Test
+    public void isIdempotent_shouldAllowRetryingIdempotentMethods() throws Exception {
+        for (String method : new String[]{"GET", "HEAD", "OPTIONS", "TRACE", "PUT", "DELETE", "get"}) {
+            assertThat(method, HttpMessageCodec.isIdempotent(method), is(true));
+        }
+    }
+
+    /**
+     * @verifies not allow retrying non idempotent methods
+     * @see HttpMessageCodec#isIdempotent(String)
+     */
+    @Test
+    public void isIdempotent_shouldNotAllowRetryingNonIdempotentMethods() throws Exception {
+        for (String method : new String[]{"POST", "PATCH", "CONNECT", "post"}) {
+            assertThat(method, HttpMessageCodec.isIdempotent(method), is(false));
+        }
+    }
+
+    private static InputStream stream(String response) throws Exception {
+        return new ByteArrayInputStream(response.getBytes("US-ASCII"));
+    }
+
+}
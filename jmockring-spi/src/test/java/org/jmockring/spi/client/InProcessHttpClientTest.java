@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.jmockring.annotation.BootstrapConfig;
+import org.jmockring.annotation.Server;
+import org.jmockring.configuration.ServerConfiguration;
+import org.jmockring.webserver.LocalTransport;
+
+/**
+ * @date 17/10/26
+ */
+public class InProcessHttpClientTest {
+
+    private ServerConfiguration configuration;
+
+    private InProcessHttpClient underTest;
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = new ServerConfiguration(DummyTest.class.getAnnotation(Server.class), DummyTest.class.getAnnotation(BootstrapConfig.class));
+        configuration.setPort(8181);
+        underTest = new InProcessHttpClient(configuration, null);
+    }
+
+    /**
+     * @verifies hand the serialised request to the local transport and parse its response
+     * @see InProcessHttpClient#send(String, String, java.util.Map, byte[], int, int)
+     */
+    @Test
+    public void send_shouldHandTheSerialisedRequestToTheLocalTransportAndParseItsResponse() throws Exception {
+        RecordingTransport transport = new RecordingTransport("HTTP/1.1 201 Created\r\nContent-Length: 7\r\n\r\ncreated");
+        configuration.setLocalTransport(transport);
+
+        RawHttpResponse response = underTest.execute("POST", "/items", Collections.singletonMap("Content-Type", "text/plain"), "item".getBytes("US-ASCII"));
+
+        assertThat(transport.request, is("POST /items HTTP/1.1\r\n"
+                + "Host: localhost:8181\r\n"
+                + "Content-Length: 4\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "\r\n"
+                + "item"));
+        assertThat(response.getStatus(), is(201));
+        assertThat(response.getBodyAsString(), is("created"));
+    }
+
+    /**
+     * @verifies fail if the server has no local transport
+     * @see InProcessHttpClient#send(String, String, java.util.Map, byte[], int, int)
+     */
+    @Test
+    public void send_shouldFailIfTheServerHasNoLocalTransport() throws Exception {
+        try {
+            underTest.get("/items");
+            fail("In-process request must fail without a local transport");
+        } catch (IllegalStateException expected) {
+            // e.g. Tomcat, or Jetty without the local connector
+        }
+    }
+
+    private static class RecordingTransport implements LocalTransport {
+
+        private final String response;
+
+        private String request;
+
+        private RecordingTransport(String response) {
+            this.response = response;
+        }
+
+        @Override
+        public byte[] process(byte[] request, int offset, int length) throws IOException {
+            this.request = new String(request, offset, length, "US-ASCII");
+            return response.getBytes("US-ASCII");
+        }
+    }
+
+    @Server(testClass = DummyTest.class)
+    @BootstrapConfig
+    public static class DummyTest {
+
+    }
+
+}
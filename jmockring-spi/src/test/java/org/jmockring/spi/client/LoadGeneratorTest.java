@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.jmockring.annotation.BootstrapConfig;
+import org.jmockring.annotation.Server;
+import org.jmockring.configuration.ServerConfiguration;
+
+/**
+ * @date 17/10/26
+ */
+public class LoadGeneratorTest {
+
+    private HttpServer server;
+
+    private ServerConfiguration configuration;
+
+    private LoadGenerator generator;
+
+    private final List<Long> received = new CopyOnWriteArrayList<Long>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                received.add(System.nanoTime());
+                byte[] body = "OK".getBytes("US-ASCII");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        configuration = new ServerConfiguration(DummyTest.class.getAnnotation(Server.class), DummyTest.class.getAnnotation(BootstrapConfig.class));
+        configuration.setPort(server.getAddress().getPort());
+        generator = new LoadGenerator(configuration, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        configuration.closeSharedResources();
+        server.stop(0);
+    }
+
+    /**
+     * @verifies stop a duration only run on time
+     * @see LoadGenerator.Load#run()
+     */
+    @Test
+    public void run_shouldStopADurationOnlyRunOnTime() throws Exception {
+        LoadReport report = generator.newLoad()
+                .request("GET", "/")
+                .concurrency(2)
+                .duration(300, TimeUnit.MILLISECONDS)
+                .run();
+
+        long elapsed = report.getElapsed(TimeUnit.MILLISECONDS);
+        assertTrue("Run stopped early: " + elapsed, elapsed >= 300);
+        assertTrue("Run did not stop on time: " + elapsed, elapsed < 2000);
+        assertTrue(report.getRequests() > 0);
+        assertThat(report.getErrors(), is(0L));
+        assertThat((long) received.size(), is(report.getRequests()));
+    }
+
+    /**
+     * @verifies send the rate limited requests on schedule
+     * @see LoadGenerator.Load#run()
+     */
+    @Test
+    public void run_shouldSendTheRateLimitedRequestsOnSchedule() throws Exception {
+        LoadReport report = generator.newLoad()
+                .request("GET", "/")
+                .rate(20)
+                .requests(10)
+                .run();
+
+        assertThat(report.getRequests(), is(10L));
+        assertThat(report.getErrors(), is(0L));
+        assertThat(received.size(), is(10));
+        // 20 req/s: the 10th request is scheduled 450ms after the first
+        long span = TimeUnit.NANOSECONDS.toMillis(received.get(9) - received.get(0));
+        assertTrue("Requests were not spaced by the rate: " + span, span >= 400);
+        assertTrue("Requests were delayed: " + span, span < 2000);
+    }
+
+    /**
+     * @verifies stop at the request limit if it comes before the duration
+     * @see LoadGenerator.Load#run()
+     */
+    @Test
+    public void run_shouldStopAtTheRequestLimitIfItComesBeforeTheDuration() throws Exception {
+        LoadReport report = generator.newLoad()
+                .request("GET", "/")
+                .concurrency(2)
+                .requests(5)
+                .duration(30, TimeUnit.SECONDS)
+                .run();
+
+        assertThat(report.getRequests(), is(5L));
+        assertThat(received.size(), is(5));
+        assertTrue(report.getElapsed(TimeUnit.SECONDS) < 10);
+    }
+
+    /**
+     * @verifies stop at the duration if it comes before the request limit
+     * @see LoadGenerator.Load#run()
+     */
+    @Test
+    public void run_shouldStopAtTheDurationIfItComesBeforeTheRequestLimit() throws Exception {
+        LoadReport report = generator.newLoad()
+                .request("GET", "/")
+                .rate(10)
+                .requests(1000)
+                .duration(300, TimeUnit.MILLISECONDS)
+                .run();
+
+        // scheduled at 0, 100 and 200ms
+        assertThat(report.getRequests(), is(3L));
+        assertThat(received.size(), is(3));
+        assertTrue(report.getElapsed(TimeUnit.MILLISECONDS) < 2000);
+    }
+
+    /**
+     * @verifies reject a number of requests less than one
+     * @see LoadGenerator.Load#requests(long)
+     */
+    @Test
+    public void requests_shouldRejectANumberOfRequestsLessThanOne() throws Exception {
+        for (long count : new long[]{0, -1, Long.MIN_VALUE}) {
+            try {
+                generator.newLoad().requests(count);
+                fail("Accepted " + count + " requests");
+            } catch (IllegalArgumentException expected) {
+                // at least one request is required
+            }
+        }
+    }
+
+    /**
+     * @verifies reject a duration that is not positive
+     * @see LoadGenerator.Load#duration(long, TimeUnit)
+     */
+    @Test
+    public void duration_shouldRejectADurationThatIsNotPositive() throws Exception {
+        for (long duration : new long[]{0, -1}) {
+            try {
+                generator.newLoad().duration(duration, TimeUnit.SECONDS);
+                fail("Accepted duration " + duration);
+            } catch (IllegalArgumentException expected) {
+                // the run would never start
+            }
+        }
+    }
+
+    @Server(testClass = DummyTest.class)
+    @BootstrapConfig
+    public static class DummyTest {
+
+    }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.jmockring.annotation.BootstrapConfig;
+import org.jmockring.annotation.Param;
+import org.jmockring.annotation.Server;
+import org.jmockring.configuration.ServerConfiguration;
+
+/**
+ * @date 17/10/26
+ */
+public class RawHttpTransportTest {
+
+    private ServerSocket serverSocket;
+
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private final Semaphore closedConnections = new Semaphore(0);
+
+    private ServerConfiguration configuration;
+
+    @Before
+    public void setUp() throws Exception {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serveOneRequestPerConnection();
+            }
+        }, "raw-http-test-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        configuration = new ServerConfiguration(DummyTest.class.getAnnotation(Server.class), DummyTest.class.getAnnotation(BootstrapConfig.class));
+        configuration.setPort(serverSocket.getLocalPort());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        configuration.closeSharedResources();
+        serverSocket.close();
+    }
+
+    /**
+     * @verifies retry an idempotent request on a new connection if the reused one was closed
+     * @see RawHttpTransport#execute(String, String, java.util.Map, byte[], int, int)
+     */
+    @Test
+    public void execute_shouldRetryAnIdempotentRequestOnANewConnectionIfTheReusedOneWasClosed() throws Exception {
+        RawHttpTransport transport = RawHttpTransport.forServer(configuration);
+        assertThat(transport.execute("GET", "/first", null, null, 0, 0).getBodyAsString(), is("OK"));
+        assertThat(closedConnections.tryAcquire(5, TimeUnit.SECONDS), is(true));
+
+        assertThat(transport.execute("PUT", "/second", null, new byte[]{1, 2}, 0, 2).getBodyAsString(), is("OK"));
+        assertThat(connections.get(), is(2));
+    }
+
+    /**
+     * @verifies not retry a non idempotent request
+     * @see RawHttpTransport#execute(String, String, java.util.Map, byte[], int, int)
+     */
+    @Test
+    public void execute_shouldNotRetryANonIdempotentRequest() throws Exception {
+        RawHttpTransport transport = RawHttpTransport.forServer(configuration);
+        transport.execute("GET", "/first", null, null, 0, 0);
+        assertThat(closedConnections.tryAcquire(5, TimeUnit.SECONDS), is(true));
+
+        try {
+            transport.execute("POST", "/second", null, new byte[]{1, 2}, 0, 2);
+            fail("POST on a closed connection must not be retried");
+        } catch (IOException expected) {
+            // the server may have processed it
+        }
+        assertThat(connections.get(), is(1));
+    }
+
+    /**
+     * @verifies run the request in the caller when all threads and queue slots are busy
+     * @see RawHttpTransport#submit(java.util.concurrent.Callable)
+     */
+    @Test
+    public void submit_shouldRunTheRequestInTheCallerWhenAllThreadsAndQueueSlotsAreBusy() throws Exception {
+        RawHttpTransport transport = RawHttpTransport.forServer(configuration);
+        final CountDownLatch release = new CountDownLatch(1);
+        Callable<String> blocking = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                release.await(5, TimeUnit.SECONDS);
+                return Thread.currentThread().getName();
+            }
+        };
+        Callable<String> threadName = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return Thread.currentThread().getName();
+            }
+        };
+
+        Future<String> running = transport.submit(blocking); // the only thread (maxIdle = 1)
+        Future<String> queued = transport.submit(blocking);  // the only queue slot
+        Future<String> callerRuns = transport.submit(threadName);
+
+        assertThat(callerRuns.isDone(), is(true));
+        assertThat(callerRuns.get(), is(Thread.currentThread().getName()));
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS), not(is(Thread.currentThread().getName())));
+        assertThat(queued.get(5, TimeUnit.SECONDS), not(is(Thread.currentThread().getName())));
+    }
+
+    /**
+     * @verifies close the connection of a request completing while the transport is closed
+     * @see RawHttpTransport#close()
+     */
+    @Test
+    public void close_shouldCloseTheConnectionOfARequestCompletingWhileTheTransportIsClosed() throws Exception {
+        final ServerSocket keepAliveSocket = new ServerSocket(0);
+        final CountDownLatch requestReceived = new CountDownLatch(1);
+        final CountDownLatch respond = new CountDownLatch(1);
+        final Semaphore closedByClient = new Semaphore(0);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = keepAliveSocket.accept();
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                    String header;
+                    while ((header = reader.readLine()) != null && header.length() > 0) {
+                        // skip the request head
+                    }
+                    requestReceived.countDown();
+                    respond.await(5, TimeUnit.SECONDS);
+                    OutputStream out = socket.getOutputStream();
+                    out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nOK".getBytes("US-ASCII"));
+                    out.flush();
+                    if (reader.read() == -1) {
+                        closedByClient.release();
+                    }
+                    socket.close();
+                } catch (Exception e) {
+                    // test failed or finished
+                }
+            }
+        }, "raw-http-keep-alive-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        ServerConfiguration keepAliveConfiguration = new ServerConfiguration(DummyTest.class.getAnnotation(Server.class), DummyTest.class.getAnnotation(BootstrapConfig.class));
+        keepAliveConfiguration.setPort(keepAliveSocket.getLocalPort());
+        final RawHttpTransport transport = RawHttpTransport.forServer(keepAliveConfiguration);
+        try {
+            Future<RawHttpResponse> inFlight = transport.submit(new Callable<RawHttpResponse>() {
+                @Override
+                public RawHttpResponse call() throws Exception {
+                    return transport.execute("GET", "/slow", null, null, 0, 0);
+                }
+            });
+            assertThat(requestReceived.await(5, TimeUnit.SECONDS), is(true));
+
+            transport.close();
+            respond.countDown();
+
+            assertThat(inFlight.get(5, TimeUnit.SECONDS).getBodyAsString(), is("OK"));
+            assertThat(closedByClient.tryAcquire(5, TimeUnit.SECONDS), is(true));
+            assertThat(transport.toString().contains("idle=0"), is(true));
+        } finally {
+            keepAliveConfiguration.closeSharedResources();
+            keepAliveSocket.close();
+        }
+    }
+
+    /**
+     * Read one request, answer it with a keep-alive response and close the connection, as a server timing out idle connections would.
+     */
+    private void serveOneRequestPerConnection() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                try {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                    int contentLength = 0;
+                    String header;
+                    while ((header = reader.readLine()) != null && header.length() > 0) {
+                        if (header.toLowerCase(Locale.ENGLISH).startsWith("content-length:")) {
+                            contentLength = Integer.parseInt(header.substring("content-length:".length()).trim());
+                        }
+                    }
+                    for (int i = 0; i < contentLength; i++) {
+                        reader.read();
+                    }
+                    OutputStream out = socket.getOutputStream();
+                    out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nOK".getBytes("US-ASCII"));
+                    out.flush();
+                } finally {
+                    socket.close();
+                    closedConnections.release();
+                }
+            } catch (IOException e) {
+                // server socket closed
+            }
+        }
+    }
+
+    @Server(testClass = DummyTest.class, properties = @Param(name = RawHttpTransport.MAX_IDLE_KEY, value = "1"))
+    @BootstrapConfig
+    public static class DummyTest {
+
+    }
+
+}
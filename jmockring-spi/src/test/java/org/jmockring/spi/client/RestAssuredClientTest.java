@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013, Pavel Lechev
+ *    All rights reserved.
+ *
+ *    Redistribution and use in source and binary forms, with or without modification,
+ *    are permitted provided that the following conditions are met:
+ *
+ *     1) Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ *     2) Redistributions in binary form must reproduce the above copyright notice,
+ *        this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+ *     3) Neither the name of the Pavel Lechev nor the names of its contributors may be used to endorse or promote
+ *        products derived from this software without specific prior written permission.
+ *
+ *    THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ *    INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *    IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *    (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ *    HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ *    ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.jmockring.spi.client;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.specification.RequestSpecification;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.jmockring.annotation.BootstrapConfig;
+import org.jmockring.annotation.Server;
+import org.jmockring.configuration.BaseContextConfiguration;
+import org.jmockring.configuration.ServerConfiguration;
+
+/**
+ * @date 17/10/26
+ */
+public class RestAssuredClientTest {
+
+    private HttpServer first;
+
+    private HttpServer second;
+
+    private ServerConfiguration firstConfiguration;
+
+    private ServerConfiguration secondConfiguration;
+
+    @Before
+    public void setUp() throws Exception {
+        first = start("/first", "first server");
+        second = start("/second", "second server");
+        firstConfiguration = configuration(first);
+        secondConfiguration = configuration(second);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        firstConfiguration.closeSharedResources();
+        secondConfiguration.closeSharedResources();
+        first.stop(0);
+        second.stop(0);
+    }
+
+    /**
+     * @verifies target its own server without changing the RestAssured defaults
+     * @see RestAssuredClient#newRequest()
+     */
+    @Test
+    public void newRequest_shouldTargetItsOwnServerWithoutChangingTheRestAssuredDefaults() throws Exception {
+        String baseUri = RestAssured.baseURI;
+        int port = RestAssured.port;
+        String basePath = RestAssured.basePath;
+        RestAssuredClient firstClient = new RestAssuredClient(firstConfiguration, context("/first"));
+        RestAssuredClient secondClient = new RestAssuredClient(secondConfiguration, context("/second"));
+
+        RequestSpecification firstRequest = firstClient.newRequest();
+        RequestSpecification secondRequest = secondClient.newRequest();
+
+        assertThat(RestAssured.baseURI, is(baseUri));
+        assertThat(RestAssured.port, is(port));
+        assertThat(RestAssured.basePath, is(basePath));
+        assertThat(firstRequest.get("/hello").asString(), is("first server"));
+        assertThat(secondRequest.get("/hello").asString(), is("second server"));
+    }
+
+    private static HttpServer start(String contextPath, final String body) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(contextPath, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] content = body.getBytes("US-ASCII");
+                exchange.getResponseHeaders().add("Content-Type", "text/plain");
+                exchange.sendResponseHeaders(200, content.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(content);
+                out.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static ServerConfiguration configuration(HttpServer server) {
+        ServerConfiguration configuration = new ServerConfiguration(DummyTest.class.getAnnotation(Server.class), DummyTest.class.getAnnotation(BootstrapConfig.class));
+        configuration.setPort(server.getAddress().getPort());
+        return configuration;
+    }
+
+    private static BaseContextConfiguration context(String contextPath) {
+        BaseContextConfiguration context = mock(BaseContextConfiguration.class);
+        when(context.getContextPath()).thenReturn(contextPath);
+        return context;
+    }
+
+    @Server(testClass = DummyTest.class)
+    @BootstrapConfig
+    public static class DummyTest {
+
+    }
+
+}
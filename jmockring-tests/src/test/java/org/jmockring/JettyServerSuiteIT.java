@@ -28,6 +28,7 @@ import org.springframework.web.servlet.DispatcherServlet;
 import org.jmockring.annotation.BootstrapConfig;
 import org.jmockring.annotation.DynamicContext;
 import org.jmockring.annotation.Param;
+import org.jmockring.annotation.PortAllocation;
 import org.jmockring.annotation.Server;
 import org.jmockring.annotation.Servers;
 import org.jmockring.annotation.Servlet;
@@ -51,7 +52,7 @@ import org.jmockring.webserver.jetty.JettyWebServer;
  * @date 20/07/12
  */
 @RunWith(ExternalServerJUnitSuiteRunner.class)
-@BootstrapConfig(numberOfAttempts = 10)
+@BootstrapConfig(startupTimeout = 10)
 @Servers(value = {
     @Server(
         dynamicContexts = @DynamicContext(
@@ -73,6 +74,7 @@ import org.jmockring.webserver.jetty.JettyWebServer;
         ),
         propertiesLocation = "/mock/base-webserver-ri.properties",
         bootstrap = JettyWebServer.class,
+        portAllocation = PortAllocation.LEASE,
         name = "ex2",
         testClass = JettyServerSuiteIT.class)
     ,
@@ -80,10 +82,19 @@ import org.jmockring.webserver.jetty.JettyWebServer;
         dynamicContexts = @DynamicContext(
             springContextLocations = "classpath:/spring/incomplete-application-context.xml",
             contextPath = "/context3",
-            servlets = {@Servlet(servletClass = DispatcherServlet.class, params = {@Param(name = "contextConfigLocation", value = "classpath:/spring/web-mvc-context.xml")})}
+            servlets = {@Servlet(servletClass = DispatcherServlet.class, params = {@Param(name = "contextConfigLocation", value = "classpath:/spring/web-mvc-context.xml")})},
+            lazyMocks = true
         ),
         propertiesLocation = "/mock/base-webserver-ri.properties",
+        properties = {
+            @Param(name = "jetty.connector.acceptors", value = "1"),
+            @Param(name = "jetty.threads.min", value = "4"),
+            @Param(name = "jetty.threads.max", value = "64"),
+            @Param(name = "jetty.sessions", value = "false"),
+            @Param(name = "jetty.connector.local", value = "true")
+        },
         bootstrap = JettyWebServer.class,
+        portAllocation = PortAllocation.EPHEMERAL,
         name = "ex3",
         testClass = JettyServerSuiteIT.class)
 
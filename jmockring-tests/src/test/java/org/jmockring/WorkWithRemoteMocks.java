@@ -21,7 +21,14 @@
 
 package org.jmockring;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.StringContains.containsString;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -30,12 +37,21 @@ import org.mockito.Mockito;
 import org.jmockring.annotation.ContextDefaults;
 import org.jmockring.annotation.PartOfSuite;
 import org.jmockring.annotation.RemoteMock;
+import org.jmockring.annotation.RemoteRequestListener;
 import org.jmockring.annotation.RequestClient;
 import org.jmockring.junit.ExternalServerJUnitRunner;
 import org.jmockring.ri.repository.TestConstructorAutowiredRepository;
 import org.jmockring.ri.repository.TestRepository;
 import org.jmockring.ri.repository.TestSetterAutowiredRepository;
+import org.jmockring.spi.client.InProcessHttpClient;
+import org.jmockring.spi.client.LoadGenerator;
+import org.jmockring.spi.client.LoadReport;
+import org.jmockring.spi.client.RawHttpClient;
+import org.jmockring.spi.client.RawHttpResponse;
 import org.jmockring.spi.client.RestAssuredClient;
+import org.jmockring.webserver.callback.CallbackRequestEventListener;
+import org.jmockring.webserver.callback.EndpointStatistics;
+import org.jmockring.webserver.callback.Request;
 import org.jmockring.webserver.jetty.JettyWebServer;
 
 /**
@@ -59,6 +75,18 @@ public class WorkWithRemoteMocks {
     @RequestClient
     private RestAssuredClient client;
 
+    @RequestClient
+    private RawHttpClient rawClient;
+
+    @RequestClient
+    private InProcessHttpClient inProcessClient;
+
+    @RequestClient
+    private LoadGenerator loadGenerator;
+
+    @RemoteRequestListener(collectStatistics = true)
+    private CallbackRequestEventListener requestListener;
+
     @Test
     public void shouldRetrieveAndVerifyRemoteMock() throws Exception {
 
@@ -92,4 +120,58 @@ public class WorkWithRemoteMocks {
 
     }
 
+    @Test
+    public void shouldRetrieveRemoteMockWithRawClient() throws Exception {
+        Mockito.when(mockedRepo2.getString()).thenReturn("Raw client response");
+        String path = "/mocked-repos/" + TestRepository.class.getName().replace(".", "%23"); // raw client: the path is sent as is
+
+        RawHttpResponse response = rawClient.get(path);
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getBodyAsString(), containsString("Raw client response"));
+
+        // the second request reuses the connection, the third one goes through the async API
+        assertThat(rawClient.get(path).getBodyAsString(), containsString("Raw client response"));
+        Future<RawHttpResponse> async = rawClient.submit("GET", path, null, null);
+        assertThat(async.get().getStatus(), is(200));
+    }
+
+    @Test
+    public void shouldRetrieveRemoteMockInProcess() throws Exception {
+        Mockito.when(mockedRepo2.getString()).thenReturn("In-process response");
+
+        RawHttpResponse response = inProcessClient.get("/mocked-repos/" + TestRepository.class.getName().replace(".", "%23"));
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.getBodyAsString(), containsString("In-process response"));
+    }
+
+    @Test
+    public void shouldRunLoadAgainstRemoteMock() throws Exception {
+        Mockito.when(mockedRepo2.getString()).thenReturn("Under load");
+
+        LoadReport report = loadGenerator.newLoad()
+            .request("GET", "/mocked-repos/" + TestRepository.class.getName().replace(".", "%23"))
+            .concurrency(4)
+            .requests(200)
+            .run();
+
+        assertThat(report.getRequests(), is(200L));
+        assertThat(report.getErrors(), is(0L));
+        assertThat(report.getLatencyHistogram().getCount(), is(200L));
+    }
+
+    @Test
+    public void shouldCollectEndpointStatistics() throws Exception {
+        Mockito.when(mockedRepo2.getString()).thenReturn("Measured");
+        String path = "/mocked-repos/" + TestRepository.class.getName().replace(".", "%23");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(rawClient.get(path).getStatus(), is(200));
+            assertThat(requestListener.waitForRequestEnd("/mocked-repos/", 5), notNullValue());
+        }
+
+        EndpointStatistics.Endpoint endpoint = requestListener.getStatistics().getEndpoint(Request.Method.GET, "/mocked-repos/{mockedRepoClassName}");
+        assertThat(endpoint.getCount(), is(3L));
+        assertThat(endpoint.getLatency(99, TimeUnit.MILLISECONDS), lessThan(5000L));
+    }
+
 }
@@ -2,6 +2,7 @@ package org.jmockring.webserver.tomcat;
 
 import java.net.URL;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import javax.servlet.ServletException;
 
 import org.apache.catalina.Container;
@@ -14,23 +15,28 @@ import org.apache.catalina.core.ApplicationContextFacade;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.util.ServerInfo;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.jmockring.annotation.WebContext;
 import org.jmockring.configuration.BaseContextConfiguration;
+import org.jmockring.configuration.BootstrapTimings;
 import org.jmockring.configuration.ConfigurationConstants;
 import org.jmockring.configuration.ServerConfiguration;
 import org.jmockring.configuration.ServerExecutionRegistry;
 import org.jmockring.configuration.WebAppContextConfiguration;
-import org.jmockring.webserver.WebServer;
+import org.jmockring.utils.VirtualThreads;
+import org.jmockring.webserver.SignallingWebServer;
+import org.jmockring.webserver.StartupSignal;
 import org.jmockring.webserver.callback.CallbackRequestEventListener;
 
 /**
  * @author Pavel Lechev
  * @since 12/07/13
  */
-public class TomcatWebServer implements WebServer, LifecycleListener {
+public class TomcatWebServer implements SignallingWebServer, LifecycleListener {
 
     private static final Logger log = LoggerFactory.getLogger(TomcatWebServer.class);
 
@@ -40,11 +46,24 @@ public class TomcatWebServer implements WebServer, LifecycleListener {
 
     private CountDownLatch latchOnAfterStart;
 
+    private final StartupSignal startupSignal = new StartupSignal();
+
     private Tomcat tomcat;
 
+    /**
+     * Request executor running on virtual threads, null if the connector uses its own thread pool
+     */
+    private ExecutorService virtualThreads;
+
+    /**
+     * True between a successful {@link #initialise(ServerConfiguration)} (the connector is bound) and {@link #start()}
+     */
+    private volatile boolean awaitingStart;
+
     /**
      * @param configuration
      * @should initialise server configuration
+     * @should publish the bound ephemeral port
      */
     @Override
     public void initialise(ServerConfiguration configuration) {
@@ -55,6 +74,8 @@ public class TomcatWebServer implements WebServer, LifecycleListener {
         String location = loc != null ? loc.getPath() : ".";
         String hostname = configuration.getHost();
         String scheme = configuration.getScheme();
+        // with an ephemeral port the connector binds port 0 in tomcat.init() (bindOnInit) and we read the real port afterwards
+        int port = configuration.isEphemeralPort() ? 0 : configuration.getPort();
 
         tomcat = new Tomcat();
         tomcat.noDefaultWebXmlPath();
@@ -63,13 +84,14 @@ public class TomcatWebServer implements WebServer, LifecycleListener {
         tomcat.getEngine().setDefaultHost(hostname);
         if ("https".equalsIgnoreCase(scheme)) {
             tomcat.getConnector().setScheme(scheme);
-            tomcat.getConnector().setPort(configuration.getPort());
+            tomcat.getConnector().setPort(port);
             tomcat.getConnector().setSecure(true);
         } else {
-            tomcat.setPort(configuration.getPort());
+            tomcat.setPort(port);
         }
         tomcat.setSilent(false);
         tomcat.getServer().addLifecycleListener(this);
+        useVirtualThreads();
 
         latchOnAfterStart = new CountDownLatch(1);
         blockingLatch = new CountDownLatch(1);
@@ -78,7 +100,14 @@ public class TomcatWebServer implements WebServer, LifecycleListener {
         try {
             // addDynamicContexts(configuration, location);
             addWebAppContexts(configuration, location);
-            tomcat.init();
+            long started = System.nanoTime();
+            tomcat.init(); // the connector binds its port during init
+            awaitingStart = true;
+            configuration.getTimings().record(BootstrapTimings.Phase.CONNECTOR_BIND, started);
+            if (configuration.isEphemeralPort()) {
+                configuration.setPort(tomcat.getConnector().getLocalPort());
+                log.info("LOG00450: Bound ephemeral port {}", configuration.getPort());
+            }
             addListeners();
         } catch (LifecycleException e) {
             log.error("LOG00140: Failed to initialise Tomcat ", e);
@@ -88,6 +117,25 @@ public class TomcatWebServer implements WebServer, LifecycleListener {
     }
 
 
+    /**
+     * Replace the connector's thread pool with virtual threads, if enabled and supported.
+     */
+    private void useVirtualThreads() {
+        ExecutorService executor = VirtualThreads.forServer(configuration.getProperties(), "tomcat-" + configuration.getExecutionName());
+        if (executor == null) {
+            return;
+        }
+        ProtocolHandler protocolHandler = tomcat.getConnector().getProtocolHandler();
+        if (protocolHandler instanceof AbstractProtocol) {
+            ((AbstractProtocol) protocolHandler).setExecutor(executor);
+            virtualThreads = executor;
+            log.info("LOG00750: Serving requests on virtual threads");
+        } else {
+            executor.shutdown();
+            log.warn("LOG00760: Can not set executor for protocol handler {}, using the default thread pool", protocolHandler);
+        }
+    }
+
     /**
      * @should start tomcat instance and activate blocking latch
      */
@@ -95,10 +143,12 @@ public class TomcatWebServer implements WebServer, LifecycleListener {
     public void start() {
         try {
             log.info("LOG00170: Starting '{}' on port {} ... ", getName(), getPort());
+            awaitingStart = false;
             tomcat.start();
             blockingLatch.await();  // block here until the #shutdown() is called.
         } catch (LifecycleException e) {
             log.error("LOG00120: Failed to start Tomcat", e);
+            startupSignal.failed(e);
             throw new RuntimeException(e);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
@@ -107,12 +157,20 @@ public class TomcatWebServer implements WebServer, LifecycleListener {
 
     /**
      * @should execute server shutdown and release blocking latch
+     * @should only destroy server which was initialised but not started
      */
     @Override
     public void shutdown() {
         try {
             log.info("LOG00160: Stopping '{}' on port {} ...", getName(), getPort());
-            tomcat.stop();
+            if (awaitingStart) {
+                tomcat.destroy(); // initialised but never started: only unbind the connector
+            } else {
+                tomcat.stop();
+            }
+            if (virtualThreads != null) {
+                virtualThreads.shutdown(); // Tomcat does not stop executors it has not created
+            }
             blockingLatch.countDown();  // release the block.
         } catch (LifecycleException e) {
             log.error("LOG00120: Failed to stop Tomcat", e);
@@ -151,6 +209,15 @@ public class TomcatWebServer implements WebServer, LifecycleListener {
         }
     }
 
+    /**
+     * @return
+     * @should be completed on AFTER_START_EVENT
+     */
+    @Override
+    public StartupSignal getStartupSignal() {
+        return startupSignal;
+    }
+
     private void addListeners() {
         for (Container container : tomcat.getHost().findChildren()) {
             ((Context) container).addServletContainerInitializer(new ServerExecutionRegistry(), null);
@@ -212,6 +279,7 @@ public class TomcatWebServer implements WebServer, LifecycleListener {
         if (event.getType().equals(Lifecycle.AFTER_START_EVENT)) {
             log.info("LOG00251: ... unlatching initialisation ... ");
             latchOnAfterStart.countDown();
+            startupSignal.started();
         }
     }
 }
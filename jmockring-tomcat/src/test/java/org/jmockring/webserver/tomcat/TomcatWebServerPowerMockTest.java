@@ -162,7 +162,7 @@ public class TomcatWebServerPowerMockTest {
             host = "host.net",
             scheme = "https"
     )
-    @BootstrapConfig(host = "host-alt.net", numberOfAttempts = 20, scheme = "https", systemProperties = {@Param(name = "sys.prop1", value = "prop1.value")})
+    @BootstrapConfig(host = "host-alt.net", startupTimeout = 20, scheme = "https", systemProperties = {@Param(name = "sys.prop1", value = "prop1.value")})
     public static class DummyTest {
 
     }
@@ -7,6 +7,8 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.net.BindException;
+import java.net.ServerSocket;
 import java.util.concurrent.CountDownLatch;
 
 import org.apache.catalina.Engine;
@@ -24,9 +26,11 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.powermock.reflect.Whitebox;
 
 import org.jmockring.annotation.BootstrapConfig;
 import org.jmockring.annotation.Param;
+import org.jmockring.annotation.PortAllocation;
 import org.jmockring.annotation.Server;
 import org.jmockring.annotation.WebContext;
 import org.jmockring.configuration.ServerConfiguration;
@@ -108,6 +112,40 @@ public class TomcatWebServerTest {
 
     }
 
+    /**
+     * @verifies publish the bound ephemeral port
+     * @see TomcatWebServer#initialise(ServerConfiguration)
+     */
+    @Test
+    public void initialise_shouldPublishTheBoundEphemeralPort() throws Exception {
+        ServerConfiguration configuration = new ServerConfiguration(EphemeralTest.class.getAnnotation(Server.class), EphemeralTest.class.getAnnotation(BootstrapConfig.class));
+        configuration.setEphemeralPort(true);
+        TomcatWebServer server = new TomcatWebServer();
+
+        server.initialise(configuration);
+        try {
+            assertThat(configuration.isPortAssigned(), is(true));
+            assertThat(server.getPort(), is(configuration.getPort()));
+            assertThat(canBind(configuration.getPort()), is(false));
+        } finally {
+            server.shutdown();
+        }
+        assertThat(canBind(configuration.getPort()), is(true));
+    }
+
+    /**
+     * @verifies be completed on AFTER_START_EVENT
+     * @see TomcatWebServer#getStartupSignal()
+     */
+    @Test
+    public void getStartupSignal_shouldBeCompletedOnAFTER_START_EVENT() throws Exception {
+        assertThat(underTest.getStartupSignal().isComplete(), is(false));
+
+        underTest.lifecycleEvent(new LifecycleEvent(new StandardEngine(), Lifecycle.AFTER_START_EVENT, new Object()));
+
+        assertThat(underTest.getStartupSignal().isComplete(), is(true));
+    }
+
     /**
      * @verifies execute server shutdown and release blocking latch
      * @see TomcatWebServer#shutdown()
@@ -123,6 +161,21 @@ public class TomcatWebServerTest {
         verifyNoMoreInteractions(tomcatMock, blockingLatchMock);
     }
 
+    /**
+     * @verifies only destroy server which was initialised but not started
+     * @see TomcatWebServer#shutdown()
+     */
+    @Test
+    public void shutdown_shouldOnlyDestroyServerWhichWasInitialisedButNotStarted() throws Exception {
+        Whitebox.setInternalState(underTest, "awaitingStart", true);
+
+        underTest.shutdown();
+
+        verify(tomcatMock).destroy();
+        verify(blockingLatchMock).countDown();
+        verifyNoMoreInteractions(tomcatMock, blockingLatchMock);
+    }
+
     /**
      * @verifies start tomcat instance and activate blocking latch
      * @see TomcatWebServer#start()
@@ -153,6 +206,15 @@ public class TomcatWebServerTest {
 
     }
 
+    private static boolean canBind(int port) throws Exception {
+        try {
+            new ServerSocket(port).close();
+            return true;
+        } catch (BindException e) {
+            return false;
+        }
+    }
+
     @Server(
             port = 6060,
             name = "TomcatWebServerContext",
@@ -169,10 +231,19 @@ public class TomcatWebServerTest {
             host = "host.net",
             scheme = "https"
     )
-    @BootstrapConfig(host = "host-alt.net", numberOfAttempts = 20, scheme = "https", systemProperties = {@Param(name = "sys.prop1", value = "prop1.value")})
+    @BootstrapConfig(host = "host-alt.net", startupTimeout = 20, scheme = "https", systemProperties = {@Param(name = "sys.prop1", value = "prop1.value")})
     public static class DummyTest {
 
     }
 
+    @Server(
+            name = "TomcatEphemeral",
+            portAllocation = PortAllocation.EPHEMERAL,
+            bootstrap = TomcatWebServer.class,
+            testClass = EphemeralTest.class
+    )
+    @BootstrapConfig(host = "localhost")
+    public static class EphemeralTest {
 
+    }
 }